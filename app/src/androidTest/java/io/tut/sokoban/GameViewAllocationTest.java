@@ -0,0 +1,216 @@
+package io.tut.sokoban;
+
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * 在裝置上確認 GameView _真正的_ 觸控和繪圖路徑 (dispatchTouchEvent() 和 draw()) 在穩定
+ * 狀態下不配置任何記憶體：每一格畫面點一下工人旁邊的格子 (左右來回走)，再把整個 View
+ * 畫到一個 Bitmap 上；以 Debug.startAllocCounting() 計算 UI 執行緒配置的物件數。
+ *
+ * 分別在關閉移動動畫 (KEY_MOVES_PER_SECOND = 0) 和預設的動畫速度下量測。這個迴圈佔住
+ * UI 執行緒，不會有 vsync：有動畫時每一格畫面直接以 GameView.runAnimationFrame() 推進
+ * FRAME_NANOS 的時間 (排進 Choreographer 的那一格不會執行，也不會再排一次)。動畫本身由
+ * MoveAnimatorTest 檢查。量測的畫面數超過 FrameStats.REPORT_INTERVAL，也包含交出統計的
+ * 那一格。
+ */
+@RunWith(AndroidJUnit4.class)
+public class GameViewAllocationTest {
+    private static final int MEASURED_FRAMES = FrameStats.REPORT_INTERVAL * 2;
+
+    // 暖身走的步數比量測的多，歷史記錄的陣列在量測時不必再長大
+    private static final int WARM_UP_FRAMES = MEASURED_FRAMES * 2;
+
+    private static final long LOAD_TIMEOUT_MILLIS = 10000L;
+
+    // 有動畫時，每一格畫面推進的時間 (60 Hz)
+    private static final long FRAME_NANOS = 1000000000L / 60;
+
+    @Rule
+    public ActivityTestRule<GameActivity> mActivityRule = new ActivityTestRule<>(GameActivity.class, false, false);
+
+    @Test
+    public void touchAndDraw_allocateNothing() {
+        int[] result = measure(0f, 0);
+
+        assertEquals("objects allocated in " + MEASURED_FRAMES + " frames", 0, result[0]);
+    }
+
+    @Test
+    public void animatedTouchAndDraw_allocateNothing() {
+        int[] result = measure(MoveAnimator.DEFAULT_MOVES_PER_SECOND, FRAME_NANOS);
+
+        assertEquals("objects allocated in " + MEASURED_FRAMES + " animated frames", 0, result[0]);
+        assertTrue("no frame was animated", result[1] > 0);
+    }
+
+    /**
+     * 以 movesPerSecond 的動畫速度開啟第一關，暖身之後量測 MEASURED_FRAMES 格畫面。
+     *
+     * @param movesPerSecond 動畫的速度；0 表示不做動畫。
+     * @param frameNanos     每一格畫面推進動畫的時間；0 表示不推進。
+     *
+     * @return int[] {配置的物件數, 動畫進行中的畫面數}。
+     */
+    private int[] measure(float movesPerSecond, final long frameNanos) {
+        Intent intent = new Intent(InstrumentationRegistry.getTargetContext(), GameActivity.class);
+
+        intent.putExtra(GameActivity.KEY_SELECTED_LEVEL, 1);
+        intent.putExtra(GameActivity.KEY_MOVES_PER_SECOND, movesPerSecond);
+
+        final GameActivity activity = mActivityRule.launchActivity(intent);
+
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+
+        final GameView gameView = waitForGameView(activity, instrumentation);
+
+        final int[] result = new int[2];
+
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                GameState gameState = activity.getCurrentState();
+
+                gameState.setGameStatus(GameState.GAMING);
+
+                // 第一關：工人左邊是空地，來回走不會推到箱子
+                MotionEvent[] taps = {
+                        tapAt(gameView.getRect(gameState.getManColumn() - 1, gameState.getManRow())),
+                        tapAt(gameView.getRect(gameState.getManColumn(), gameState.getManRow()))
+                };
+
+                Canvas canvas = new Canvas(Bitmap.createBitmap(gameView.getWidth(), gameView.getHeight(), Bitmap.Config.ARGB_8888));
+
+                long[] clock = {System.nanoTime()};
+
+                runFrames(gameView, canvas, taps, WARM_UP_FRAMES, clock, frameNanos);
+
+                // 回到初始盤面，量測的步數不會超過暖身時歷史記錄的大小
+                while (gameState.isUndoable()) {
+                    gameState.undoStep();
+                }
+
+                gameView.draw(canvas);
+
+                Debug.resetThreadAllocCount();
+                Debug.startAllocCounting();
+
+                int animated = runFrames(gameView, canvas, taps, MEASURED_FRAMES, clock, frameNanos);
+
+                Debug.stopAllocCounting();
+
+                result[0] = Debug.getThreadAllocCount();
+                result[1] = animated;
+
+                for (MotionEvent tap : taps) {
+                    tap.recycle();
+                }
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * 執行 frames 格畫面：每一格送出一次觸控，推進動畫，再畫整個 View。
+     *
+     * @param gameView   GameView 物件。
+     * @param canvas     畫到 Bitmap 的 Canvas。
+     * @param taps       輪流送出的觸控。
+     * @param frames     畫面數。
+     * @param clock      動畫的時間 (nanos)；每一格畫面推進 frameNanos。
+     * @param frameNanos 每一格畫面推進的時間；0 表示不推進動畫。
+     *
+     * @return int 動畫進行中的畫面數。
+     */
+    private static int runFrames(GameView gameView, Canvas canvas, MotionEvent[] taps, int frames, long[] clock, long frameNanos) {
+        int animated = 0;
+
+        for (int frame = 0; frame < frames; frame++) {
+            gameView.dispatchTouchEvent(taps[frame % taps.length]);
+
+            if (frameNanos > 0) {
+                clock[0] += frameNanos;
+
+                gameView.runAnimationFrame(clock[0]);
+            }
+
+            if (gameView.isAnimating()) {
+                animated++;
+            }
+
+            gameView.draw(canvas);
+        }
+
+        return animated;
+    }
+
+    /**
+     * 建立點在 rect 中央的 ACTION_DOWN 觸控。
+     *
+     * @param rect 格子的範圍 (GameView 共用的 Rect，要立刻使用)。
+     *
+     * @return MotionEvent 物件。
+     */
+    private static MotionEvent tapAt(Rect rect) {
+        long now = SystemClock.uptimeMillis();
+
+        return MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, rect.exactCenterX(), rect.exactCenterY(), 0);
+    }
+
+    /**
+     * 等到關卡載入 (GameActivity 在背景開啟關卡索引)，GameView 也完成 layout。
+     *
+     * @param activity        GameActivity 物件。
+     * @param instrumentation Instrumentation 物件。
+     *
+     * @return GameView 物件。
+     */
+    private static GameView waitForGameView(final GameActivity activity, Instrumentation instrumentation) {
+        final GameView[] found = new GameView[1];
+
+        long deadline = SystemClock.uptimeMillis() + LOAD_TIMEOUT_MILLIS;
+
+        while ((found[0] == null) && (SystemClock.uptimeMillis() < deadline)) {
+            instrumentation.waitForIdleSync();
+
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    ViewGroup content = (ViewGroup) activity.findViewById(android.R.id.content);
+
+                    View view = (content.getChildCount() > 0) ? content.getChildAt(0) : null;
+
+                    if ((view instanceof GameView) && (view.getWidth() > 0)) {
+                        found[0] = (GameView) view;
+                    }
+                }
+            });
+
+            if (found[0] == null) {
+                SystemClock.sleep(50);
+            }
+        }
+
+        assertNotNull("level not loaded", found[0]);
+
+        return found[0];
+    }
+}
@@ -1,52 +1,169 @@
 package io.tut.sokoban;
 
-import android.content.res.Resources;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Rect;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 整個 process 共用的 skin 快取。
+ *
+ * tile sheet (R.drawable.sokoban) 只解碼一次；依格子大小縮放好的 TileAtlas 也快取起來
+ * (最多 MAX_ATLASES 種大小，例如直向和橫向)，開啟關卡時不必再解碼 PNG 或縮放。
+ *
+ * 系統要求釋放記憶體時 (onTrimMemory()) 放掉快取：先放 TileAtlas，App 進入背景之後連
+ * tile sheet 也放掉；還在使用的 Bitmap 不會被 recycle()，由使用者放開之後自然回收。
+ */
 class BitmapManager {
-    static GameBitmaps getSokobanSkin(Resources res) {
-        GameBitmaps.tileSheet = BitmapFactory.decodeResource(res, R.drawable.sokoban);
+    private static final int MAX_ATLASES = 2;
+
+    private static GameBitmaps skin;
+
+    // 依格子大小，最近使用的排在最後
+    private static final Map<Integer, TileAtlas> atlases = new LinkedHashMap<Integer, TileAtlas>(MAX_ATLASES + 1, 1f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, TileAtlas> eldest) {
+            return size() > MAX_ATLASES;
+        }
+    };
+
+    private static boolean registered;
+
+    /**
+     * 傳回 tile sheet；第一次呼叫時解碼，之後都傳回同一個。
+     *
+     * @param context Context 物件。
+     *
+     * @return GameBitmaps 物件。
+     */
+    static synchronized GameBitmaps getSokobanSkin(Context context) {
+        registerCallbacks(context);
+
+        if (skin == null) {
+            skin = createSokobanSkin(BitmapFactory.decodeResource(context.getResources(), R.drawable.sokoban));
+        }
+
+        return skin;
+    }
+
+    /**
+     * 傳回縮放到 cellSize 的 TileAtlas；快取裡沒有時建立。
+     *
+     * @param context  Context 物件。
+     * @param cellSize 格子的大小 (pixels)。
+     *
+     * @return TileAtlas 物件。
+     */
+    static synchronized TileAtlas getTileAtlas(Context context, int cellSize) {
+        cellSize = Math.max(cellSize, 1);
+
+        TileAtlas atlas = atlases.get(cellSize);
+
+        if (atlas == null) {
+            atlas = new TileAtlas(getSokobanSkin(context), cellSize);
+
+            atlases.put(cellSize, atlas);
+        }
+
+        return atlas;
+    }
+
+    /**
+     * 依系統的記憶體狀況放掉快取。
+     *
+     * @param level ComponentCallbacks2.TRIM_MEMORY_* 。
+     */
+    static synchronized void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            atlases.clear();
+        }
+
+        if ((level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND)
+                || (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL)) {
+            skin = null;
+        }
+    }
+
+    /**
+     * 第一次使用時，向 Application 註冊記憶體不足的通知。
+     *
+     * @param context Context 物件。
+     */
+    private static void registerCallbacks(Context context) {
+        if (registered) {
+            return;
+        }
+
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                trimMemory(level);
+            }
+
+            @Override
+            public void onLowMemory() {
+                trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+        });
 
+        registered = true;
+    }
+
+    /**
+     * 建立描述 tile sheet 上各個 tile 位置的 GameBitmaps。
+     *
+     * 所有的 Rect 在建立時就算好，存在 final 欄位裡，之後只被讀取：縮圖的背景執行緒和
+     * TileAtlas 可以同時使用同一個 GameBitmaps，不需要加鎖。
+     *
+     * @param tileSheet 解碼後的 tile sheet。
+     *
+     * @return GameBitmaps 物件。
+     */
+    private static GameBitmaps createSokobanSkin(final Bitmap tileSheet) {
         return new GameBitmaps() {
             private final int TILE_PER_LINE = 8;
-            private final float TILE_WIDTH = GameBitmaps.tileSheet.getWidth() / TILE_PER_LINE;
-
-            private Rect mTileBlank = null;
-            private Rect mTileBoxOnFloor = null;
-            private Rect mTileBoxOnGoal = null;
-            private Rect mTileEmpty = null;
-            private Rect mTileFloor = null;
-            private Rect mTileGoal = null;
-            private Rect mTileWall = null;
+            private final float TILE_WIDTH = tileSheet.getWidth() / TILE_PER_LINE;
 
-            private Rect mTileManFaceDown = null;
-            private Rect mTileManFaceLeft = null;
-            private Rect mTileManFaceRight = null;
-            private Rect mTileManFaceUp = null;
+            private final Rect mTileBlank = tileAt(3, 1, 4, 1);
+            private final Rect mTileBoxOnFloor = tileAt(0, 0, 1, 1);
+            private final Rect mTileBoxOnGoal = tileAt(1, 0, 2, 1);
+            private final Rect mTileEmpty = tileAt(2, 1, 3, 2);
+            private final Rect mTileFloor = tileAt(0, 1, 1, 2);
+            private final Rect mTileGoal = tileAt(1, 1, 2, 2);
+            private final Rect mTileWall = tileAt(2, 0, 3, 1);
 
+            // 依 FACE_DOWN, FACE_LEFT, FACE_RIGHT, FACE_UP 的順序
             private final Rect[] tileManFacing = {
-                getTileManFaceDown(),
-                getTileManFaceLeft(),
-                getTileManFaceRight(),
-                getTileManFaceUp()
+                tileAt(1, 2, 2, 3),
+                tileAt(1, 3, 2, 4),
+                tileAt(0, 2, 1, 3),
+                tileAt(0, 3, 1, 4)
             };
 
+            /**
+             * 傳回 tile sheet。
+             *
+             * @return Bitmap 物件。
+             */
+            public Bitmap getTileSheet() {
+                return tileSheet;
+            }
+
             /**
              * 傳回 bitmap 上 Blank 的 Tile 區域 Rect 物件。
              *
              * @return Rect 物件。
              */
             public Rect getTileBlank() {
-                if (mTileBlank == null) {
-                    int left = (int) (TILE_WIDTH * 3);
-                    int top = (int) TILE_WIDTH;
-                    int right = (int) (TILE_WIDTH * 4) - 1;
-                    int bottom = (int) TILE_WIDTH - 1;
-
-                    mTileBlank = new Rect(left, top, right, bottom);
-                }
-
                 return mTileBlank;
             }
 
@@ -56,15 +173,6 @@ class BitmapManager {
              * @return Rect 物件。
              */
             public Rect getTileBoxOnFloor() {
-                if (mTileBoxOnFloor == null) {
-                    int left = 0;
-                    int top = 0;
-                    int right = (int) TILE_WIDTH - 1;
-                    int bottom = (int) TILE_WIDTH - 1;
-
-                    mTileBoxOnFloor = new Rect(left, top, right, bottom);
-                }
-
                 return mTileBoxOnFloor;
             }
 
@@ -74,15 +182,6 @@ class BitmapManager {
              * @return Rect 物件。
              */
             public Rect getTileBoxOnGoal() {
-                if (mTileBoxOnGoal == null) {
-                    int left = (int) TILE_WIDTH;
-                    int top = 0;
-                    int right = (int) (TILE_WIDTH * 2) - 1;
-                    int bottom = (int) TILE_WIDTH - 1;
-
-                    mTileBoxOnGoal = new Rect(left, top, right, bottom);
-                }
-
                 return mTileBoxOnGoal;
             }
 
@@ -92,15 +191,6 @@ class BitmapManager {
              * @return Rect 物件。
              */
             public Rect getTileEmpty() {
-                if (mTileEmpty == null) {
-                    int left = (int) (TILE_WIDTH * 2);
-                    int top = (int) TILE_WIDTH;
-                    int right = (int) (TILE_WIDTH * 3) - 1;
-                    int bottom = (int) (TILE_WIDTH * 2) - 1;
-
-                    mTileEmpty = new Rect(left, top, right, bottom);
-                }
-
                 return mTileEmpty;
             }
 
@@ -110,15 +200,6 @@ class BitmapManager {
              * @return Rect 物件。
              */
             public Rect getTileFloor() {
-                if (mTileFloor == null) {
-                    int left = 0;
-                    int top = (int) TILE_WIDTH;
-                    int right = (int) TILE_WIDTH - 1;
-                    int bottom = (int) (TILE_WIDTH * 2) - 1;
-
-                    mTileFloor = new Rect(left, top, right, bottom);
-                }
-
                 return mTileFloor;
             }
 
@@ -128,15 +209,6 @@ class BitmapManager {
              * @return Rect 物件。
              */
             public Rect getTileGoal() {
-                if (mTileGoal == null) {
-                    int left = (int) TILE_WIDTH;
-                    int top = (int) TILE_WIDTH;
-                    int right = (int) (TILE_WIDTH * 2) - 1;
-                    int bottom = (int) (TILE_WIDTH * 2) - 1;
-
-                    mTileGoal = new Rect(left, top, right, bottom);
-                }
-
                 return mTileGoal;
             }
 
@@ -155,89 +227,28 @@ class BitmapManager {
              * @return Rect 物件。
              */
             public Rect getTileWall() {
-                if (mTileWall == null) {
-                    int left = (int) (TILE_WIDTH * 2);
-                    int top = 0;
-                    int right = (int) (TILE_WIDTH * 3) - 1;
-                    int bottom = (int) TILE_WIDTH - 1;
-
-                    mTileWall = new Rect(left, top, right, bottom);
-                }
-
                 return mTileWall;
             }
 
             /**
-             * 傳回 bitmap 上 ManFaceDown 的 Tile 區域 Rect 物件。
+             * 傳回 tile sheet 上，以 tile 為單位的區域 (left, top) - (right, bottom) 的 Rect
+             * 物件；右邊和下邊各少一個 pixel。
              *
-             * @return Rect 物件。
-             */
-            private Rect getTileManFaceDown() {
-                if (mTileManFaceDown == null) {
-                    int left = (int) TILE_WIDTH;
-                    int top = (int) (TILE_WIDTH * 2);
-                    int right = (int) (TILE_WIDTH * 2) - 1;
-                    int bottom = (int) (TILE_WIDTH * 3) - 1;
-
-                    mTileManFaceDown = new Rect(left, top, right, bottom);
-                }
-
-                return mTileManFaceDown;
-            }
-
-            /**
-             * 傳回 bitmap 上 ManFaceLeft 的 Tile 區域 Rect 物件。
+             * @param left   左邊 (第幾個 tile)。
+             * @param top    上邊 (第幾個 tile)。
+             * @param right  右邊 (第幾個 tile)。
+             * @param bottom 下邊 (第幾個 tile)。
              *
              * @return Rect 物件。
              */
-            private Rect getTileManFaceLeft() {
-                if (mTileManFaceLeft == null) {
-                    int left = (int) TILE_WIDTH;
-                    int top = (int) (TILE_WIDTH * 3);
-                    int right = (int) (TILE_WIDTH * 2) - 1;
-                    int bottom = (int) (TILE_WIDTH * 4) - 1;
-
-                    mTileManFaceLeft = new Rect(left, top, right, bottom);
-                }
-
-                return mTileManFaceLeft;
-            }
-
-            /**
-             * 傳回 bitmap 上 ManFaceRight 的 Tile 區域 Rect 物件。
-             *
-             * @return Rect 物件。
-             */
-            private Rect getTileManFaceRight() {
-                if (mTileManFaceRight == null) {
-                    int left = 0;
-                    int top = (int) (TILE_WIDTH * 2);
-                    int right = (int) TILE_WIDTH - 1;
-                    int bottom = (int) (TILE_WIDTH * 3) - 1;
-
-                    mTileManFaceRight = new Rect(left, top, right, bottom);
-                }
-
-                return mTileManFaceRight;
-            }
-
-            /**
-             * 傳回 bitmap 上 ManFaceUp 的 Tile 區域 Rect 物件。
-             *
-             * @return Rect 物件。
-             */
-            private Rect getTileManFaceUp() {
-                if (mTileManFaceUp == null) {
-                    int left = 0;
-                    int top = (int) (TILE_WIDTH * 3);
-                    int right = (int) TILE_WIDTH - 1;
-                    int bottom = (int) (TILE_WIDTH * 4) - 1;
-
-                    mTileManFaceUp = new Rect(left, top, right, bottom);
-                }
-
-                return mTileManFaceUp;
+            private Rect tileAt(int left, int top, int right, int bottom) {
+                return new Rect(
+                    (int) (TILE_WIDTH * left),
+                    (int) (TILE_WIDTH * top),
+                    (int) (TILE_WIDTH * right) - 1,
+                    (int) (TILE_WIDTH * bottom) - 1
+                );
             }
         };
     }
-}
\ No newline at end of file
+}
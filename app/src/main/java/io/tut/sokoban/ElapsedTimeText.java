@@ -0,0 +1,85 @@
+package io.tut.sokoban;
+
+/**
+ * 遊戲時間的顯示文字，格式與 R.string.str_formated_time 相同 ("00:00:00:000")。
+ *
+ * 文字存放在固定的 char[] 裡，更新時只改變有變動的數字，不建立任何物件；GameView 每一
+ * 格畫面都直接以 Canvas.drawText(char[], ...) 畫出。
+ */
+final class ElapsedTimeText {
+    private static final int MAX_HOURS = 99;
+
+    private final char[] mChars = {'0', '0', ':', '0', '0', ':', '0', '0', ':', '0', '0', '0'};
+
+    /**
+     * 以 elapsedTime 更新文字。
+     *
+     * @param elapsedTime 遊戲時間 (毫秒)；超過 99 小時顯示為 99。
+     *
+     * @return true: 文字改變了； false: otherwise。
+     */
+    boolean set(long elapsedTime) {
+        int millis = (int) (elapsedTime % 1000);
+        long seconds = elapsedTime / 1000;
+        long minutes = seconds / 60;
+        int hours = (int) Math.min(minutes / 60, MAX_HOURS);
+
+        boolean changed = setDigits(0, 2, hours);
+
+        changed |= setDigits(3, 2, (int) (minutes % 60));
+        changed |= setDigits(6, 2, (int) (seconds % 60));
+        changed |= setDigits(9, 3, millis);
+
+        return changed;
+    }
+
+    /**
+     * 傳回存放文字的陣列；內容會隨 set() 改變，不可修改。
+     *
+     * @return char[] 文字。
+     */
+    char[] chars() {
+        return mChars;
+    }
+
+    /**
+     * 傳回文字的長度。
+     *
+     * @return int 字元數。
+     */
+    int length() {
+        return mChars.length;
+    }
+
+    @Override
+    public String toString() {
+        return new String(mChars);
+    }
+
+    /**
+     * 把 value 寫成 count 位數字，放在 mChars[start] 開始的位置。
+     *
+     * @param start 第一個數字的位置。
+     * @param count 位數。
+     * @param value 數值 (0 到 10^count - 1)。
+     *
+     * @return true: 有數字改變； false: otherwise。
+     */
+    private boolean setDigits(int start, int count, int value) {
+        boolean changed = false;
+
+        for (int i = start + count - 1; i >= start; i--) {
+            char digit = (char) ('0' + value % 10);
+
+            if (mChars[i] != digit) {
+                mChars[i] = digit;
+
+                changed = true;
+            }
+
+            value /= 10;
+        }
+
+        return changed;
+    }
+}
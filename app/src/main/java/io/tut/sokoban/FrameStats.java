@@ -0,0 +1,174 @@
+package io.tut.sokoban;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * 畫面繪製時間的統計；View 和 SurfaceView 兩種繪圖方式 (見 GameActivity) 以同樣的方式
+ * 量測 (只計算畫一格畫面本身的時間，不含等待 vsync 或畫面緩衝區)，可以直接比較。
+ *
+ * 每畫完 REPORT_INTERVAL 格畫面，在 logcat 印出一行 (tag "SOKOBAN")：
+ *
+ *     frames[surface] n=600 p50=1.20ms p90=2.05ms p99=4.80ms max=9.31ms over16ms=0
+ *
+ * 記錄只寫入預先配置的陣列；排序和建立字串交給背景的 "frame-stats" 執行緒，不在繪圖
+ * 的執行緒上做。
+ *
+ * 只有 debug 版本，或是 tag 開啟了 DEBUG 等級時才記錄；release 版本要量測時：
+ *
+ *     adb shell setprop log.tag.SOKOBAN DEBUG
+ *
+ * 設定在建立 FrameStats (開啟關卡) 時讀取。
+ */
+final class FrameStats {
+    private static final String TAG = "SOKOBAN";
+
+    static final int REPORT_INTERVAL = 600;
+
+    // 60 Hz 一格畫面的時間
+    private static final long FRAME_BUDGET_NANOS = 16666667L;
+
+    // 所有 FrameStats 共用的背景執行緒；第一次印出統計時才建立
+    private static Handler sReportHandler;
+
+    private final String mName;
+
+    private final boolean mEnabled;
+
+    private final long[] mSamples = new long[REPORT_INTERVAL];
+    private final long[] mSorted = new long[REPORT_INTERVAL];
+
+    private int mCount;
+
+    // mSorted 裡有一份還沒印出的統計
+    private volatile boolean mReporting;
+
+    private final Runnable mReport = new Runnable() {
+        @Override
+        public void run() {
+            Log.i(TAG, format(mName, mSorted, REPORT_INTERVAL));
+
+            mReporting = false;
+        }
+    };
+
+    /**
+     * 建構子。
+     *
+     * @param name 繪圖方式的名稱 (印在統計裡)。
+     */
+    FrameStats(String name) {
+        mName = name;
+
+        mEnabled = BuildConfig.DEBUG || Log.isLoggable(TAG, Log.DEBUG);
+    }
+
+    /**
+     * 記錄一格畫面的繪製時間；累積 REPORT_INTERVAL 格之後，把這一批交給背景執行緒印出，
+     * 重新開始。上一批還沒印完時，這一批不印。沒有開啟統計時什麼都不做。
+     *
+     * @param nanos 繪製時間 (奈秒)。
+     */
+    void record(long nanos) {
+        if (!mEnabled) {
+            return;
+        }
+
+        mSamples[mCount++] = nanos;
+
+        if (mCount < REPORT_INTERVAL) {
+            return;
+        }
+
+        mCount = 0;
+
+        if (mReporting) {
+            return;
+        }
+
+        mReporting = true;
+
+        System.arraycopy(mSamples, 0, mSorted, 0, REPORT_INTERVAL);
+
+        reportHandler().post(mReport);
+    }
+
+    /**
+     * 排序一批繪製時間，傳回統計的文字。
+     *
+     * @param name    繪圖方式的名稱。
+     * @param samples 繪製時間 (奈秒)；直接排序。
+     * @param count   時間的數目。
+     *
+     * @return String 統計的文字。
+     */
+    private static String format(String name, long[] samples, int count) {
+        if (count == 0) {
+            return "frames[" + name + "] n=0";
+        }
+
+        Arrays.sort(samples, 0, count);
+
+        int overBudget = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (samples[i] > FRAME_BUDGET_NANOS) {
+                overBudget++;
+            }
+        }
+
+        return "frames[" + name + "] n=" + count
+            + " p50=" + millis(percentile(samples, count, 50))
+            + " p90=" + millis(percentile(samples, count, 90))
+            + " p99=" + millis(percentile(samples, count, 99))
+            + " max=" + millis(samples[count - 1])
+            + " over16ms=" + overBudget;
+    }
+
+    /**
+     * 傳回排序後的第 p 百分位數。
+     *
+     * @param sorted 排序過的繪製時間。
+     * @param count  時間的數目。
+     * @param p      百分位 (0 到 100)。
+     *
+     * @return long 奈秒。
+     */
+    private static long percentile(long[] sorted, int count, int p) {
+        return sorted[Math.min(count - 1, (count * p) / 100)];
+    }
+
+    /**
+     * 傳回印出統計的背景執行緒的 Handler；第一次呼叫時建立執行緒。
+     *
+     * @return Handler 物件。
+     */
+    private static synchronized Handler reportHandler() {
+        if (sReportHandler == null) {
+            HandlerThread thread = new HandlerThread("frame-stats", Process.THREAD_PRIORITY_BACKGROUND);
+
+            thread.start();
+
+            sReportHandler = new Handler(thread.getLooper());
+        }
+
+        return sReportHandler;
+    }
+
+    /**
+     * 把奈秒轉成 "1.23ms" 形式的文字。
+     *
+     * @param nanos 奈秒。
+     *
+     * @return String 文字。
+     */
+    private static String millis(long nanos) {
+        long hundredths = nanos / 10000;
+
+        return (hundredths / 100) + "." + ((hundredths % 100 < 10) ? "0" : "") + (hundredths % 100) + "ms";
+    }
+}
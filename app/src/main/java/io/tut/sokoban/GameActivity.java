@@ -2,46 +2,63 @@ package io.tut.sokoban;
 
 import android.app.DialogFragment;
 import android.media.MediaPlayer;
-import android.os.Handler;
 import android.os.SystemClock;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
+import android.view.Gravity;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.ProgressBar;
 
 /**
  * GameActivity，負責遊戲關卡進行的 Activity 物件。每個關卡都會建立自己的 GameActivity
  * 物件。
+ *
+ * 畫面有兩種 _繪圖方式_，由 Intent 的 KEY_RENDER_BACKEND 選擇 (預設是 View)：
+ *
+ *   RENDER_BACKEND_VIEW:    GameView 在 UI 執行緒上繪圖。
+ *   RENDER_BACKEND_SURFACE: GameSurfaceView 在自己的執行緒上繪圖，GameView 疊在上面
+ *                           只處理觸控。
+ *
+ * 兩種方式都以 FrameStats 記錄每一格畫面的繪製時間，可以直接比較 (debug 版本，或開啟
+ * log.tag.SOKOBAN 的 DEBUG 等級時)。
+ *
+ * 移動動畫的速度 (每秒幾步) 由 Intent 的 KEY_MOVES_PER_SECOND 設定；0 表示不做動畫。
  */
 public class GameActivity extends AppCompatActivity {
     public static final String KEY_SELECTED_LEVEL = "Selected_Level";
+    public static final String KEY_RENDER_BACKEND = "Render_Backend";
+    public static final String KEY_MOVES_PER_SECOND = "Moves_Per_Second";
 
-    // 操作 _計時器_ 的 Handler 物件
-    private final Handler mTimerHandler = new Handler();
+    public static final String RENDER_BACKEND_VIEW = GameView.NAME;
+    public static final String RENDER_BACKEND_SURFACE = GameSurfaceView.NAME;
 
-    // 計時器；定時更新關卡使用時間
-    private final Runnable mTimer = new Runnable() {
+    // 計時器；每一格畫面更新關卡使用時間，時間的數字改變時才重繪
+    private final GameClock mClock = new GameClock(new GameClock.Callback() {
         @Override
-        public void run() {
-            mCurrentState.updateElapsedTime(
-                SystemClock.uptimeMillis() - mStartTime
-            );
+        public void onTick(long uptimeMillis) {
+            mCurrentState.updateElapsedTime(uptimeMillis - mStartTime);
 
-            mView.postInvalidate();
-
-            mTimerHandler.postDelayed(this, 37);
+            ((GameView) mView).updateElapsedTime();
         }
-    };
+    });
 
     private long mStartTime;
 
+    private float mMovesPerSecond;
+
     private GameState mCurrentState;
     private MediaPlayer mMediaPlayer;
     private SoundEffect mSoundEffect;
     private View mView;
 
+    private boolean mDestroyed;
+
     /**
-     * 遊戲關卡啟動；初始化 GameState 物件，SoundEffect 物件，和 GameView 物件。
+     * 遊戲關卡啟動；初始化 SoundEffect 物件，在背景開啟關卡索引，完成後再建立 GameState
+     * 物件和 GameView 物件。
      *
      * @param savedInstanceState
      */
@@ -49,16 +66,64 @@ public class GameActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        int selected_level = getIntent().getIntExtra(KEY_SELECTED_LEVEL, 1);
-
-        mCurrentState = new GameState(GameLevels.getInstance().getLevel(selected_level));
-        //mCurrentState.updateElapsedTime(0l);
+        final int selected_level = getIntent().getIntExtra(KEY_SELECTED_LEVEL, 1);
 
         mSoundEffect = new SoundEffect(this);
 
-        mView = new GameView(this);
+        mMovesPerSecond = getIntent().getFloatExtra(KEY_MOVES_PER_SECOND, MoveAnimator.DEFAULT_MOVES_PER_SECOND);
+
+        // 關卡索引在背景開啟 (第一次啟動時要掃描關卡集)；完成前只顯示 ProgressBar
+        FrameLayout progressFrame = new FrameLayout(this);
 
-        setContentView(mView);
+        progressFrame.addView(new ProgressBar(this), new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT, Gravity.CENTER));
+
+        setContentView(progressFrame);
+
+        GameLevels.load(this, new GameLevels.OnLoadedListener() {
+            @Override
+            public void onLoaded(GameLevels levels) {
+                if (mDestroyed) {
+                    return;
+                }
+
+                mCurrentState = new GameState(levels.getLevel(selected_level));
+
+                showLevel();
+            }
+        });
+    }
+
+    /**
+     * 建立畫面 (GameView，以及 GameSurfaceView)；GameState 必須已經建立。
+     */
+    private void showLevel() {
+        GameView gameView = new GameView(this);
+
+        mView = gameView;
+
+        if (RENDER_BACKEND_SURFACE.equals(getIntent().getStringExtra(KEY_RENDER_BACKEND))) {
+            GameSurfaceView surfaceView = new GameSurfaceView(this, mMovesPerSecond);
+
+            gameView.setRenderTarget(surfaceView);
+
+            FrameLayout frame = new FrameLayout(this);
+
+            frame.addView(surfaceView);
+            frame.addView(gameView);
+
+            setContentView(frame);
+        }
+        else {
+            setContentView(mView);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        mDestroyed = true;
+
+        super.onDestroy();
     }
 
     /**
@@ -73,7 +138,7 @@ public class GameActivity extends AppCompatActivity {
 
         mMediaPlayer = null;
 
-        mTimerHandler.removeCallbacks(mTimer);
+        mClock.stop();
     }
 
     /**
@@ -88,11 +153,24 @@ public class GameActivity extends AppCompatActivity {
 
         mMediaPlayer.start();
 
-        if (mCurrentState.getGameStatus() == GameState.GAMING) {
-            mTimerHandler.postDelayed(mTimer, 37);
+        // 關卡還在載入時沒有 GameState
+        if ((mCurrentState != null) && mCurrentState.isPlaying()) {
+            mClock.start();
         }
     }
 
+    /**
+     * 視窗失去焦點 (例如對話框，通知欄) 時，計時器降到每秒更新一次；取回焦點時恢復。
+     *
+     * @param hasFocus 視窗是否有焦點。
+     */
+    @Override
+    public void onWindowFocusChanged(boolean hasFocus) {
+        super.onWindowFocusChanged(hasFocus);
+
+        mClock.setLowRate(!hasFocus);
+    }
+
     /**
      * TouchEvent 由 View 物件傳回後，作最後的遊戲狀態檢查以控制遊戲流程。
      *
@@ -102,7 +180,7 @@ public class GameActivity extends AppCompatActivity {
      */
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        if (event.getAction() != MotionEvent.ACTION_DOWN) {
+        if ((event.getAction() != MotionEvent.ACTION_DOWN) || (mCurrentState == null)) {
             return true;
         }
 
@@ -112,12 +190,12 @@ public class GameActivity extends AppCompatActivity {
 
             mStartTime = SystemClock.uptimeMillis();
 
-            mTimerHandler.postDelayed(mTimer, 37);
+            mClock.start();
         }
 
         // 檢查遊戲是否 _通關_ 或者 _放棄_ 顯示相應的 _對話框_ (dialog)。
         if ((mCurrentState.getGameStatus() == GameState.SOLVED) || (mCurrentState.getGameStatus() == GameState.STUCK)) {
-            mTimerHandler.removeCallbacks(mTimer);
+            mClock.stop();
 
             DialogFragment dialog = new LevelClosingDialog();
 
@@ -126,7 +204,7 @@ public class GameActivity extends AppCompatActivity {
 
             args.putBoolean("solved", mCurrentState.getGameStatus() == GameState.SOLVED);
 
-            args.putInt("steps", mCurrentState.getSolvingSteps().length());
+            args.putInt("steps", mCurrentState.getStepCount());
 
             args.putString("elapsed", ((GameView) mView).getElapsedTime());
 
@@ -141,12 +219,21 @@ public class GameActivity extends AppCompatActivity {
     /**
      * 傳回目前關卡的 GameState (遊戲狀態) 物件。
      *
-     * @return GameState 物件。
+     * @return GameState 物件；關卡還在載入時是 null (這時還沒有 GameView)。
      */
     public GameState getCurrentState() {
         return mCurrentState;
     }
 
+    /**
+     * 傳回移動動畫的速度。
+     *
+     * @return float 每秒幾步；0 表示不做動畫。
+     */
+    public float getMovesPerSecond() {
+        return mMovesPerSecond;
+    }
+
     /**
      * 傳回目前關卡的 SoundEffect (音效) 物件。
      *
@@ -9,7 +9,30 @@ abstract class GameBitmaps {
     static final int FACE_RIGHT = 2;
     static final int FACE_UP = 3;
 
-    static Bitmap tileSheet = null;
+    /**
+     * 傳回工人往 BoardLayout 的 direction 方向移動時，面對的方向。
+     *
+     * @param direction BoardLayout.DIR_* 方向。
+     *
+     * @return int FACE_* 方向。
+     */
+    static int faceOf(int direction) {
+        switch (direction) {
+            case BoardLayout.DIR_LEFT:
+                return FACE_LEFT;
+
+            case BoardLayout.DIR_UP:
+                return FACE_UP;
+
+            case BoardLayout.DIR_DOWN:
+                return FACE_DOWN;
+
+            default:
+                return FACE_RIGHT;
+        }
+    }
+
+    abstract public Bitmap getTileSheet();
 
     abstract public Rect getTileBlank();
 
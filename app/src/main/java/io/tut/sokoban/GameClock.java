@@ -0,0 +1,172 @@
+package io.tut.sokoban;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+/**
+ * 遊戲的 _計時器_；每一格畫面 (vsync) 呼叫一次 Callback。
+ *
+ * API 16 以上以 Choreographer 跟著螢幕的 vsync 觸發，不會和畫面的更新錯開；更舊的
+ * 系統以 Handler 每 FALLBACK_FRAME_MILLIS 毫秒觸發。
+ *
+ * 低速模式 (setLowRate()，例如視窗失去焦點時) 改以 Handler 每 LOW_RATE_MILLIS 毫秒
+ * 觸發一次。
+ */
+final class GameClock {
+    /**
+     * 計時器觸發時呼叫。
+     */
+    interface Callback {
+        /**
+         * @param uptimeMillis 目前的 SystemClock.uptimeMillis()。
+         */
+        void onTick(long uptimeMillis);
+    }
+
+    static final long LOW_RATE_MILLIS = 1000;
+
+    private static final long FALLBACK_FRAME_MILLIS = 16;
+
+    private final Callback mCallback;
+
+    private final Handler mHandler = new Handler();
+
+    private final Runnable mHandlerTick = new Runnable() {
+        @Override
+        public void run() {
+            tick();
+        }
+    };
+
+    // API 16 以上才建立
+    private final VsyncSource mVsync;
+
+    private boolean mRunning;
+    private boolean mLowRate;
+
+    /**
+     * 建構子；必須在 UI 執行緒上建立。
+     *
+     * @param callback 計時器觸發時呼叫的 Callback。
+     */
+    GameClock(Callback callback) {
+        mCallback = callback;
+
+        mVsync = (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) ? new VsyncSource() : null;
+    }
+
+    /**
+     * 開始計時；已經開始時不做任何事。
+     */
+    void start() {
+        if (mRunning) {
+            return;
+        }
+
+        mRunning = true;
+
+        schedule();
+    }
+
+    /**
+     * 停止計時。
+     */
+    void stop() {
+        mRunning = false;
+
+        cancel();
+    }
+
+    /**
+     * 是否正在計時。
+     *
+     * @return true: 正在計時； false: otherwise。
+     */
+    boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * 切換低速模式。
+     *
+     * @param lowRate true: 每 LOW_RATE_MILLIS 毫秒觸發一次； false: 每一格畫面觸發。
+     */
+    void setLowRate(boolean lowRate) {
+        if (mLowRate == lowRate) {
+            return;
+        }
+
+        mLowRate = lowRate;
+
+        if (mRunning) {
+            cancel();
+            schedule();
+        }
+    }
+
+    /**
+     * 觸發 Callback，並安排下一次。
+     */
+    private void tick() {
+        if (!mRunning) {
+            return;
+        }
+
+        mCallback.onTick(SystemClock.uptimeMillis());
+
+        // Callback 可能已經停止計時
+        if (mRunning) {
+            schedule();
+        }
+    }
+
+    /**
+     * 安排下一次觸發。
+     */
+    private void schedule() {
+        if (mLowRate) {
+            mHandler.postDelayed(mHandlerTick, LOW_RATE_MILLIS);
+        }
+        else if (mVsync != null) {
+            mVsync.post();
+        }
+        else {
+            mHandler.postDelayed(mHandlerTick, FALLBACK_FRAME_MILLIS);
+        }
+    }
+
+    /**
+     * 取消已經安排的觸發。
+     */
+    private void cancel() {
+        mHandler.removeCallbacks(mHandlerTick);
+
+        if (mVsync != null) {
+            mVsync.remove();
+        }
+    }
+
+    /**
+     * 以 Choreographer 在下一次 vsync 觸發；只在 API 16 以上載入。
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private final class VsyncSource implements Choreographer.FrameCallback {
+        private final Choreographer mChoreographer = Choreographer.getInstance();
+
+        void post() {
+            mChoreographer.postFrameCallback(this);
+        }
+
+        void remove() {
+            mChoreographer.removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            tick();
+        }
+    }
+}
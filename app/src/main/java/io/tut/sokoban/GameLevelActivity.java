@@ -5,25 +5,19 @@ import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
 import android.widget.GridView;
 
 public class GameLevelActivity extends AppCompatActivity {
+    private LevelGridAdapter mAdapter;
+
+    private boolean mDestroyed;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_game_level);
 
-        GridView gv_levels = (GridView) findViewById(R.id.gv_levels);
-
-        ArrayAdapter<String> arrayAdapter = new ArrayAdapter<>(
-            this,
-            R.layout.gv_levels_item_textview,
-            GameLevels.getInstance().getLevelList()
-        );
-
-        gv_levels.setAdapter(arrayAdapter);
+        final GridView gv_levels = (GridView) findViewById(R.id.gv_levels);
 
         gv_levels.setOnItemClickListener(new AdapterView.OnItemClickListener() {
             @Override
@@ -35,5 +29,33 @@ public class GameLevelActivity extends AppCompatActivity {
                 startActivity(intent);
             }
         });
+
+        // 關卡索引在背景開啟 (第一次啟動時要掃描關卡集)；完成前只顯示 ProgressBar
+        GameLevels.load(this, new GameLevels.OnLoadedListener() {
+            @Override
+            public void onLoaded(GameLevels levels) {
+                if (mDestroyed) {
+                    return;
+                }
+
+                mAdapter = new LevelGridAdapter(GameLevelActivity.this, levels);
+
+                gv_levels.setAdapter(mAdapter);
+
+                findViewById(R.id.pb_levels).setVisibility(View.GONE);
+                gv_levels.setVisibility(View.VISIBLE);
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        mDestroyed = true;
+
+        if (mAdapter != null) {
+            mAdapter.release();
+        }
+
+        super.onDestroy();
     }
 }
@@ -1,75 +1,247 @@
 package io.tut.sokoban;
 
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.AssetManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * 遊戲的所有關卡；從 assets/levels/ 下的 XSB (或 SOK) 關卡集讀取，依檔名排序。
+ *
+ * 每個關卡集有一個二進位索引檔 (見 LevelIndex)，放在 App 的 files/levels/ 下；第一次
+ * 啟動 (或 App 更新) 時掃描關卡集建立，之後只要 map 索引檔，不論有幾個關卡都不必再
+ * 掃描。關卡盤面在 getLevel() 時才讀取，而且只讀取那一個關卡。
+ *
+ * 關卡集以不壓縮的方式放進 APK (見 build.gradle 的 aaptOptions)，讀取後面的關卡時可以
+ * 直接跳過前面的內容，不必解壓縮。
+ *
+ * 建立索引要掃描整個關卡集，不能在 UI 執行緒上做；UI 執行緒應該以 load() 在背景開啟，
+ * 完成後才使用 getInstance()。
+ */
 class GameLevels {
-    private static final String[] LEVEL_I = new String[] {
-            "############",
-            "#         .#",
-            "#          #",
-            "#          #",
-            "#   ####   #",
-            "#          #",
-            "#          #",
-            "#    $     #",
-            "#    @     #",
-            "#          #",
-            "#          #",
-            "############"
-    };
-
-    private static final String[] LEVEL_II = {
-            "------------",
-            "------------",
-            "--#######---",
-            "--# ..$ #---",
-            "--# # $ #---",
-            "--# # # #---",
-            "--# $@# #---",
-            "--#.$   #---",
-            "--#.#####---",
-            "--###-------",
-            "------------",
-            "------------"
-    };
-
-    // 注意：因為 "初始化順序“ (initialization order) 的問題，
-    // static final GameLevels INSTACE "一定" 放在最後。
-    private static final GameLevels INSTANCE = new GameLevels();
-
-    private final ArrayList<String[]> originalLevels = new ArrayList<>();
-
-    static GameLevels getInstance() {
-        return INSTANCE;
+    /**
+     * load() 完成時在 UI 執行緒上呼叫。
+     */
+    interface OnLoadedListener {
+        /**
+         * @param levels GameLevels 物件。
+         */
+        void onLoaded(GameLevels levels);
     }
 
-    String[] getLevel(int level) {
-        return originalLevels.get(level - 1);
+    private static final String TAG = "SOKOBAN";
+
+    private static final String LEVEL_DIR = "levels";
+
+    private static GameLevels sInstance;
+
+    private final List<LevelIndex> mIndexes = new ArrayList<>();
+    private final List<LevelPack.Source> mSources = new ArrayList<>();
+
+    // 每個關卡集的第一個關卡 (從 0 開始) 在所有關卡裡的位置
+    private int[] mFirstLevels;
+
+    private int mNumLevels;
+
+    /**
+     * 傳回 GameLevels 物件；第一次呼叫時開啟 (必要時建立) 所有關卡集的索引。
+     *
+     * @param context 任何 Context；用來取得 AssetManager 和存放索引的目錄。
+     *
+     * @return GameLevels 物件。
+     */
+    static synchronized GameLevels getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new GameLevels(context.getApplicationContext());
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * 在背景執行緒開啟 (必要時建立) 所有關卡集的索引，完成後在 UI 執行緒上呼叫 listener；
+     * 已經開啟過時直接呼叫。
+     *
+     * @param context  任何 Context。
+     * @param listener 完成時呼叫的 OnLoadedListener。
+     */
+    static void load(Context context, final OnLoadedListener listener) {
+        synchronized (GameLevels.class) {
+            if (sInstance != null) {
+                listener.onLoaded(sInstance);
+
+                return;
+            }
+        }
+
+        final Context appContext = context.getApplicationContext();
+        final Handler handler = new Handler(Looper.getMainLooper());
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+                final GameLevels levels = getInstance(appContext);
+
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onLoaded(levels);
+                    }
+                });
+            }
+        }, "level-index").start();
     }
 
     /**
-     * 傳回 _關卡_ 列表。
+     * 傳回指定關卡的 _初始盤面_。
+     *
+     * @param level 關卡 (從 1 開始)。
      *
-     * @return 關卡名稱的 List<>
+     * @return String[] 關卡的 _初始盤面_。
      */
-    List<String> getLevelList() {
-        List<String> levelList = new ArrayList<>();
+    String[] getLevel(int level) {
+        int pack = packOf(level);
+        int index = level - 1 - mFirstLevels[pack];
 
-        int numOfLevels = originalLevels.size();
+        LevelIndex levels = mIndexes.get(pack);
 
-        for (int i = 1; i <= numOfLevels; i ++) {
-            levelList.add("第" + i + "關");
+        try {
+            return LevelPack.readLevel(mSources.get(pack), levels.getOffset(index), levels.getLength(index));
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("無法讀取第 " + level + " 關", e);
         }
+    }
+
+    /**
+     * 傳回指定關卡盤面內容的雜湊值 (見 LevelPack.getHash())；不必讀取盤面。
+     *
+     * @param level 關卡 (從 1 開始)。
+     *
+     * @return long 雜湊值。
+     */
+    long getLevelHash(int level) {
+        int pack = packOf(level);
+
+        return mIndexes.get(pack).getHash(level - 1 - mFirstLevels[pack]);
+    }
 
-        return levelList;
+    /**
+     * 傳回 _關卡_ 數。
+     *
+     * @return int 關卡數。
+     */
+    int getLevelCount() {
+        return mNumLevels;
     }
 
     /**
      * 建構子。
+     *
+     * @param context Application Context。
+     */
+    private GameLevels(Context context) {
+        final AssetManager assets = context.getAssets();
+
+        File indexDir = new File(context.getFilesDir(), LEVEL_DIR);
+
+        if (!indexDir.isDirectory() && !indexDir.mkdirs()) {
+            Log.e(TAG, "GameLevels: cannot create " + indexDir);
+        }
+
+        long stamp = getInstallStamp(context);
+
+        String[] names;
+
+        try {
+            names = assets.list(LEVEL_DIR);
+        }
+        catch (IOException e) {
+            Log.e(TAG, "GameLevels: " + LEVEL_DIR, e);
+
+            names = new String[0];
+        }
+
+        Arrays.sort(names);
+
+        for (final String name : names) {
+            LevelPack.Source source = new LevelPack.Source() {
+                @Override
+                public InputStream open() throws IOException {
+                    return assets.open(LEVEL_DIR + "/" + name);
+                }
+            };
+
+            try {
+                LevelIndex index = LevelIndex.load(new File(indexDir, name + ".idx"), stamp, source);
+
+                mIndexes.add(index);
+                mSources.add(source);
+            }
+            catch (IOException e) {
+                // 跳過讀不到的關卡集，記錄一下
+                Log.e(TAG, "GameLevels: " + name, e);
+            }
+        }
+
+        mFirstLevels = new int[mIndexes.size()];
+
+        for (int i = 0; i < mIndexes.size(); i++) {
+            mFirstLevels[i] = mNumLevels;
+
+            mNumLevels += mIndexes.get(i).size();
+        }
+    }
+
+    /**
+     * 找出關卡所在的關卡集。
+     *
+     * @param level 關卡 (從 1 開始)。
+     *
+     * @return int 關卡集的編號。
+     */
+    private int packOf(int level) {
+        if ((level < 1) || (level > mNumLevels)) {
+            throw new IndexOutOfBoundsException("沒有第 " + level + " 關");
+        }
+
+        int pack = mFirstLevels.length - 1;
+
+        while (mFirstLevels[pack] > level - 1) {
+            pack--;
+        }
+
+        return pack;
+    }
+
+    /**
+     * 傳回 App 最後一次安裝 (或更新) 的時間；assets 裡的關卡集只會隨著 App 更新而改變，
+     * 以它做為索引的版本。
+     *
+     * @param context Context。
+     *
+     * @return long 安裝時間；取不到時傳回 0。
      */
-    private GameLevels() {
-        originalLevels.add(LEVEL_I);
-        originalLevels.add(LEVEL_II);
+    private static long getInstallStamp(Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        }
+        catch (PackageManager.NameNotFoundException e) {
+            Log.e(TAG, "GameLevels: " + context.getPackageName(), e);
+
+            return 0;
+        }
     }
-}
\ No newline at end of file
+}
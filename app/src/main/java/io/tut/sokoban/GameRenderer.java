@@ -0,0 +1,328 @@
+package io.tut.sokoban;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.support.v4.content.ContextCompat;
+
+/**
+ * 把 RenderSnapshot 畫到 Canvas 上；GameSurfaceView 的繪圖執行緒使用。
+ *
+ * 畫出來的畫面和 GameView 相同：靜態層 (牆，地板，目標，空白) 在盤面或格子大小改變時
+ * 畫一次，每一格畫面貼上靜態層，再畫箱子，工人，選取框，遊戲時間，和按鈕。快照帶來的
+ * 棋步交給自己的 MoveAnimator，動畫進行中箱子和工人畫在內插的位置。
+ *
+ * 建構之後只在繪圖執行緒上使用。
+ */
+final class GameRenderer {
+    private final Context mContext;
+
+    // 依格子大小縮放好的 tile；畫靜態層時向 BitmapManager 取得
+    private TileAtlas mAtlas;
+
+    private final int mBackgroundColor;
+    private final int mElapsedTimeColor;
+
+    private final Paint mPaint = new Paint();
+    private final Paint mSelectionPaint = new Paint();
+
+    private final Rect mCellRect = new Rect();
+    private final RectF mPieceRect = new RectF();
+
+    private final float mMovesPerSecond;
+
+    // 第一份快照時建立
+    private MoveAnimator mAnimator;
+
+    // 最後交給 mAnimator 的快照
+    private RenderSnapshot mAnimated;
+
+    private final ElapsedTimeText mElapsedTimeText = new ElapsedTimeText();
+
+    // 靜態層，和畫它時的盤面與格子大小
+    private Bitmap mStaticLayer;
+    private BoardLayout mStaticLayout;
+    private float mStaticCellWidth;
+
+    /**
+     * 建構子。
+     *
+     * @param context        擁有 GameSurfaceView 的 Activity。
+     * @param movesPerSecond 移動動畫的速度 (見 MoveAnimator.setMovesPerSecond())。
+     */
+    GameRenderer(Context context, float movesPerSecond) {
+        mMovesPerSecond = movesPerSecond;
+
+        mContext = context.getApplicationContext();
+
+        mBackgroundColor = ContextCompat.getColor(context, R.color.colorBackground);
+        mElapsedTimeColor = ContextCompat.getColor(context, R.color.colorMintCream);
+
+        mSelectionPaint.setStyle(Paint.Style.STROKE);
+        mSelectionPaint.setColor(ContextCompat.getColor(context, R.color.colorAccent));
+    }
+
+    /**
+     * 把新的快照帶來的棋步排進動畫，並把動畫推進到 nanos；每一格畫面在 draw() 之前呼叫。
+     * 快照不連續 (中間有快照被覆蓋) 時放棄動畫，直接顯示快照的盤面。
+     *
+     * @param frame 最新的快照。
+     * @param nanos 目前的時間 (System.nanoTime())。
+     */
+    void update(RenderSnapshot frame, long nanos) {
+        if (frame != mAnimated) {
+            if (mAnimator == null) {
+                mAnimator = new MoveAnimator(frame.getBoard());
+                mAnimator.setMovesPerSecond(mMovesPerSecond);
+            }
+            else if ((mAnimated == null) || (frame.getSerial() != mAnimated.getSerial() + 1)
+                         || (frame.getBoard().getLayout() != mAnimator.getLayout())) {
+                mAnimator.reset(frame.getBoard());
+            }
+            else {
+                String moves = frame.getMoves();
+
+                for (int i = 0; i < moves.length(); i++) {
+                    mAnimator.enqueue(moves.charAt(i), frame.isUndo());
+                }
+            }
+
+            mAnimated = frame;
+        }
+
+        mAnimator.update(nanos);
+
+        // 每一格畫面都畫整個盤面，不需要改變的格子
+        mAnimator.clearDirtyCells();
+    }
+
+    /**
+     * 是否有移動動畫在進行。
+     *
+     * @return true: 動畫進行中； false: otherwise。
+     */
+    boolean isAnimating() {
+        return (mAnimator != null) && mAnimator.isAnimating();
+    }
+
+    /**
+     * 畫出一格畫面。
+     *
+     * @param canvas       Canvas 物件。
+     * @param frame        要畫的內容；必須先以 update() 交給動畫。
+     * @param uptimeMillis 目前的 SystemClock.uptimeMillis()；用來推算遊戲時間。
+     */
+    void draw(Canvas canvas, RenderSnapshot frame, long uptimeMillis) {
+        BoardSnapshot board = frame.getBoard();
+        BoardLayout layout = board.getLayout();
+
+        float cellWidth = frame.getCellWidth();
+
+        if ((mStaticLayer == null) || (mStaticLayout != layout) || (mStaticCellWidth != cellWidth)) {
+            createStaticLayer(layout, cellWidth);
+        }
+
+        canvas.drawColor(mBackgroundColor);
+
+        // 盤面：靜態層，箱子，工人
+        canvas.save();
+        canvas.translate(frame.getPaddingLeft() * cellWidth, frame.getPaddingTop() * cellWidth);
+
+        canvas.drawBitmap(mStaticLayer, 0, 0, null);
+
+        if (isAnimating()) {
+            drawAnimatedPieces(canvas, layout, cellWidth);
+        }
+        else {
+            for (int i = 0; i < board.getBoxCount(); i++) {
+                int cell = board.getBoxCell(i);
+
+                drawPiece(canvas, layout, cell, layout.isGoal(cell) ? Sokoban.BOX_ON_GOAL : Sokoban.BOX, frame);
+            }
+
+            drawPiece(canvas, layout, board.getManCell(), Sokoban.MAN, frame);
+        }
+
+        if (frame.getSelectedColumn() >= 0) {
+            mSelectionPaint.setStrokeWidth(cellWidth / 12);
+
+            canvas.drawRect(getBoardRect(frame.getSelectedColumn(), frame.getSelectedRow(), cellWidth), mSelectionPaint);
+        }
+
+        canvas.restore();
+
+        drawElapsedTime(canvas, frame, uptimeMillis);
+
+        for (TuTButton button : frame.getButtons()) {
+            button.draw(canvas);
+        }
+    }
+
+    /**
+     * 釋放靜態層；下一次 draw() 時重畫。
+     */
+    void release() {
+        if (mStaticLayer != null) {
+            mStaticLayer.recycle();
+
+            mStaticLayer = null;
+        }
+
+        mStaticLayout = null;
+    }
+
+    /**
+     * 依盤面和格子大小畫出靜態層。
+     *
+     * @param layout    關卡的靜態盤面。
+     * @param cellWidth 格子的寬度 (pixels)。
+     */
+    private void createStaticLayer(BoardLayout layout, float cellWidth) {
+        release();
+
+        int width = Math.max((int) (layout.NUM_COLUMN * cellWidth), 1);
+        int height = Math.max((int) (layout.NUM_ROW * cellWidth), 1);
+
+        mAtlas = BitmapManager.getTileAtlas(mContext, (int) cellWidth);
+
+        // 盤面完全由不透明的 tile 蓋滿，不需要 alpha
+        mStaticLayer = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+
+        Canvas canvas = new Canvas(mStaticLayer);
+
+        for (int cell = 0; cell < layout.NUM_CELL; cell++) {
+            mAtlas.drawStaticTile(
+                canvas,
+                layout.getTile(cell),
+                getBoardRect(layout.columnOf(cell), layout.rowOf(cell), cellWidth)
+            );
+        }
+
+        mStaticLayout = layout;
+        mStaticCellWidth = cellWidth;
+    }
+
+    /**
+     * 在盤面上畫出一個箱子或工人。
+     *
+     * @param canvas Canvas 物件 (原點在盤面的左上角)。
+     * @param layout 關卡的靜態盤面。
+     * @param cell   格子索引。
+     * @param label  箱子或工人的 XSB 標記。
+     * @param frame  要畫的內容。
+     */
+    private void drawPiece(Canvas canvas, BoardLayout layout, int cell, char label, RenderSnapshot frame) {
+        mAtlas.drawPiece(
+            canvas,
+            label,
+            frame.getManFacing(),
+            getBoardRect(layout.columnOf(cell), layout.rowOf(cell), frame.getCellWidth())
+        );
+    }
+
+    /**
+     * 畫出 MoveAnimator 顯示中的箱子，移動中的箱子，和工人。
+     *
+     * @param canvas    Canvas 物件 (原點在盤面的左上角)。
+     * @param layout    關卡的靜態盤面。
+     * @param cellWidth 格子的寬度 (pixels)。
+     */
+    private void drawAnimatedPieces(Canvas canvas, BoardLayout layout, float cellWidth) {
+        int movingBox = mAnimator.getMovingBoxCell();
+
+        for (int cell = 0; cell < layout.NUM_CELL; cell++) {
+            if (mAnimator.isBoxAt(cell) && (cell != movingBox)) {
+                mAtlas.drawPiece(
+                    canvas,
+                    layout.isGoal(cell) ? Sokoban.BOX_ON_GOAL : Sokoban.BOX,
+                    GameBitmaps.FACE_DOWN,
+                    getBoardRect(layout.columnOf(cell), layout.rowOf(cell), cellWidth)
+                );
+            }
+        }
+
+        if (movingBox != BoardLayout.NO_CELL) {
+            drawPieceAt(
+                canvas,
+                mAnimator.getMovingBoxColumn(),
+                mAnimator.getMovingBoxRow(),
+                cellWidth,
+                layout.isGoal(movingBox) ? Sokoban.BOX_ON_GOAL : Sokoban.BOX,
+                GameBitmaps.FACE_DOWN
+            );
+        }
+
+        drawPieceAt(
+            canvas,
+            mAnimator.getManColumn(),
+            mAnimator.getManRow(),
+            cellWidth,
+            Sokoban.MAN,
+            GameBitmaps.faceOf(mAnimator.getManDirection())
+        );
+    }
+
+    /**
+     * 在 (column, row) 畫出箱子或工人；座標以格子為單位，可以有小數 (動畫中的位置)。
+     *
+     * @param canvas    Canvas 物件 (原點在盤面的左上角)。
+     * @param column    行
+     * @param row       列
+     * @param cellWidth 格子的寬度 (pixels)。
+     * @param label     箱子或工人的 XSB 標記。
+     * @param facing    工人的方向。
+     */
+    private void drawPieceAt(Canvas canvas, float column, float row, float cellWidth, char label, int facing) {
+        mPieceRect.set(column * cellWidth, row * cellWidth, (column + 1) * cellWidth, (row + 1) * cellWidth);
+
+        mAtlas.drawPiece(canvas, label, facing, mPieceRect);
+    }
+
+    /**
+     * 畫出遊戲時間。
+     *
+     * @param canvas       Canvas 物件。
+     * @param frame        要畫的內容。
+     * @param uptimeMillis 目前的 SystemClock.uptimeMillis()。
+     */
+    private void drawElapsedTime(Canvas canvas, RenderSnapshot frame, long uptimeMillis) {
+        Rect bounds = frame.getTimerBounds();
+
+        mElapsedTimeText.set(frame.getElapsedTime(uptimeMillis));
+
+        mPaint.setColor(mElapsedTimeColor);
+        mPaint.setTextSize(frame.getTimerTextSize());
+
+        canvas.drawText(
+            mElapsedTimeText.chars(),
+            0,
+            mElapsedTimeText.length(),
+            bounds.left,
+            bounds.top + (bounds.height() - (mPaint.ascent() + mPaint.descent())) / 2,
+            mPaint
+        );
+    }
+
+    /**
+     * 依據指定的 _位置_ (column, row) 算出盤面上的 Rect 座標範圍；和 GameView 的算法相同。
+     *
+     * @param column    行
+     * @param row       列
+     * @param cellWidth 格子的寬度 (pixels)。
+     *
+     * @return Rect 共用的 mCellRect，下次呼叫時會被改寫。
+     */
+    private Rect getBoardRect(int column, int row, float cellWidth) {
+        mCellRect.set(
+            (int) (column * cellWidth),
+            (int) (row * cellWidth),
+            (int) ((column + 1) * cellWidth),
+            (int) ((row + 1) * cellWidth)
+        );
+
+        return mCellRect;
+    }
+}
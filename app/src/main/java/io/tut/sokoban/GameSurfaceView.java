@@ -0,0 +1,188 @@
+package io.tut.sokoban;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.os.Process;
+import android.os.SystemClock;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+/**
+ * 以 SurfaceView 顯示遊戲畫面的 _繪圖方式_ (見 GameActivity.KEY_RENDER_BACKEND)。
+ *
+ * 畫面由自己的繪圖執行緒畫出，不佔用 UI 執行緒：UI 執行緒 (GameView 仍然負責觸控) 每次
+ * 改變盤面之後以 publish() 交出一份不會再變動的 RenderSnapshot，繪圖執行緒以固定的時間
+ * 間隔 (FRAME_NANOS) 取最新的一份畫出來。兩個執行緒之間只有一個 volatile 欄位。
+ *
+ * 畫不完時直接跳過錯過的格子，不會累積；畫面沒有改變 (沒有在計時，也沒有移動動畫) 時
+ * 不重畫。
+ */
+final class GameSurfaceView extends SurfaceView implements SurfaceHolder.Callback {
+    static final String NAME = "surface";
+
+    // 60 Hz
+    private static final long FRAME_NANOS = 1000000000L / 60;
+
+    private final GameRenderer mRenderer;
+
+    private volatile RenderSnapshot mSnapshot;
+
+    private RenderThread mThread;
+
+    /**
+     * 建構子。
+     *
+     * @param context        擁有這個 View 的 Activity。
+     * @param movesPerSecond 移動動畫的速度 (見 MoveAnimator.setMovesPerSecond())。
+     */
+    GameSurfaceView(Context context, float movesPerSecond) {
+        super(context);
+
+        mRenderer = new GameRenderer(context, movesPerSecond);
+
+        getHolder().addCallback(this);
+    }
+
+    /**
+     * 交出新的畫面內容；繪圖執行緒在下一個時間間隔畫出來。可以在任何執行緒上呼叫。
+     *
+     * @param snapshot 畫面內容。
+     */
+    void publish(RenderSnapshot snapshot) {
+        mSnapshot = snapshot;
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        mThread = new RenderThread(holder);
+        mThread.start();
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        // 畫面的配置由 GameView 算好，放在 RenderSnapshot 裡
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        // Surface 在這個方法傳回之後就不能再用，必須等繪圖執行緒結束
+        mThread.quit();
+
+        boolean interrupted = false;
+
+        while (mThread.isAlive()) {
+            try {
+                mThread.join();
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        mThread = null;
+
+        mRenderer.release();
+    }
+
+    /**
+     * 繪圖執行緒；每 FRAME_NANOS 奈秒畫一格畫面。
+     */
+    private final class RenderThread extends Thread {
+        private final SurfaceHolder mHolder;
+
+        private final FrameStats mFrameStats = new FrameStats(NAME);
+
+        private volatile boolean mRunning = true;
+
+        // 上一次畫出的內容
+        private RenderSnapshot mDrawn;
+
+        RenderThread(SurfaceHolder holder) {
+            super("render");
+
+            mHolder = holder;
+        }
+
+        /**
+         * 要求執行緒結束。
+         */
+        void quit() {
+            mRunning = false;
+
+            interrupt();
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+
+            long next = System.nanoTime();
+
+            while (mRunning) {
+                long now = System.nanoTime();
+
+                if (now < next) {
+                    try {
+                        Thread.sleep((next - now) / 1000000, (int) ((next - now) % 1000000));
+                    }
+                    catch (InterruptedException e) {
+                        // quit()
+                    }
+
+                    continue;
+                }
+
+                next += FRAME_NANOS;
+
+                // 落後超過一格：跳過錯過的格子，從現在重新開始
+                if (next < now) {
+                    next = now + FRAME_NANOS;
+                }
+
+                RenderSnapshot snapshot = mSnapshot;
+
+                if (snapshot == null) {
+                    continue;
+                }
+
+                boolean animating = mRenderer.isAnimating();
+
+                mRenderer.update(snapshot, now);
+
+                if ((snapshot != mDrawn) || snapshot.isTiming() || animating) {
+                    drawFrame(snapshot);
+                }
+            }
+        }
+
+        /**
+         * 畫出一格畫面。
+         *
+         * @param snapshot 畫面內容。
+         */
+        private void drawFrame(RenderSnapshot snapshot) {
+            Canvas canvas = mHolder.lockCanvas();
+
+            if (canvas == null) {
+                return;
+            }
+
+            try {
+                long start = System.nanoTime();
+
+                mRenderer.draw(canvas, snapshot, SystemClock.uptimeMillis());
+
+                mFrameStats.record(System.nanoTime() - start);
+            }
+            finally {
+                mHolder.unlockCanvasAndPost(canvas);
+            }
+
+            mDrawn = snapshot;
+        }
+    }
+}
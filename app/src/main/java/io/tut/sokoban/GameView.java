@@ -1,20 +1,49 @@
 package io.tut.sokoban;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.SystemClock;
 import android.support.v4.content.ContextCompat;
+import android.support.v4.view.ViewCompat;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
+import android.widget.Toast;
 
 /**
  * GameView 負責畫面顯示，與使用者互動。
+ *
+ * 盤面分成兩層：關卡中不會改變的 _靜態層_ (牆，地板，目標，空白)，在大小改變時
+ * (onSizeChanged()) 依格子大小畫一次；箱子和工人則畫在它的一份拷貝 (盤面 Bitmap) 上。
+ * 只有 GameState 回報內容改變的格子 (見 GameState.getDirtyCellCount()) 才重畫：先從
+ * 靜態層 1:1 複製那一格，再畫上箱子或工人；onDraw() 只要把盤面 Bitmap 貼到畫面上。
+ * tile 取自 BitmapManager 依格子大小縮放好的 TileAtlas，畫每一格也是 1:1 的複製。
+ *
+ * 觸控之後只 invalidate 改變的格子和按鈕，計時器只在時間的數字改變時 invalidate 時間
+ * 的區域 (見 updateElapsedTime())。
+ *
+ * 每一步都交給 MoveAnimator，工人和箱子一步一步移過去。動畫進行中，工人不畫在盤面
+ * Bitmap 上；每一格畫面 (postOnAnimation()) 只重畫和 invalidate MoveAnimator 回報改變的
+ * 格子 (移動中的工人和箱子經過的格子)，onDraw() 再把移動中的工人和箱子畫在盤面 Bitmap
+ * 上面。動畫結束時把工人畫回它的格子。
+ *
+ * 使用 SurfaceView 繪圖方式時 (見 setRenderTarget())，GameView 只負責觸控，不再自己畫：
+ * 每次盤面或大小改變之後，建立一份 RenderSnapshot 交給 GameSurfaceView 的繪圖執行緒。
  */
 class GameView extends View {
     private static final String TAG = "SOKOBAN";
 
+    static final String NAME = "view";
+
+    // 按鈕在 mButtons 裡的位置
+    private static final int BUTTON_UNDO = 0;
+    private static final int BUTTON_START = 1;
+    private static final int BUTTON_REDO = 2;
+
     private float mButtonGap;
     private float mButtonWidth;
 
@@ -25,10 +54,41 @@ class GameView extends View {
 
     private int mManFacing = GameBitmaps.FACE_RIGHT;
 
+    // 使用者選取、準備推到別處的箱子；沒有選取時 mSelectedColumn 為 -1
+    private int mSelectedColumn = -1;
+    private int mSelectedRow;
+
     private GameActivity mGameActivity;
-    private GameBitmaps tileSheet = null;
+    // 依格子大小縮放好的 tile；大小改變時向 BitmapManager 取得
+    private TileAtlas mAtlas;
+
+    // 靜態層：牆，地板，目標，空白；只在大小改變時重畫
+    private Bitmap mStaticLayer;
+
+    // 遊戲盤面 (靜態層 + 箱子和工人，不含選取框)；mBoardValid 為 false 時整個重畫
+    private Bitmap mBoardBitmap;
+    private Canvas mBoardCanvas;
+    private boolean mBoardValid;
+
+    // 盤面 Bitmap 上工人的方向；與 mManFacing 不同時要重畫工人的格子
+    private int mDrawnFacing;
 
     private Paint mPaint;
+    private Paint mSelectionPaint;
+
+    // 建構時取得一次，繪圖時不再查詢資源
+    private final int mBackgroundColor;
+    private final int mElapsedTimeColor;
+
+    private final String mQuitLabel;
+
+    // _開始_ 按鈕已經按過，變成 _認輸_ 按鈕
+    private boolean mStarted;
+
+    // 繪圖和觸控時共用的 Rect；getRect() 和 getBoardRect() 的傳回值
+    private final Rect mCellRect = new Rect();
+
+    private final ElapsedTimeText mElapsedTimeText = new ElapsedTimeText();
 
     private Rect mTimerBounds;
 
@@ -36,6 +96,38 @@ class GameView extends View {
 
     private TuTButton[] mButtons;
 
+    private final FrameStats mFrameStats = new FrameStats(NAME);
+
+    // SurfaceView 繪圖方式時畫面交給它畫；null 時自己畫
+    private GameSurfaceView mRenderTarget;
+
+    // 最後交出的 RenderSnapshot 是否在計時
+    private boolean mPublishedTiming;
+
+    // 交出的 RenderSnapshot 的序號；繪圖執行緒以它判斷有沒有漏掉棋步
+    private long mSerial;
+
+    // 這次觸控執行的棋步 (悔棋時是取消的棋步)；SurfaceView 繪圖方式時放進 RenderSnapshot
+    private final StringBuilder mQueuedMoves = new StringBuilder();
+    private boolean mQueuedUndo;
+
+    private final MoveAnimator mAnimator;
+
+    // 動畫中的工人和箱子的位置
+    private final RectF mPieceRect = new RectF();
+
+    // 每一格畫面推進動畫；已經排進 Choreographer 時 mAnimationPosted 為 true
+    private final Runnable mAnimationFrame = new Runnable() {
+        @Override
+        public void run() {
+            mAnimationPosted = false;
+
+            runAnimationFrame(System.nanoTime());
+        }
+    };
+
+    private boolean mAnimationPosted;
+
     /**
      * 建構子。
      *
@@ -54,14 +146,24 @@ class GameView extends View {
             new TuTButton(getResources().getString(R.string.str_btn_redo), false)
         };
 
+        mQuitLabel = getResources().getString(R.string.str_btn_quit);
+
+        mBackgroundColor = ContextCompat.getColor(context, R.color.colorBackground);
+        mElapsedTimeColor = ContextCompat.getColor(context, R.color.colorMintCream);
+
         TuTButton.setTextColor(ContextCompat.getColor(context, R.color.colorMidnightBlue));
         TuTButton.setBackgroundColor(ContextCompat.getColor(context, R.color.colorMintCream));
 
         mPaint = new Paint();
 
+        mSelectionPaint = new Paint();
+        mSelectionPaint.setStyle(Paint.Style.STROKE);
+        mSelectionPaint.setColor(ContextCompat.getColor(context, R.color.colorAccent));
+
         mTimerBounds = new Rect();
 
-        tileSheet = BitmapManager.getSokobanSkin(getResources());
+        mAnimator = new MoveAnimator(mGameActivity.getCurrentState().snapshot());
+        mAnimator.setMovesPerSecond(mGameActivity.getMovesPerSecond());
     }
 
     /**
@@ -73,17 +175,38 @@ class GameView extends View {
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
+        long start = System.nanoTime();
+
         // 背景色
-        mPaint.setColor(ContextCompat.getColor(mGameActivity, R.color.colorBackground));
+        mPaint.setColor(mBackgroundColor);
         canvas.drawRect(0, 0, getWidth(), getHeight(), mPaint);
 
         // 繪製遊戲局面
-        drawGameBoard(canvas);
+        if (mAnimator.isAnimating()) {
+            if (!mBoardValid) {
+                createAnimatedBoard();
+            }
+
+            canvas.drawBitmap(mBoardBitmap, mPaddingLeft * mCellWidth, mPaddingTop * mCellWidth, null);
+
+            drawMovingPieces(canvas);
+        }
+        else {
+            updateGameBoard();
+
+            canvas.drawBitmap(mBoardBitmap, mPaddingLeft * mCellWidth, mPaddingTop * mCellWidth, null);
+        }
+
+        if (mSelectedColumn >= 0) {
+            canvas.drawRect(getRect(mSelectedColumn, mSelectedRow), mSelectionPaint);
+        }
 
         // 繪製遊戲時間
         drawGameElapsedTime(canvas);
 
         drawGameButton(canvas);
+
+        mFrameStats.record(System.nanoTime() - start);
     }
 
     /**
@@ -122,6 +245,35 @@ class GameView extends View {
         }
 
         setButtonSize();
+
+        mSelectionPaint.setStrokeWidth(mCellWidth / 12);
+
+        if (mRenderTarget != null) {
+            publishSnapshot();
+        }
+        else {
+            createBoardBitmap();
+        }
+    }
+
+    /**
+     * View 離開畫面：停止動畫，直接顯示最後的盤面。
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        removeCallbacks(mAnimationFrame);
+
+        mAnimationPosted = false;
+
+        if (mAnimator.isAnimating()) {
+            mAnimator.finishAll();
+            mAnimator.clearDirtyCells();
+
+            // 盤面 Bitmap 上沒有工人，下次畫的時候整個重畫
+            mBoardValid = false;
+        }
     }
 
     /**
@@ -142,7 +294,12 @@ class GameView extends View {
 
         GameState gameState = mGameActivity.getCurrentState();
 
-        if (gameState.getGameStatus() == GameState.GAMING) {
+        int selectedColumn = mSelectedColumn;
+        int selectedRow = mSelectedRow;
+
+        int stepCount = gameState.getStepCount();
+
+        if (gameState.isPlaying()) {
             handleBoardPane(gameState, touch_x, touch_y);
         }
 
@@ -152,13 +309,65 @@ class GameView extends View {
 
         playSoundEffect(gameState);
 
+        int status = gameState.getGameStatus();
+
         gameState.updateState();
 
-        postInvalidate();
+        // 盤面剛變成無解：只提醒玩家，還可以悔棋
+        if ((gameState.getGameStatus() == GameState.DEADLOCKED) && (status != GameState.DEADLOCKED)) {
+            Toast.makeText(getContext(), R.string.str_level_deadlocked, Toast.LENGTH_SHORT).show();
+        }
+
+        queueMoves(gameState, stepCount);
+
+        if (mRenderTarget != null) {
+            publishSnapshot();
+        }
+        else {
+            invalidateChanges(gameState, selectedColumn, selectedRow);
+        }
 
         return false;
     }
 
+    /**
+     * 依 GameState 的遊戲時間更新時間文字；顯示的數字改變時，只重繪 _遊戲時間_ 的區域。
+     * 由 GameActivity 的計時器呼叫。
+     */
+    void updateElapsedTime() {
+        if (mRenderTarget != null) {
+            // 繪圖執行緒自己推算時間；只有開始計時的時候要交出新的快照
+            if (!mPublishedTiming && mGameActivity.getCurrentState().isPlaying()) {
+                publishSnapshot();
+            }
+
+            return;
+        }
+
+        if (!mElapsedTimeText.set(mGameActivity.getCurrentState().getElapsedTime())) {
+            return;
+        }
+
+        invalidate(
+            (int) (mTimerBounds.left - mButtonGap),
+            mTimerBounds.top,
+            (int) (mTimerBounds.right + mButtonGap),
+            mTimerBounds.bottom
+        );
+    }
+
+    /**
+     * 改用 SurfaceView 繪圖方式：畫面交給 target 的繪圖執行緒畫，GameView 本身不再繪圖
+     * (透明地疊在 target 上面，只處理觸控)。必須在 GameView 加入畫面之前呼叫。
+     *
+     * @param target GameSurfaceView 物件。
+     */
+    void setRenderTarget(GameSurfaceView target) {
+        mRenderTarget = target;
+
+        setWillNotDraw(true);
+    }
+
     /**
      * 傳回使用者在當前關卡已使用的 _時間字串_ ；以 "00:00:00:000" 格式呈現。
      */
@@ -177,81 +386,367 @@ class GameView extends View {
     }
 
     /**
-     * 將 _遊戲盤面_ 繪製到 Canvas 上。
+     * 是否有移動動畫在進行。
      *
-     * @param canvas Canvas 物件。
+     * @return true: 動畫進行中； false: otherwise。
      */
-    private void drawGameBoard(Canvas canvas) {
-        Rect srcRect;
-        Rect destRect;
+    boolean isAnimating() {
+        return mAnimator.isAnimating();
+    }
 
-        StringBuffer[] labelInCells = mGameActivity.getCurrentState().getLabelInCells();
+    /**
+     * 把動畫推進到 nanos：重畫並 invalidate 改變的格子，動畫還沒結束時要求下一格畫面。
+     * 動畫結束時把工人畫回盤面 Bitmap。
+     * (package-private：測試不經過 vsync，直接以它推進動畫)
+     *
+     * @param nanos 目前的時間 (System.nanoTime())。
+     */
+    void runAnimationFrame(long nanos) {
+        if (!mAnimator.isAnimating()) {
+            return;
+        }
 
-        for (int r = 0; r < labelInCells.length; r++) {
-            for (int c = 0; c < labelInCells[r].length(); c++) {
-                destRect = getRect(c, r);
+        mAnimator.update(nanos);
+
+        drawAnimatedCells();
+
+        if (mAnimator.isAnimating()) {
+            postAnimationFrame();
+
+            return;
+        }
+
+        GameState gameState = mGameActivity.getCurrentState();
+
+        int c = gameState.getManColumn();
+        int r = gameState.getManRow();
+
+        if (mBoardValid) {
+            redrawCell(c, r, gameState.getLabelInCells()[r].charAt(c));
+
+            mDrawnFacing = mManFacing;
+        }
 
-                switch (labelInCells[r].charAt(c)) {
-                    case Sokoban.BOX:
-                        srcRect = tileSheet.getTileBoxOnFloor();
+        invalidateCell(c, r);
+    }
 
-                        break;
+    /**
+     * 要求在下一格畫面執行 runAnimationFrame()；已經要求過時不再重複。
+     */
+    private void postAnimationFrame() {
+        if (!mAnimationPosted) {
+            mAnimationPosted = true;
 
-                    case Sokoban.BOX_ON_GOAL:
-                        srcRect = tileSheet.getTileBoxOnGoal();
+            ViewCompat.postOnAnimation(this, mAnimationFrame);
+        }
+    }
 
-                        break;
+    /**
+     * 以目前的盤面，選取，時間，按鈕，和畫面配置建立 RenderSnapshot，交給 mRenderTarget。
+     */
+    private void publishSnapshot() {
+        GameState gameState = mGameActivity.getCurrentState();
 
-                    case Sokoban.EMPTY:
-                    case Sokoban.EMPTY_ALT:
-                        srcRect = tileSheet.getTileEmpty();
+        mPublishedTiming = gameState.isPlaying();
+
+        mRenderTarget.publish(new RenderSnapshot(
+            gameState.snapshot(),
+            mManFacing,
+            mSelectedColumn,
+            mSelectedRow,
+            gameState.getElapsedTime(),
+            SystemClock.uptimeMillis(),
+            mPublishedTiming,
+            ++mSerial,
+            mQueuedMoves.toString(),
+            mQueuedUndo,
+            mButtons,
+            mCellWidth,
+            mPaddingLeft,
+            mPaddingTop,
+            mTimerBounds,
+            mPaint.getTextSize()
+        ));
+
+        mQueuedMoves.setLength(0);
+
+        // 繪圖執行緒每次都畫整個畫面，不需要改變的格子
+        gameState.clearDirtyCells();
+    }
 
-                        break;
+    /**
+     * 把這次觸控執行 (或悔棋取消) 的棋步排進動畫；SurfaceView 繪圖方式時留在 mQueuedMoves，
+     * 由 publishSnapshot() 交給繪圖執行緒。
+     *
+     * @param gameState GameState 物件。
+     * @param stepCount 觸控之前的步數。
+     */
+    private void queueMoves(GameState gameState, int stepCount) {
+        int current = gameState.getStepCount();
 
-                    case Sokoban.FLOOR:
-                        srcRect = tileSheet.getTileFloor();
+        mQueuedUndo = (current < stepCount);
 
-                        break;
+        for (int i = stepCount; i < current; i++) {
+            mQueuedMoves.append(gameState.getStep(i));
+        }
 
-                    case Sokoban.GOAL:
-                        srcRect = tileSheet.getTileGoal();
+        for (int i = stepCount - 1; i >= current; i--) {
+            mQueuedMoves.append(gameState.getStep(i));
+        }
 
-                        break;
+        if (mRenderTarget != null) {
+            return;
+        }
 
-                    case Sokoban.MAN:
-                        srcRect = tileSheet.getTileFloor();
-                        canvas.drawBitmap(GameBitmaps.tileSheet, srcRect, destRect, null);
+        for (int i = 0; i < mQueuedMoves.length(); i++) {
+            mAnimator.enqueue(mQueuedMoves.charAt(i), mQueuedUndo);
+        }
 
-                        srcRect = tileSheet.getTileMan(mManFacing);
+        mQueuedMoves.setLength(0);
 
-                        break;
+        if (mAnimator.isAnimating()) {
+            // 剛開始的動畫：先把工人從盤面 Bitmap 上擦掉
+            drawAnimatedCells();
 
-                    case Sokoban.MAN_ON_GOAL:
-                        srcRect = tileSheet.getTileGoal();
-                        canvas.drawBitmap(GameBitmaps.tileSheet, srcRect, destRect, null);
+            postAnimationFrame();
+        }
+        else {
+            // 沒有動畫：改變的格子由 GameState 的記錄重畫
+            mAnimator.clearDirtyCells();
+        }
+    }
 
-                        srcRect = tileSheet.getTileMan(mManFacing);
+    /**
+     * 動畫進行中：在盤面 Bitmap 上重畫 MoveAnimator 回報改變的格子 (靜態層，加上不在移動中
+     * 的箱子；工人另外畫)，並 invalidate 這些格子。
+     */
+    private void drawAnimatedCells() {
+        BoardLayout layout = mAnimator.getLayout();
 
-                        break;
+        int movingBox = mAnimator.getMovingBoxCell();
 
-                    case Sokoban.WALL:
-                        srcRect = tileSheet.getTileWall();
+        for (int i = 0; i < mAnimator.getDirtyCellCount(); i++) {
+            int cell = mAnimator.getDirtyCell(i);
 
-                        break;
+            int c = layout.columnOf(cell);
+            int r = layout.rowOf(cell);
 
-                    default:
-                        // 不應該會到這裡，記錄一下
-                        Log.d(TAG, "drawGameBoard: (r, c) = (" + r + ", " + c + ")");
+            // 盤面 Bitmap 還沒畫好時，onDraw() 會整個畫出來
+            if (mBoardValid) {
+                Rect cellRect = getBoardRect(c, r);
 
-                        // 放個空白的 Tile，提醒使用者
-                        srcRect = tileSheet.getTileBlank();
+                mBoardCanvas.drawBitmap(mStaticLayer, cellRect, cellRect, null);
 
-                        break;
+                if (mAnimator.isBoxAt(cell) && (cell != movingBox)) {
+                    drawPiece(mBoardCanvas, c, r, layout.isGoal(cell) ? Sokoban.BOX_ON_GOAL : Sokoban.BOX);
                 }
+            }
 
-                canvas.drawBitmap(GameBitmaps.tileSheet, srcRect, destRect, null);
+            invalidateCell(c, r);
+        }
+
+        mAnimator.clearDirtyCells();
+    }
+
+    /**
+     * 動畫進行中 (或大小改變) 時整個畫出盤面 Bitmap：貼上靜態層，再畫出 MoveAnimator 顯示
+     * 中，不在移動中的箱子。
+     */
+    private void createAnimatedBoard() {
+        BoardLayout layout = mAnimator.getLayout();
+
+        int movingBox = mAnimator.getMovingBoxCell();
+
+        mBoardCanvas.drawBitmap(mStaticLayer, 0, 0, null);
+
+        for (int cell = 0; cell < layout.NUM_CELL; cell++) {
+            if (mAnimator.isBoxAt(cell) && (cell != movingBox)) {
+                drawPiece(
+                    mBoardCanvas,
+                    layout.columnOf(cell),
+                    layout.rowOf(cell),
+                    layout.isGoal(cell) ? Sokoban.BOX_ON_GOAL : Sokoban.BOX
+                );
             }
         }
+
+        mBoardValid = true;
+    }
+
+    /**
+     * 動畫進行中：在盤面 Bitmap 上面畫出移動中的箱子和工人。
+     *
+     * @param canvas Canvas 物件。
+     */
+    private void drawMovingPieces(Canvas canvas) {
+        BoardLayout layout = mAnimator.getLayout();
+
+        int movingBox = mAnimator.getMovingBoxCell();
+
+        canvas.save();
+        canvas.translate(mPaddingLeft * mCellWidth, mPaddingTop * mCellWidth);
+
+        if (movingBox != BoardLayout.NO_CELL) {
+            drawPieceAt(
+                canvas,
+                mAnimator.getMovingBoxColumn(),
+                mAnimator.getMovingBoxRow(),
+                layout.isGoal(movingBox) ? Sokoban.BOX_ON_GOAL : Sokoban.BOX,
+                GameBitmaps.FACE_DOWN
+            );
+        }
+
+        drawPieceAt(
+            canvas,
+            mAnimator.getManColumn(),
+            mAnimator.getManRow(),
+            Sokoban.MAN,
+            GameBitmaps.faceOf(mAnimator.getManDirection())
+        );
+
+        canvas.restore();
+    }
+
+    /**
+     * 在 (column, row) 畫出一個 tile；座標以格子為單位，可以有小數 (動畫中的位置)。
+     *
+     * @param canvas Canvas 物件 (原點在盤面的左上角)。
+     * @param column 行
+     * @param row    列
+     * @param label  箱子或工人的 XSB 標記。
+     * @param facing 工人的方向。
+     */
+    private void drawPieceAt(Canvas canvas, float column, float row, char label, int facing) {
+        mPieceRect.set(
+            column * mCellWidth,
+            row * mCellWidth,
+            (column + 1) * mCellWidth,
+            (row + 1) * mCellWidth
+        );
+
+        mAtlas.drawPiece(canvas, label, facing, mPieceRect);
+    }
+
+    /**
+     * 依目前的大小建立靜態層和盤面 Bitmap；靜態層立即畫好，盤面在下一次 onDraw() 時
+     * 整個畫出來。
+     */
+    private void createBoardBitmap() {
+        GameState gameState = mGameActivity.getCurrentState();
+
+        int width = Math.max((int) (gameState.NUM_COLUMN * mCellWidth), 1);
+        int height = Math.max((int) (gameState.NUM_ROW * mCellWidth), 1);
+
+        if (mStaticLayer != null) {
+            mStaticLayer.recycle();
+            mBoardBitmap.recycle();
+        }
+
+        mAtlas = BitmapManager.getTileAtlas(getContext(), (int) mCellWidth);
+
+        // 盤面完全由不透明的 tile 蓋滿，不需要 alpha
+        mStaticLayer = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+
+        Canvas staticCanvas = new Canvas(mStaticLayer);
+
+        CharSequence[] labelInCells = gameState.getLabelInCells();
+
+        for (int r = 0; r < labelInCells.length; r++) {
+            for (int c = 0; c < labelInCells[r].length(); c++) {
+                drawStaticTile(staticCanvas, c, r, labelInCells[r].charAt(c));
+            }
+        }
+
+        mBoardBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+        mBoardCanvas = new Canvas(mBoardBitmap);
+
+        mBoardValid = false;
+    }
+
+    /**
+     * 更新盤面 Bitmap：第一次 (或大小改變後) 貼上整個靜態層，再畫所有的箱子和工人；
+     * 之後只重畫 GameState 回報改變的格子。
+     */
+    private void updateGameBoard() {
+        GameState gameState = mGameActivity.getCurrentState();
+
+        CharSequence[] labelInCells = gameState.getLabelInCells();
+
+        if (!mBoardValid) {
+            mBoardCanvas.drawBitmap(mStaticLayer, 0, 0, null);
+
+            for (int r = 0; r < labelInCells.length; r++) {
+                for (int c = 0; c < labelInCells[r].length(); c++) {
+                    drawPiece(mBoardCanvas, c, r, labelInCells[r].charAt(c));
+                }
+            }
+
+            mBoardValid = true;
+        }
+        else {
+            for (int i = 0; i < gameState.getDirtyCellCount(); i++) {
+                int c = gameState.getDirtyColumn(i);
+                int r = gameState.getDirtyRow(i);
+
+                redrawCell(c, r, labelInCells[r].charAt(c));
+            }
+
+            // 原地轉身：格子內容沒變，工人的方向變了
+            if (mDrawnFacing != mManFacing) {
+                int c = gameState.getManColumn();
+                int r = gameState.getManRow();
+
+                redrawCell(c, r, labelInCells[r].charAt(c));
+            }
+        }
+
+        mDrawnFacing = mManFacing;
+
+        gameState.clearDirtyCells();
+    }
+
+    /**
+     * 重畫盤面 Bitmap 上的一個格子：從靜態層複製，再畫上箱子或工人。
+     *
+     * @param c     行
+     * @param r     列
+     * @param label 格子的 XSB 標記。
+     */
+    private void redrawCell(int c, int r, char label) {
+        Rect cellRect = getBoardRect(c, r);
+
+        mBoardCanvas.drawBitmap(mStaticLayer, cellRect, cellRect, null);
+
+        drawPiece(mBoardCanvas, c, r, label);
+    }
+
+    /**
+     * 在靜態層上畫出一個格子 (牆，地板，目標，空白)；箱子和工人底下的地板或目標也畫在
+     * 這一層。
+     *
+     * @param canvas 靜態層的 Canvas 物件。
+     * @param c      行
+     * @param r      列
+     * @param label  格子的 XSB 標記。
+     */
+    private void drawStaticTile(Canvas canvas, int c, int r, char label) {
+        // 不認得的標記會放個空白的 Tile，提醒使用者
+        if (!mAtlas.drawStaticTile(canvas, label, getBoardRect(c, r))) {
+            // 不應該會到這裡，記錄一下
+            Log.d(TAG, "drawStaticTile: (r, c) = (" + r + ", " + c + ")");
+        }
+    }
+
+    /**
+     * 在盤面 Bitmap 上畫出格子裡的箱子或工人；空的格子不畫。
+     *
+     * @param canvas 盤面 Bitmap 的 Canvas 物件。
+     * @param c      行
+     * @param r      列
+     * @param label  格子的 XSB 標記。
+     */
+    private void drawPiece(Canvas canvas, int c, int r, char label) {
+        mAtlas.drawPiece(canvas, label, mManFacing, getBoardRect(c, r));
     }
 
     /**
@@ -272,10 +767,12 @@ class GameView extends View {
      */
     private void drawGameElapsedTime(Canvas canvas) {
         // 文字顏色
-        mPaint.setColor(ContextCompat.getColor(mGameActivity, R.color.colorMintCream));
+        mPaint.setColor(mElapsedTimeColor);
 
         canvas.drawText(
-            getElapsedTime(),
+            mElapsedTimeText.chars(),
+            0,
+            mElapsedTimeText.length(),
             mTimerBounds.left,
             mTimerBounds.top + (mTimerBounds.height() - (mPaint.ascent() + mPaint.descent())) / 2,
             mPaint
@@ -288,15 +785,81 @@ class GameView extends View {
      * @param column 行
      * @param row    列
      *
-     * @return Rect (column, row) 對應的 Rect 物件。
+     * @return Rect (column, row) 對應的 Rect 物件；共用的 mCellRect，下次呼叫時會被改寫。
+     *         (package-private：測試以它算出觸控的位置)
      */
-    private Rect getRect(int column, int row) {
+    Rect getRect(int column, int row) {
         int left = (int) ((mPaddingLeft + column) * mCellWidth);
         int top = (int) ((mPaddingTop + row) * mCellWidth);
         int right = (int) ((mPaddingLeft + column + 1) * mCellWidth);
         int bottom = (int) ((mPaddingTop + row + 1) * mCellWidth);
 
-        return new Rect(left, top, right, bottom);
+        mCellRect.set(left, top, right, bottom);
+
+        return mCellRect;
+    }
+
+    /**
+     * 依據指定的 _位置_ (column, row) 算出盤面 Bitmap 上的 Rect 座標範圍。
+     *
+     * @param column 行
+     * @param row    列
+     *
+     * @return Rect (column, row) 對應的 Rect 物件；共用的 mCellRect，下次呼叫時會被改寫。
+     *         (package-private：測試以它算出觸控的位置)
+     */
+    private Rect getBoardRect(int column, int row) {
+        int left = (int) (column * mCellWidth);
+        int top = (int) (row * mCellWidth);
+        int right = (int) ((column + 1) * mCellWidth);
+        int bottom = (int) ((row + 1) * mCellWidth);
+
+        mCellRect.set(left, top, right, bottom);
+
+        return mCellRect;
+    }
+
+    /**
+     * invalidate 這次觸控改變的區域：內容改變的格子，工人 (可能只是轉身)，選取框，和
+     * 按鈕。
+     *
+     * @param gameState      GameState 物件。
+     * @param selectedColumn 觸控之前選取的箱子的行；沒有選取時為 -1。
+     * @param selectedRow    觸控之前選取的箱子的列。
+     */
+    private void invalidateChanges(GameState gameState, int selectedColumn, int selectedRow) {
+        for (int i = 0; i < gameState.getDirtyCellCount(); i++) {
+            invalidateCell(gameState.getDirtyColumn(i), gameState.getDirtyRow(i));
+        }
+
+        invalidateCell(gameState.getManColumn(), gameState.getManRow());
+
+        if (selectedColumn >= 0) {
+            invalidateCell(selectedColumn, selectedRow);
+        }
+
+        if (mSelectedColumn >= 0) {
+            invalidateCell(mSelectedColumn, mSelectedRow);
+        }
+
+        for (TuTButton button : mButtons) {
+            invalidate(button.getBounds());
+        }
+    }
+
+    /**
+     * invalidate 一個格子在螢幕上的區域。
+     *
+     * @param column 行
+     * @param row    列
+     */
+    private void invalidateCell(int column, int row) {
+        invalidate(
+            (int) ((mPaddingLeft + column) * mCellWidth),
+            (int) ((mPaddingTop + row) * mCellWidth),
+            (int) ((mPaddingLeft + column + 1) * mCellWidth),
+            (int) ((mPaddingTop + row + 1) * mCellWidth)
+        );
     }
 
     /**
@@ -310,20 +873,40 @@ class GameView extends View {
         int manColumn = gameState.getManColumn();
         int manRow = gameState.getManRow();
 
-        if (touch_above_to_man(touch_x, touch_y, manColumn, manRow)) {
-            handleUp(gameState);
-        }
+        int column = (int) Math.floor(touch_x / mCellWidth) - mPaddingLeft;
+        int row = (int) Math.floor(touch_y / mCellWidth) - mPaddingTop;
 
-        if (touch_below_to_man(touch_x, touch_y, manColumn, manRow)) {
-            handleDown(gameState);
+        // 已經選取箱子時，這次點選的是它的目的地 (推不過去就只取消選取)
+        if (mSelectedColumn >= 0) {
+            handlePushTo(gameState, column, row);
         }
+        else {
+            if (touch_above_to_man(touch_x, touch_y, manColumn, manRow)) {
+                handleUp(gameState);
+            }
 
-        if (touch_left_to_man(touch_x, touch_y, manColumn, manRow)) {
-            handleLeft(gameState);
-        }
+            if (touch_below_to_man(touch_x, touch_y, manColumn, manRow)) {
+                handleDown(gameState);
+            }
 
-        if (touch_right_to_man(touch_x, touch_y, manColumn, manRow)) {
-            handleRight(gameState);
+            if (touch_left_to_man(touch_x, touch_y, manColumn, manRow)) {
+                handleLeft(gameState);
+            }
+
+            if (touch_right_to_man(touch_x, touch_y, manColumn, manRow)) {
+                handleRight(gameState);
+            }
+
+            if ((manRow == gameState.getManRow()) && (manColumn == gameState.getManColumn())) {
+                if (gameState.isBoxAt(column, row)) {
+                    // 選取箱子，下一次點選的格子就是它的目的地
+                    mSelectedColumn = column;
+                    mSelectedRow = row;
+                }
+                else {
+                    handleWalk(gameState, column, row);
+                }
+            }
         }
 
         if ((manRow != gameState.getManRow()) || (manColumn != gameState.getManColumn())) {
@@ -339,34 +922,43 @@ class GameView extends View {
      * @param touch_y   TouchEvent 的 y 座標。
      */
     private void handleButtonPane(GameState gameState, int touch_x, int touch_y) {
-        for (TuTButton button : mButtons) {
-            if (button.isActivated() && button.isPressed(touch_x, touch_y)) {
-                if (getResources().getString(R.string.str_btn_quit).equals(button.getLabel())) {
-                    gameState.setGameStatus(GameState.STUCK);
+        for (int i = 0; i < mButtons.length; i++) {
+            TuTButton button = mButtons[i];
 
-                    break;
-                }
+            if (!button.isActivated() || !button.isPressed(touch_x, touch_y)) {
+                continue;
+            }
 
-                if (getResources().getString(R.string.str_btn_redo).equals(button.getLabel())) {
-                    gameState.redoStep(Sokoban.REDO_STEP);
+            switch (i) {
+                case BUTTON_START:
+                    if (mStarted) {
+                        gameState.setGameStatus(GameState.STUCK);
+                    }
+                    else {
+                        button.setLabel(mQuitLabel);
 
-                    break;
-                }
+                        mStarted = true;
 
-                if (getResources().getString(R.string.str_btn_start).equals(button.getLabel())) {
-                    button.setLabel(getResources().getString(R.string.str_btn_quit));
+                        gameState.setGameStatus(GameState.STARTED);
+                    }
 
-                    gameState.setGameStatus(GameState.STARTED);
+                    break;
+
+                case BUTTON_REDO:
+                    gameState.redoStep(Sokoban.REDO_STEP);
 
                     break;
-                }
 
-                if (getResources().getString(R.string.str_btn_undo).equals(button.getLabel())) {
+                case BUTTON_UNDO:
                     gameState.undoStep();
 
                     break;
-                }
+
+                default:
+                    break;
             }
+
+            break;
         }
     }
 
@@ -434,6 +1026,70 @@ class GameView extends View {
         mManFacing = GameBitmaps.FACE_UP;
     }
 
+    /**
+     * 處理 _工人_ 走到指定的格子 (不推動箱子)；整段路徑一次執行完，畫面只重繪一次。
+     *
+     * @param gameState GameState 物件。
+     * @param column    點選的行
+     * @param row       點選的列
+     */
+    private void handleWalk(GameState gameState, int column, int row) {
+        if (gameState.walkTo(column, row) > 0) {
+            faceLastStep(gameState);
+        }
+    }
+
+    /**
+     * 處理把選取的箱子推到指定的格子；整段步驟一次執行完，畫面只重繪一次。推不過去時，
+     * 只取消選取。
+     *
+     * @param gameState GameState 物件。
+     * @param column    點選的行
+     * @param row       點選的列
+     */
+    private void handlePushTo(GameState gameState, int column, int row) {
+        int boxColumn = mSelectedColumn;
+        int boxRow = mSelectedRow;
+
+        mSelectedColumn = -1;
+
+        if (gameState.pushBoxTo(boxColumn, boxRow, column, row) != null) {
+            faceLastStep(gameState);
+        }
+    }
+
+    /**
+     * 讓 _工人_ 面向最後一步的方向。
+     *
+     * @param gameState GameState 物件。
+     */
+    private void faceLastStep(GameState gameState) {
+        switch (Character.toLowerCase(gameState.getLastStep())) {
+            case Sokoban.MOVE_DOWN:
+                mManFacing = GameBitmaps.FACE_DOWN;
+
+                break;
+
+            case Sokoban.MOVE_LEFT:
+                mManFacing = GameBitmaps.FACE_LEFT;
+
+                break;
+
+            case Sokoban.MOVE_RIGHT:
+                mManFacing = GameBitmaps.FACE_RIGHT;
+
+                break;
+
+            case Sokoban.MOVE_UP:
+                mManFacing = GameBitmaps.FACE_UP;
+
+                break;
+
+            default:
+                break;
+        }
+    }
+
     /**
      * 播放音效 (SoundEffect)。
      *
@@ -455,24 +1111,18 @@ class GameView extends View {
      * @param gameState GameState 物件。
      */
     private void refreshButtonPane(GameState gameState) {
-        for (TuTButton button : mButtons) {
-            if (getResources().getString(R.string.str_btn_redo).equals(button.getLabel())) {
-                if (gameState.isRedoable()) {
-                    button.activate();
-                }
-                else {
-                    button.deactivate();
-                }
-            }
+        if (gameState.isRedoable()) {
+            mButtons[BUTTON_REDO].activate();
+        }
+        else {
+            mButtons[BUTTON_REDO].deactivate();
+        }
 
-            if (getResources().getString(R.string.str_btn_undo).equals(button.getLabel())) {
-                if (gameState.isUndoable()) {
-                    button.activate();
-                }
-                else {
-                    button.deactivate();
-                }
-            }
+        if (gameState.isUndoable()) {
+            mButtons[BUTTON_UNDO].activate();
+        }
+        else {
+            mButtons[BUTTON_UNDO].deactivate();
         }
     }
 
@@ -0,0 +1,108 @@
+package io.tut.sokoban;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+/**
+ * 關卡選擇畫面 (GameLevelActivity) 的 GridView adapter。
+ *
+ * 不預先建立所有關卡的名稱；關卡數直接取自 GameLevels 的索引，格子的文字在 getView()
+ * 時才產生，所以不論有 10 個還是 50,000 個關卡，畫面都一樣快出現。
+ *
+ * 每個格子有關卡盤面的縮圖，由 LevelThumbnails 在背景產生。
+ */
+class LevelGridAdapter extends BaseAdapter {
+    private final Context mContext;
+
+    private final LayoutInflater mInflater;
+
+    private final int mCount;
+
+    private final LevelThumbnails mThumbnails;
+
+    /**
+     * 建構子。
+     *
+     * @param context Activity。
+     * @param levels  已經開啟的 GameLevels (見 GameLevels.load())。
+     */
+    LevelGridAdapter(Context context, GameLevels levels) {
+        mContext = context;
+
+        mInflater = LayoutInflater.from(context);
+
+        mCount = levels.getLevelCount();
+
+        mThumbnails = new LevelThumbnails(
+            context,
+            context.getResources().getDimensionPixelSize(R.dimen.level_thumbnail_size)
+        );
+    }
+
+    /**
+     * 停止產生縮圖；Activity 結束時呼叫。
+     */
+    void release() {
+        mThumbnails.shutdown();
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * 傳回關卡 (從 1 開始)。
+     *
+     * @param position 格子的位置。
+     *
+     * @return Integer 關卡。
+     */
+    @Override
+    public Object getItem(int position) {
+        return position + 1;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        View view = convertView;
+        ViewHolder holder;
+
+        if (view == null) {
+            view = mInflater.inflate(R.layout.gv_levels_item, parent, false);
+
+            holder = new ViewHolder();
+            holder.thumbnail = (ImageView) view.findViewById(R.id.iv_level_thumbnail);
+            holder.label = (TextView) view.findViewById(R.id.tv_level_label);
+
+            view.setTag(holder);
+        }
+        else {
+            holder = (ViewHolder) view.getTag();
+        }
+
+        holder.label.setText(mContext.getString(R.string.str_level_label, position + 1));
+
+        mThumbnails.load(holder.thumbnail, position + 1);
+
+        return view;
+    }
+
+    /**
+     * 格子裡的 View，避免每次 getView() 都 findViewById()。
+     */
+    private static class ViewHolder {
+        ImageView thumbnail;
+        TextView label;
+    }
+}
@@ -0,0 +1,429 @@
+package io.tut.sokoban;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.v4.content.ContextCompat;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 關卡選擇畫面的 _縮圖_ (thumbnail)；以 BitmapManager 的 tile sheet 畫出關卡的初始盤面。
+ *
+ * UI 執行緒只查記憶體快取 (LruCache，以 bytes 計算大小)；沒有的縮圖交給背景執行緒：先找
+ * 磁碟快取 (cache/thumbnails/，以關卡盤面的雜湊值命名)，沒有才讀取關卡並畫出來，寫回
+ * 磁碟快取。讀取、解碼和繪製都不在 UI 執行緒上，捲動上千個關卡也不會掉格。
+ *
+ * GridView 重複使用格子時，原來格子還沒完成的工作會被取消 (見 load())。
+ */
+class LevelThumbnails {
+    private static final String TAG = "SOKOBAN";
+
+    private static final String CACHE_DIR = "thumbnails";
+
+    private static final int NUM_THREADS = 2;
+
+    // 記憶體快取最多使用 heap 上限的 1/8
+    private static final int MEMORY_CACHE_FRACTION = 8;
+
+    private final Context mContext;
+
+    private final int mSize;
+
+    private final int mBackgroundColor;
+
+    private final File mCacheDir;
+
+    private final LruCache<Long, Bitmap> mMemoryCache;
+
+    private final ExecutorService mExecutor;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    // 每個背景執行緒有自己的 Canvas，Paint 和 RectF，同時繪製縮圖不必互相等待
+    private final ThreadLocal<TilePainter> mPainters = new ThreadLocal<TilePainter>() {
+        @Override
+        protected TilePainter initialValue() {
+            return new TilePainter();
+        }
+    };
+
+    /**
+     * 建構子。
+     *
+     * @param context Activity。
+     * @param size    縮圖的邊長 (pixels)。
+     */
+    LevelThumbnails(Context context, int size) {
+        mContext = context.getApplicationContext();
+
+        mSize = size;
+
+        mBackgroundColor = ContextCompat.getColor(context, R.color.colorMidnightBlue);
+
+        mCacheDir = new File(mContext.getCacheDir(), CACHE_DIR);
+
+        int maxBytes = (int) (Runtime.getRuntime().maxMemory() / MEMORY_CACHE_FRACTION);
+
+        mMemoryCache = new LruCache<Long, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap bitmap) {
+                return bitmap.getRowBytes() * bitmap.getHeight();
+            }
+        };
+
+        mExecutor = Executors.newFixedThreadPool(NUM_THREADS, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+                        r.run();
+                    }
+                }, "thumbnail");
+            }
+        });
+    }
+
+    /**
+     * 把關卡的縮圖放進 ImageView；記憶體快取裡有就直接設定，否則先清空，交給背景執行緒。
+     *
+     * @param view  顯示縮圖的 ImageView。
+     * @param level 關卡 (從 1 開始)。
+     */
+    void load(ImageView view, int level) {
+        Task previous = (Task) view.getTag(R.id.tag_thumbnail_task);
+
+        if (previous != null) {
+            if (previous.mLevel == level) {
+                return;
+            }
+
+            // 格子被重複使用，原來的縮圖已經不需要了
+            previous.cancel();
+        }
+
+        long hash = GameLevels.getInstance(mContext).getLevelHash(level);
+
+        Bitmap bitmap = mMemoryCache.get(hash);
+
+        if (bitmap != null) {
+            view.setTag(R.id.tag_thumbnail_task, null);
+            view.setImageBitmap(bitmap);
+
+            return;
+        }
+
+        view.setImageDrawable(null);
+
+        Task task = new Task(view, level, hash);
+
+        view.setTag(R.id.tag_thumbnail_task, task);
+
+        task.mFuture = mExecutor.submit(task);
+    }
+
+    /**
+     * 停止所有背景工作；Activity 結束時呼叫。
+     */
+    void shutdown() {
+        mExecutor.shutdownNow();
+
+        mMemoryCache.evictAll();
+    }
+
+    /**
+     * 產生一個關卡的縮圖 (在背景執行緒上執行)。
+     */
+    private class Task implements Runnable {
+        private final ImageView mView;
+        private final int mLevel;
+        private final long mHash;
+
+        private volatile boolean mCancelled;
+
+        private Future<?> mFuture;
+
+        Task(ImageView view, int level, long hash) {
+            mView = view;
+            mLevel = level;
+            mHash = hash;
+        }
+
+        /**
+         * 取消工作；還沒開始的工作不會執行，已經開始的不會設定到 ImageView 上。
+         */
+        void cancel() {
+            mCancelled = true;
+
+            if (mFuture != null) {
+                mFuture.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled) {
+                return;
+            }
+
+            final Bitmap bitmap = getBitmap(mLevel, mHash);
+
+            if (bitmap == null) {
+                // 失敗：拿掉 ImageView 上的工作，下次顯示這個關卡時 load() 會重試
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mView.getTag(R.id.tag_thumbnail_task) == Task.this) {
+                            mView.setTag(R.id.tag_thumbnail_task, null);
+                        }
+                    }
+                });
+
+                return;
+            }
+
+            mMemoryCache.put(mHash, bitmap);
+
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mCancelled && (mView.getTag(R.id.tag_thumbnail_task) == Task.this)) {
+                        mView.setTag(R.id.tag_thumbnail_task, null);
+                        mView.setImageBitmap(bitmap);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 從磁碟快取讀取縮圖；沒有時畫出來，寫入磁碟快取。
+     *
+     * @param level 關卡 (從 1 開始)。
+     * @param hash  關卡盤面的雜湊值。
+     *
+     * @return Bitmap 縮圖；失敗時傳回 null。
+     */
+    private Bitmap getBitmap(int level, long hash) {
+        File file = new File(mCacheDir, Long.toHexString(hash) + "-" + mSize + ".png");
+
+        if (file.isFile()) {
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
+
+        Bitmap bitmap;
+
+        try {
+            bitmap = render(GameLevels.getInstance(mContext).getLevel(level));
+        }
+        catch (RuntimeException e) {
+            Log.e(TAG, "LevelThumbnails: level " + level, e);
+
+            return null;
+        }
+
+        try {
+            writeFile(file, bitmap);
+        }
+        catch (IOException e) {
+            // 只是快取，寫不進去也沒關係，記錄一下
+            Log.e(TAG, "LevelThumbnails: " + file, e);
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * 把關卡盤面畫成縮圖；盤面保持比例，置中。可以在幾個背景執行緒上同時執行：tile sheet
+     * 和 tile 的 Rect (GameBitmaps 建立時就算好) 只被讀取，其它繪圖物件每個執行緒各有一份。
+     *
+     * @param board 關卡的初始盤面。
+     *
+     * @return Bitmap 縮圖。
+     */
+    private Bitmap render(String[] board) {
+        // BitmapManager 只在第一次 (或記憶體不足放掉之後) 解碼 tile sheet
+        GameBitmaps tiles = BitmapManager.getSokobanSkin(mContext);
+
+        TilePainter painter = mPainters.get();
+
+        int columns = 0;
+
+        for (String row : board) {
+            columns = Math.max(columns, row.length());
+        }
+
+        float cellWidth = (float) mSize / Math.max(Math.max(columns, board.length), 1);
+
+        float left = (mSize - cellWidth * columns) / 2;
+        float top = (mSize - cellWidth * board.length) / 2;
+
+        Bitmap bitmap = Bitmap.createBitmap(mSize, mSize, Bitmap.Config.RGB_565);
+
+        painter.begin(bitmap, tiles);
+
+        painter.mCanvas.drawColor(mBackgroundColor);
+
+        for (int r = 0; r < board.length; r++) {
+            for (int c = 0; c < board[r].length(); c++) {
+                painter.mDestRect.set(
+                    left + c * cellWidth,
+                    top + r * cellWidth,
+                    left + (c + 1) * cellWidth,
+                    top + (r + 1) * cellWidth
+                );
+
+                switch (board[r].charAt(c)) {
+                    case Sokoban.BOX:
+                        painter.drawTile(tiles.getTileBoxOnFloor());
+
+                        break;
+
+                    case Sokoban.BOX_ON_GOAL:
+                        painter.drawTile(tiles.getTileBoxOnGoal());
+
+                        break;
+
+                    case Sokoban.EMPTY:
+                    case Sokoban.EMPTY_ALT:
+                        painter.drawTile(tiles.getTileEmpty());
+
+                        break;
+
+                    case Sokoban.FLOOR:
+                        painter.drawTile(tiles.getTileFloor());
+
+                        break;
+
+                    case Sokoban.GOAL:
+                        painter.drawTile(tiles.getTileGoal());
+
+                        break;
+
+                    case Sokoban.MAN:
+                        painter.drawTile(tiles.getTileFloor());
+                        painter.drawTile(tiles.getTileMan(GameBitmaps.FACE_DOWN));
+
+                        break;
+
+                    case Sokoban.MAN_ON_GOAL:
+                        painter.drawTile(tiles.getTileGoal());
+                        painter.drawTile(tiles.getTileMan(GameBitmaps.FACE_DOWN));
+
+                        break;
+
+                    case Sokoban.WALL:
+                        painter.drawTile(tiles.getTileWall());
+
+                        break;
+
+                    default:
+                        break;
+                }
+            }
+        }
+
+        painter.end();
+
+        return bitmap;
+    }
+
+    /**
+     * 把縮圖寫成 PNG；先寫到暫存檔再改名，其它執行緒不會讀到寫了一半的檔案。
+     *
+     * @param file   檔案。
+     * @param bitmap 縮圖。
+     *
+     * @throws IOException 寫入失敗。
+     */
+    private void writeFile(File file, Bitmap bitmap) throws IOException {
+        if (!mCacheDir.isDirectory() && !mCacheDir.mkdirs()) {
+            throw new IOException("cannot create " + mCacheDir);
+        }
+
+        File temp = new File(file.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+
+        try {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        }
+        finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(file)) {
+            temp.delete();
+
+            throw new IOException("cannot write " + file);
+        }
+    }
+
+    /**
+     * 一個背景執行緒繪製縮圖用的物件；只在建立它的執行緒上使用。
+     */
+    private static class TilePainter {
+        private final Canvas mCanvas = new Canvas();
+        private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        private final RectF mDestRect = new RectF();
+
+        // 繪製中的 tile sheet；每次繪製時重新取得
+        private GameBitmaps mTiles;
+
+        /**
+         * 開始把縮圖畫到 bitmap 上。
+         *
+         * @param bitmap 縮圖。
+         * @param tiles  tile sheet。
+         */
+        void begin(Bitmap bitmap, GameBitmaps tiles) {
+            mCanvas.setBitmap(bitmap);
+
+            mTiles = tiles;
+        }
+
+        /**
+         * 畫完縮圖；不再持有縮圖和 tile sheet (縮圖交給快取，tile sheet 可能在記憶體不足時
+         * 被放掉)。
+         */
+        void end() {
+            mCanvas.setBitmap(null);
+
+            mTiles = null;
+        }
+
+        /**
+         * 把 tile sheet 上的一個 tile 畫到 mDestRect。
+         *
+         * @param tile tile 在 tile sheet 上的範圍。
+         */
+        void drawTile(Rect tile) {
+            mCanvas.drawBitmap(mTiles.getTileSheet(), tile, mDestRect, mPaint);
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package io.tut.sokoban;
+
+import java.util.Arrays;
+
+/**
+ * 把已經執行的棋步變成 _動畫_：工人 (和被推的箱子) 一格一格平滑地移過去，而不是直接跳到
+ * 最後的位置。
+ *
+ * GameState 在觸控時就已經走完所有的棋步；MoveAnimator 另外記錄一份 _顯示中_ 的盤面
+ * (工人位置和箱子佔據的格子)，以每秒 getMovesPerSecond() 步的速度把排隊的棋步一步一步
+ * 套用上去。進行中的那一步以 0 到 1 的進度內插出工人和箱子的位置。
+ *
+ * 進度只由時間決定 (update())：畫面掉格時直接跳到該在的位置，不會累積要補畫的畫面。
+ * 排隊的棋步以 MAX_LAG_NANOS 為上限：排得太多 (例如一次走了上千步) 時自動加快，最後
+ * 一步一定在 MAX_LAG_NANOS 之內顯示出來；佇列的大小固定 (QUEUE_CAPACITY)，滿了時最舊的
+ * 棋步直接套用，不做動畫。
+ *
+ * 和 GameState 一樣記錄顯示內容改變過的格子 (見 getDirtyCellCount())：進行中那一步的
+ * 起點和終點，和已經套用的棋步經過的格子；畫面只要重畫這些格子。
+ *
+ * 建立之後不配置任何記憶體；只在一個執行緒上使用。
+ */
+final class MoveAnimator {
+    static final int QUEUE_CAPACITY = 1024;
+
+    // 排隊的棋步最多在這段時間內播完
+    static final long MAX_LAG_NANOS = 500000000L;
+
+    static final float DEFAULT_MOVES_PER_SECOND = 12f;
+
+    private static final float NANOS_PER_SECOND = 1e9f;
+
+    private BoardLayout mLayout;
+
+    // 顯示中的盤面
+    private boolean[] mBoxes;
+    private int mManCell;
+
+    // 上次 clearDirtyCells() 之後，顯示內容 (箱子，工人，移動中的箱子和工人) 改變過的
+    // 格子，不重複
+    private int[] mDirtyCells;
+    private boolean[] mDirtyMarks;
+    private int mDirtyCount;
+
+    // 所有排隊的棋步都套用之後，工人的位置
+    private int mTailManCell;
+
+    // 排隊的棋步 (環狀佇列)：工人從哪裡到哪裡，箱子從哪裡到哪裡 (沒有推箱時為 NO_CELL)
+    private final int[] mManFrom = new int[QUEUE_CAPACITY];
+    private final int[] mManTo = new int[QUEUE_CAPACITY];
+    private final int[] mBoxFrom = new int[QUEUE_CAPACITY];
+    private final int[] mBoxTo = new int[QUEUE_CAPACITY];
+    private final int[] mDirections = new int[QUEUE_CAPACITY];
+    private final boolean[] mBackward = new boolean[QUEUE_CAPACITY];
+
+    private int mHead;
+    private int mCount;
+
+    private float mMovesPerSecond = DEFAULT_MOVES_PER_SECOND;
+
+    // 目前的播放速度 (步/秒)；排隊太多時比 mMovesPerSecond 快
+    private float mRate;
+
+    // 進行中那一步的進度 (0 到 1)
+    private float mProgress;
+
+    // 上一次 update() 的時間；-1 表示還沒開始播放
+    private long mLastUpdate = -1;
+
+    // 最近一步工人移動的方向
+    private int mDirection = BoardLayout.DIR_RIGHT;
+
+    /**
+     * 建構子。
+     *
+     * @param board 目前的盤面。
+     */
+    MoveAnimator(BoardSnapshot board) {
+        reset(board);
+    }
+
+    /**
+     * 放棄所有排隊的棋步，直接顯示 board。
+     *
+     * @param board 目前的盤面。
+     */
+    void reset(BoardSnapshot board) {
+        BoardLayout layout = board.getLayout();
+
+        if ((mLayout == null) || (mLayout.NUM_CELL != layout.NUM_CELL)) {
+            mBoxes = new boolean[layout.NUM_CELL];
+
+            mDirtyCells = new int[layout.NUM_CELL];
+            mDirtyMarks = new boolean[layout.NUM_CELL];
+        }
+        else {
+            Arrays.fill(mBoxes, false);
+            Arrays.fill(mDirtyMarks, false);
+        }
+
+        mDirtyCount = 0;
+
+        mLayout = layout;
+
+        for (int i = 0; i < board.getBoxCount(); i++) {
+            mBoxes[board.getBoxCell(i)] = true;
+        }
+
+        mManCell = board.getManCell();
+        mTailManCell = mManCell;
+
+        mHead = 0;
+        mCount = 0;
+
+        mProgress = 0;
+        mLastUpdate = -1;
+    }
+
+    /**
+     * 傳回顯示中的盤面的靜態部份。
+     *
+     * @return BoardLayout 物件。
+     */
+    BoardLayout getLayout() {
+        return mLayout;
+    }
+
+    /**
+     * 設定動畫的速度。
+     *
+     * @param movesPerSecond 每秒幾步；0 或負數表示不做動畫，棋步直接套用。
+     */
+    void setMovesPerSecond(float movesPerSecond) {
+        mMovesPerSecond = movesPerSecond;
+    }
+
+    /**
+     * 傳回動畫的速度。
+     *
+     * @return float 每秒幾步。
+     */
+    float getMovesPerSecond() {
+        return mMovesPerSecond;
+    }
+
+    /**
+     * 把一個已經執行的棋步排進動畫。
+     *
+     * @param step 棋步字元 (LURD，大寫是推箱)。
+     * @param undo true: 這一步是被 _悔棋_ 取消 (工人倒退，箱子被拉回來)； false: 往前走。
+     */
+    void enqueue(char step, boolean undo) {
+        int direction = BoardLayout.directionOf(Character.toLowerCase(step));
+        boolean push = Character.isUpperCase(step);
+
+        int from = mTailManCell;
+        int to;
+        int boxFrom = BoardLayout.NO_CELL;
+        int boxTo = BoardLayout.NO_CELL;
+
+        if (undo) {
+            to = mLayout.neighbour(from, BoardLayout.opposite(direction));
+
+            if (push) {
+                boxFrom = mLayout.neighbour(from, direction);
+                boxTo = from;
+            }
+        }
+        else {
+            to = mLayout.neighbour(from, direction);
+
+            if (push) {
+                boxFrom = to;
+                boxTo = mLayout.neighbour(to, direction);
+            }
+        }
+
+        if (mCount == QUEUE_CAPACITY) {
+            finishHead();
+        }
+
+        int tail = (mHead + mCount) % QUEUE_CAPACITY;
+
+        mManFrom[tail] = from;
+        mManTo[tail] = to;
+        mBoxFrom[tail] = boxFrom;
+        mBoxTo[tail] = boxTo;
+        mDirections[tail] = direction;
+        mBackward[tail] = undo;
+
+        mCount++;
+
+        mTailManCell = to;
+
+        // 佇列原本是空的：這一步馬上開始播放
+        if (mCount == 1) {
+            markStep(tail);
+        }
+
+        if (mMovesPerSecond <= 0) {
+            finishAll();
+
+            return;
+        }
+
+        // 剩下的棋步必須在 MAX_LAG_NANOS 之內播完
+        mRate = Math.max(mMovesPerSecond, (mCount - mProgress) * NANOS_PER_SECOND / MAX_LAG_NANOS);
+    }
+
+    /**
+     * 把時間推進到 nanos，套用已經播完的棋步。每一格畫面呼叫一次。
+     *
+     * @param nanos 目前的時間 (System.nanoTime())。
+     */
+    void update(long nanos) {
+        if (mCount == 0) {
+            mLastUpdate = -1;
+
+            return;
+        }
+
+        if (mLastUpdate < 0) {
+            mLastUpdate = nanos;
+
+            return;
+        }
+
+        mProgress += (nanos - mLastUpdate) * mRate / NANOS_PER_SECOND;
+
+        mLastUpdate = nanos;
+
+        while ((mProgress >= 1) && (mCount > 0)) {
+            finishHead();
+
+            mProgress -= 1;
+        }
+
+        if (mCount == 0) {
+            mProgress = 0;
+            mLastUpdate = -1;
+        }
+        else {
+            // 進行中那一步的工人和箱子移動了
+            markStep(mHead);
+        }
+    }
+
+    /**
+     * 直接套用所有排隊的棋步，結束動畫。
+     */
+    void finishAll() {
+        while (mCount > 0) {
+            finishHead();
+        }
+
+        mProgress = 0;
+        mLastUpdate = -1;
+    }
+
+    /**
+     * 是否還有棋步在播放。
+     *
+     * @return true: 動畫進行中； false: otherwise。
+     */
+    boolean isAnimating() {
+        return mCount > 0;
+    }
+
+    /**
+     * 傳回排隊 (包含進行中) 的棋步數。
+     *
+     * @return int 棋步數。
+     */
+    int getQueuedCount() {
+        return mCount;
+    }
+
+    /**
+     * 傳回上次 clearDirtyCells() 之後，顯示內容改變過的格子數。
+     *
+     * @return int 格子數。
+     */
+    int getDirtyCellCount() {
+        return mDirtyCount;
+    }
+
+    /**
+     * 傳回第 index 個顯示內容改變過的格子。
+     *
+     * @param index 編號 (0 到 getDirtyCellCount() - 1)。
+     *
+     * @return int 格子索引。
+     */
+    int getDirtyCell(int index) {
+        return mDirtyCells[index];
+    }
+
+    /**
+     * 清除顯示內容改變過的格子的記錄；畫面重畫 (或不需要重畫) 這些格子之後呼叫。
+     */
+    void clearDirtyCells() {
+        for (int i = 0; i < mDirtyCount; i++) {
+            mDirtyMarks[mDirtyCells[i]] = false;
+        }
+
+        mDirtyCount = 0;
+    }
+
+    /**
+     * 顯示中的盤面上，指定的格子是否有箱子；進行中被推的箱子仍然算在它原來的格子
+     * (見 getMovingBoxCell())。
+     *
+     * @param cell 格子索引。
+     *
+     * @return true: 有箱子； false: otherwise。
+     */
+    boolean isBoxAt(int cell) {
+        return mBoxes[cell];
+    }
+
+    /**
+     * 傳回進行中的那一步被推 (或被拉) 的箱子原來的格子。
+     *
+     * @return int 格子索引；沒有時傳回 BoardLayout.NO_CELL。
+     */
+    int getMovingBoxCell() {
+        return (mCount > 0) ? mBoxFrom[mHead] : BoardLayout.NO_CELL;
+    }
+
+    /**
+     * 傳回進行中被推的箱子要到的格子。
+     *
+     * @return int 格子索引；沒有時傳回 BoardLayout.NO_CELL。
+     */
+    int getMovingBoxTarget() {
+        return (mCount > 0) ? mBoxTo[mHead] : BoardLayout.NO_CELL;
+    }
+
+    /**
+     * 傳回進行中被推的箱子的 column (x) 座標 (以格子為單位，可以有小數)。
+     *
+     * @return float column 座標。
+     */
+    float getMovingBoxColumn() {
+        return interpolate(mLayout.columnOf(mBoxFrom[mHead]), mLayout.columnOf(mBoxTo[mHead]));
+    }
+
+    /**
+     * 傳回進行中被推的箱子的 row (y) 座標 (以格子為單位，可以有小數)。
+     *
+     * @return float row 座標。
+     */
+    float getMovingBoxRow() {
+        return interpolate(mLayout.rowOf(mBoxFrom[mHead]), mLayout.rowOf(mBoxTo[mHead]));
+    }
+
+    /**
+     * 傳回工人顯示的 column (x) 座標 (以格子為單位，可以有小數)。
+     *
+     * @return float column 座標。
+     */
+    float getManColumn() {
+        if (mCount == 0) {
+            return mLayout.columnOf(mManCell);
+        }
+
+        return interpolate(mLayout.columnOf(mManFrom[mHead]), mLayout.columnOf(mManTo[mHead]));
+    }
+
+    /**
+     * 傳回工人顯示的 row (y) 座標 (以格子為單位，可以有小數)。
+     *
+     * @return float row 座標。
+     */
+    float getManRow() {
+        if (mCount == 0) {
+            return mLayout.rowOf(mManCell);
+        }
+
+        return interpolate(mLayout.rowOf(mManFrom[mHead]), mLayout.rowOf(mManTo[mHead]));
+    }
+
+    /**
+     * 傳回工人面對的方向：往前走時是進行中那一步的方向；倒退 (悔棋) 時不轉身。
+     *
+     * @return int BoardLayout.DIR_* 方向。
+     */
+    int getManDirection() {
+        if ((mCount > 0) && !mBackward[mHead]) {
+            return mDirections[mHead];
+        }
+
+        return mDirection;
+    }
+
+    /**
+     * 依進行中那一步的進度，在 from 和 to 之間內插。
+     *
+     * @param from 起點。
+     * @param to   終點。
+     *
+     * @return float 內插的位置。
+     */
+    private float interpolate(int from, int to) {
+        return from + (to - from) * mProgress;
+    }
+
+    /**
+     * 把佇列最前面的棋步套用到顯示中的盤面。
+     */
+    private void finishHead() {
+        markStep(mHead);
+
+        if (mBoxFrom[mHead] != BoardLayout.NO_CELL) {
+            mBoxes[mBoxFrom[mHead]] = false;
+            mBoxes[mBoxTo[mHead]] = true;
+        }
+
+        mManCell = mManTo[mHead];
+
+        if (!mBackward[mHead]) {
+            mDirection = mDirections[mHead];
+        }
+
+        mHead = (mHead + 1) % QUEUE_CAPACITY;
+        mCount--;
+    }
+
+    /**
+     * 記錄佇列裡第 index 個棋步經過的格子 (工人和箱子的起點和終點)。
+     *
+     * @param index 棋步在佇列陣列裡的位置。
+     */
+    private void markStep(int index) {
+        markDirty(mManFrom[index]);
+        markDirty(mManTo[index]);
+
+        if (mBoxFrom[index] != BoardLayout.NO_CELL) {
+            markDirty(mBoxFrom[index]);
+            markDirty(mBoxTo[index]);
+        }
+    }
+
+    /**
+     * 記錄顯示內容改變的格子。
+     *
+     * @param cell 格子索引。
+     */
+    private void markDirty(int cell) {
+        if (!mDirtyMarks[cell]) {
+            mDirtyMarks[cell] = true;
+            mDirtyCells[mDirtyCount++] = cell;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package io.tut.sokoban;
+
+import android.graphics.Rect;
+
+/**
+ * SurfaceView 繪圖執行緒要畫的一格畫面的全部內容：盤面快照，工人的方向，選取的箱子，
+ * 遊戲時間，按鈕，和畫面的配置；以及和上一份快照之間執行的棋步，讓繪圖執行緒做移動的
+ * 動畫 (見 MoveAnimator)。
+ *
+ * 由 UI 執行緒 (GameView) 在每次觸控和大小改變之後建立，交給 GameSurfaceView；建立之後
+ * 內容不再變動 (按鈕和 Rect 都是拷貝)，繪圖執行緒讀取時不需要任何同步。
+ */
+final class RenderSnapshot {
+    private final BoardSnapshot mBoard;
+
+    private final int mManFacing;
+
+    // 沒有選取時為 -1
+    private final int mSelectedColumn;
+    private final int mSelectedRow;
+
+    // 建立快照時的遊戲時間，和建立的時間 (SystemClock.uptimeMillis())
+    private final long mElapsedTime;
+    private final long mCapturedAt;
+
+    // 計時中；繪圖執行緒自己推算之後的時間
+    private final boolean mTiming;
+
+    // 依建立的順序編號；不連續時表示中間有快照被覆蓋，棋步不完整
+    private final long mSerial;
+
+    // 和上一份快照之間執行的棋步；mUndo 為 true 時是悔棋取消的棋步
+    private final String mMoves;
+    private final boolean mUndo;
+
+    private final TuTButton[] mButtons;
+
+    private final float mCellWidth;
+
+    private final int mPaddingLeft;
+    private final int mPaddingTop;
+
+    private final Rect mTimerBounds;
+
+    private final float mTimerTextSize;
+
+    /**
+     * 建構子。
+     *
+     * @param board          盤面快照。
+     * @param manFacing      工人的方向。
+     * @param selectedColumn 選取的箱子的行；沒有選取時為 -1。
+     * @param selectedRow    選取的箱子的列。
+     * @param elapsedTime    遊戲時間 (毫秒)。
+     * @param capturedAt     建立快照的時間 (SystemClock.uptimeMillis())。
+     * @param timing         是否正在計時。
+     * @param serial         快照的序號。
+     * @param moves          和上一份快照之間執行的棋步 (LURD)。
+     * @param undo           moves 是否是悔棋取消的棋步。
+     * @param buttons        遊戲按鈕；會複製一份。
+     * @param cellWidth      格子的寬度 (pixels)。
+     * @param paddingLeft    盤面左邊空出的格子數。
+     * @param paddingTop     盤面上方空出的格子數。
+     * @param timerBounds    遊戲時間的顯示區域；會複製一份。
+     * @param timerTextSize  遊戲時間的字體大小。
+     */
+    RenderSnapshot(BoardSnapshot board, int manFacing, int selectedColumn, int selectedRow,
+                   long elapsedTime, long capturedAt, boolean timing,
+                   long serial, String moves, boolean undo, TuTButton[] buttons,
+                   float cellWidth, int paddingLeft, int paddingTop, Rect timerBounds, float timerTextSize) {
+        mBoard = board;
+
+        mManFacing = manFacing;
+
+        mSelectedColumn = selectedColumn;
+        mSelectedRow = selectedRow;
+
+        mElapsedTime = elapsedTime;
+        mCapturedAt = capturedAt;
+        mTiming = timing;
+
+        mSerial = serial;
+        mMoves = moves;
+        mUndo = undo;
+
+        mButtons = new TuTButton[buttons.length];
+
+        for (int i = 0; i < buttons.length; i++) {
+            mButtons[i] = new TuTButton(buttons[i]);
+        }
+
+        mCellWidth = cellWidth;
+
+        mPaddingLeft = paddingLeft;
+        mPaddingTop = paddingTop;
+
+        mTimerBounds = new Rect(timerBounds);
+        mTimerTextSize = timerTextSize;
+    }
+
+    BoardSnapshot getBoard() {
+        return mBoard;
+    }
+
+    int getManFacing() {
+        return mManFacing;
+    }
+
+    int getSelectedColumn() {
+        return mSelectedColumn;
+    }
+
+    int getSelectedRow() {
+        return mSelectedRow;
+    }
+
+    /**
+     * 傳回 uptimeMillis 時的遊戲時間；計時中時從建立快照的時間往後推算。
+     *
+     * @param uptimeMillis 目前的 SystemClock.uptimeMillis()。
+     *
+     * @return long 遊戲時間 (毫秒)。
+     */
+    long getElapsedTime(long uptimeMillis) {
+        if (!mTiming) {
+            return mElapsedTime;
+        }
+
+        return mElapsedTime + Math.max(uptimeMillis - mCapturedAt, 0);
+    }
+
+    boolean isTiming() {
+        return mTiming;
+    }
+
+    long getSerial() {
+        return mSerial;
+    }
+
+    String getMoves() {
+        return mMoves;
+    }
+
+    boolean isUndo() {
+        return mUndo;
+    }
+
+    /**
+     * 傳回遊戲按鈕的拷貝；只能用來繪圖，不可修改。
+     *
+     * @return TuTButton[] 按鈕。
+     */
+    TuTButton[] getButtons() {
+        return mButtons;
+    }
+
+    float getCellWidth() {
+        return mCellWidth;
+    }
+
+    int getPaddingLeft() {
+        return mPaddingLeft;
+    }
+
+    int getPaddingTop() {
+        return mPaddingTop;
+    }
+
+    /**
+     * 傳回遊戲時間的顯示區域；不可修改。
+     *
+     * @return Rect 顯示區域。
+     */
+    Rect getTimerBounds() {
+        return mTimerBounds;
+    }
+
+    float getTimerTextSize() {
+        return mTimerTextSize;
+    }
+}
@@ -0,0 +1,217 @@
+package io.tut.sokoban;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * 依 _格子大小_ 預先縮放好的 tile 圖集 (atlas)；由 BitmapManager.getTileAtlas() 建立並
+ * 快取。
+ *
+ * 不透明的 tile (牆，地板，目標，空白，箱子) 放在 RGB_565 的圖集上，工人 (有透明的部份)
+ * 放在 ARGB_8888 的圖集上。每個 tile 在圖集上的大小就是格子的大小，繪圖時是 1:1 的複製，
+ * 不再每一格畫面縮放一次。
+ *
+ * 建立之後內容不再變動，可以同時在 UI 執行緒和繪圖執行緒上使用；繪圖的目的 Rect 由呼叫者
+ * 提供。
+ */
+final class TileAtlas {
+    private static final int TILE_BOX_ON_FLOOR = 0;
+    private static final int TILE_BOX_ON_GOAL = 1;
+    private static final int TILE_EMPTY = 2;
+    private static final int TILE_FLOOR = 3;
+    private static final int TILE_GOAL = 4;
+    private static final int TILE_WALL = 5;
+    private static final int TILE_BLANK = 6;
+
+    private static final int NUM_OPAQUE_TILES = 7;
+
+    // 工人的 tile 依 GameBitmaps.FACE_* 排列
+    private static final int TILE_MAN = NUM_OPAQUE_TILES;
+
+    private static final int NUM_TILES = TILE_MAN + 4;
+
+    private final int mCellSize;
+
+    private final Bitmap mOpaqueSheet;
+    private final Bitmap mSpriteSheet;
+
+    // 每個 tile 所在的圖集，和在圖集上的範圍
+    private final Bitmap[] mSheets = new Bitmap[NUM_TILES];
+    private final Rect[] mTiles = new Rect[NUM_TILES];
+
+    /**
+     * 建構子；從 skin 的 tile sheet 縮放出所有的 tile。
+     *
+     * @param skin     tile sheet。
+     * @param cellSize 格子的大小 (pixels)。
+     */
+    TileAtlas(GameBitmaps skin, int cellSize) {
+        mCellSize = cellSize;
+
+        mOpaqueSheet = Bitmap.createBitmap(cellSize * NUM_OPAQUE_TILES, cellSize, Bitmap.Config.RGB_565);
+        mSpriteSheet = Bitmap.createBitmap(cellSize * (NUM_TILES - TILE_MAN), cellSize, Bitmap.Config.ARGB_8888);
+
+        Canvas opaque = new Canvas(mOpaqueSheet);
+        Canvas sprite = new Canvas(mSpriteSheet);
+
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+        addTile(opaque, paint, skin, TILE_BOX_ON_FLOOR, skin.getTileBoxOnFloor());
+        addTile(opaque, paint, skin, TILE_BOX_ON_GOAL, skin.getTileBoxOnGoal());
+        addTile(opaque, paint, skin, TILE_EMPTY, skin.getTileEmpty());
+        addTile(opaque, paint, skin, TILE_FLOOR, skin.getTileFloor());
+        addTile(opaque, paint, skin, TILE_GOAL, skin.getTileGoal());
+        addTile(opaque, paint, skin, TILE_WALL, skin.getTileWall());
+        addTile(opaque, paint, skin, TILE_BLANK, skin.getTileBlank());
+
+        addTile(sprite, paint, skin, TILE_MAN + GameBitmaps.FACE_DOWN, skin.getTileMan(GameBitmaps.FACE_DOWN));
+        addTile(sprite, paint, skin, TILE_MAN + GameBitmaps.FACE_LEFT, skin.getTileMan(GameBitmaps.FACE_LEFT));
+        addTile(sprite, paint, skin, TILE_MAN + GameBitmaps.FACE_RIGHT, skin.getTileMan(GameBitmaps.FACE_RIGHT));
+        addTile(sprite, paint, skin, TILE_MAN + GameBitmaps.FACE_UP, skin.getTileMan(GameBitmaps.FACE_UP));
+    }
+
+    /**
+     * 傳回格子的大小。
+     *
+     * @return int pixels。
+     */
+    int getCellSize() {
+        return mCellSize;
+    }
+
+    /**
+     * 傳回圖集佔用的記憶體。
+     *
+     * @return int bytes。
+     */
+    int getByteCount() {
+        return mOpaqueSheet.getRowBytes() * mOpaqueSheet.getHeight()
+            + mSpriteSheet.getRowBytes() * mSpriteSheet.getHeight();
+    }
+
+    /**
+     * 畫出 _靜態層_ 上的一個格子 (牆，地板，目標，空白)；箱子和工人底下畫地板或目標。
+     *
+     * @param canvas Canvas 物件。
+     * @param label  格子的 XSB 標記。
+     * @param dst    格子的範圍；大小應該和 getCellSize() 相同。
+     *
+     * @return true: 認得的標記； false: 不認得，畫了空白的 tile。
+     */
+    boolean drawStaticTile(Canvas canvas, char label, Rect dst) {
+        int tile = staticTileOf(label);
+
+        canvas.drawBitmap(mSheets[tile], mTiles[tile], dst, null);
+
+        return tile != TILE_BLANK;
+    }
+
+    /**
+     * 畫出格子裡的箱子或工人；沒有箱子或工人的標記不畫。
+     *
+     * @param canvas Canvas 物件。
+     * @param label  格子的 XSB 標記。
+     * @param facing 工人的方向 (GameBitmaps.FACE_*)。
+     * @param dst    格子的範圍；大小應該和 getCellSize() 相同。
+     */
+    void drawPiece(Canvas canvas, char label, int facing, Rect dst) {
+        int tile = pieceTileOf(label, facing);
+
+        if (tile >= 0) {
+            canvas.drawBitmap(mSheets[tile], mTiles[tile], dst, null);
+        }
+    }
+
+    /**
+     * 畫出箱子或工人；位置可以有小數 (移動動畫)。
+     *
+     * @param canvas Canvas 物件。
+     * @param label  箱子或工人的 XSB 標記。
+     * @param facing 工人的方向 (GameBitmaps.FACE_*)。
+     * @param dst    範圍；大小應該和 getCellSize() 相同。
+     */
+    void drawPiece(Canvas canvas, char label, int facing, RectF dst) {
+        int tile = pieceTileOf(label, facing);
+
+        if (tile >= 0) {
+            canvas.drawBitmap(mSheets[tile], mTiles[tile], dst, null);
+        }
+    }
+
+    /**
+     * 把 skin 上的一個 tile 縮放到圖集上的第 tile 格。
+     *
+     * @param canvas 圖集的 Canvas 物件。
+     * @param paint  縮放用的 Paint。
+     * @param skin   tile sheet。
+     * @param tile   tile 編號。
+     * @param src    tile 在 tile sheet 上的範圍。
+     */
+    private void addTile(Canvas canvas, Paint paint, GameBitmaps skin, int tile, Rect src) {
+        int index = (tile < TILE_MAN) ? tile : tile - TILE_MAN;
+
+        mSheets[tile] = (tile < TILE_MAN) ? mOpaqueSheet : mSpriteSheet;
+        mTiles[tile] = new Rect(index * mCellSize, 0, (index + 1) * mCellSize, mCellSize);
+
+        canvas.drawBitmap(skin.getTileSheet(), src, mTiles[tile], paint);
+    }
+
+    /**
+     * 傳回靜態層上的格子要畫的 tile。
+     *
+     * @param label 格子的 XSB 標記。
+     *
+     * @return int tile 編號；不認得的標記傳回 TILE_BLANK。
+     */
+    private static int staticTileOf(char label) {
+        switch (label) {
+            case Sokoban.EMPTY:
+            case Sokoban.EMPTY_ALT:
+                return TILE_EMPTY;
+
+            case Sokoban.BOX:
+            case Sokoban.FLOOR:
+            case Sokoban.MAN:
+                return TILE_FLOOR;
+
+            case Sokoban.BOX_ON_GOAL:
+            case Sokoban.GOAL:
+            case Sokoban.MAN_ON_GOAL:
+                return TILE_GOAL;
+
+            case Sokoban.WALL:
+                return TILE_WALL;
+
+            default:
+                return TILE_BLANK;
+        }
+    }
+
+    /**
+     * 傳回畫在靜態層上面的 tile (箱子或工人)。
+     *
+     * @param label  格子的 XSB 標記。
+     * @param facing 工人的方向。
+     *
+     * @return int tile 編號；格子裡沒有箱子或工人時傳回 -1。
+     */
+    private static int pieceTileOf(char label, int facing) {
+        switch (label) {
+            case Sokoban.BOX:
+                return TILE_BOX_ON_FLOOR;
+
+            case Sokoban.BOX_ON_GOAL:
+                return TILE_BOX_ON_GOAL;
+
+            case Sokoban.MAN:
+            case Sokoban.MAN_ON_GOAL:
+                return TILE_MAN + facing;
+
+            default:
+                return -1;
+        }
+    }
+}
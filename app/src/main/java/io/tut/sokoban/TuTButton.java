@@ -6,9 +6,12 @@ import android.graphics.Rect;
 
 /**
  * 在 Canvas 上繪出一個自定義 Button。
+ *
+ * 每個按鈕有自己的 Paint；SurfaceView 的繪圖執行緒畫的是按鈕的拷貝 (見 RenderSnapshot)，
+ * 不會和 UI 執行緒共用 Paint。
  */
 class TuTButton {
-    private static final Paint mPaint = new Paint();
+    private final Paint mPaint = new Paint();
 
     private static int colorText;
     private static int colorBackground;
@@ -44,6 +47,25 @@ class TuTButton {
         mTextBounds = new Rect();
     }
 
+    /**
+     * 複製建構子；複製按鈕目前的標籤，狀態，和大小。
+     *
+     * @param other 要複製的 TuTButton。
+     */
+    TuTButton(TuTButton other) {
+        mLabel = other.mLabel;
+
+        mActivated = other.mActivated;
+        mColorMask = other.mColorMask;
+
+        mTextSize = other.mTextSize;
+        mTextBounds = new Rect(other.mTextBounds);
+
+        if (other.mBounds != null) {
+            mBounds = new Rect(other.mBounds);
+        }
+    }
+
     /**
      * 設定 TuTButton 共通的背景顏色。
      *
@@ -106,6 +128,15 @@ class TuTButton {
         );
     }
 
+    /**
+     * 取得按鈕的 _顯示區域_。
+     *
+     * @return Rect 按鈕的顯示區域；不可修改。
+     */
+    Rect getBounds() {
+        return mBounds;
+    }
+
     /**
      * 取得按鈕上的 _標籤_ (label)。
      *
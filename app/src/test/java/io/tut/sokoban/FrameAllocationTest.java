@@ -0,0 +1,115 @@
+package io.tut.sokoban;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+/**
+ * 確認 _穩定狀態_ 下的一格畫面 (和一次觸控) 不配置任何記憶體：走一步 (或推一次箱子)，
+ * 檢查遊戲狀態，取出改變的格子和盤面標記，更新時間文字，再悔棋回去。
+ *
+ * 這些是 GameView 的 onTouchEvent() 和 onDraw() 在 GameState 和 ElapsedTimeText 上的
+ * 全部工作；以 HotSpot 的 ThreadMXBean.getThreadAllocatedBytes() 量測目前執行緒配置的
+ * bytes。GameView 本身 (真正的 dispatchTouchEvent() 和 draw()) 由 androidTest 的
+ * GameViewAllocationTest 在裝置上檢查。
+ */
+public class FrameAllocationTest {
+    private static final String[] LEVEL = {
+            "#######",
+            "#     #",
+            "# $ . #",
+            "#  @  #",
+            "# . $ #",
+            "#     #",
+            "#######"
+    };
+
+    private static final String STEPS = "lluRRdrrdLL";
+
+    private static final int WARM_UP_FRAMES = 20000;
+    private static final int MEASURED_FRAMES = 20000;
+
+    @Test
+    public void steadyStateFrame_allocatesNothing() throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+
+        com.sun.management.ThreadMXBean hotSpot = (com.sun.management.ThreadMXBean) threads;
+
+        assumeTrue(hotSpot.isThreadAllocatedMemorySupported());
+
+        hotSpot.setThreadAllocatedMemoryEnabled(true);
+
+        GameState gameState = new GameState(LEVEL);
+        gameState.setGameStatus(GameState.GAMING);
+
+        ElapsedTimeText elapsedTime = new ElapsedTimeText();
+
+        // 暖身：讓 JIT 編譯，歷史記錄的陣列也長到穩定的大小
+        int checksum = runFrames(gameState, elapsedTime, WARM_UP_FRAMES);
+
+        long threadId = Thread.currentThread().getId();
+
+        long before = hotSpot.getThreadAllocatedBytes(threadId);
+
+        checksum += runFrames(gameState, elapsedTime, MEASURED_FRAMES);
+
+        long allocated = hotSpot.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(checksum != 0);
+        assertEquals("bytes allocated in " + MEASURED_FRAMES + " frames", 0, allocated);
+    }
+
+    /**
+     * 模擬 frames 格畫面；每一格做一步 (最後悔棋回到初始盤面)。
+     *
+     * @param gameState   GameState 物件。
+     * @param elapsedTime 時間文字。
+     * @param frames      畫面數。
+     *
+     * @return int 讀到的盤面標記的總和，避免 JIT 把工作消除。
+     */
+    private static int runFrames(GameState gameState, ElapsedTimeText elapsedTime, int frames) {
+        int checksum = 0;
+
+        for (int frame = 0; frame < frames; frame++) {
+            int step = frame % (STEPS.length() * 2);
+
+            // 先照 STEPS 走完，再一步一步悔棋回去
+            if (step < STEPS.length()) {
+                gameState.redoStep(STEPS.charAt(step));
+            }
+            else {
+                gameState.undoStep();
+            }
+
+            gameState.updateState();
+
+            checksum += gameState.isUndoable() ? 1 : 0;
+            checksum += gameState.isRedoable() ? 1 : 0;
+
+            CharSequence[] labelInCells = gameState.getLabelInCells();
+
+            for (int i = 0; i < gameState.getDirtyCellCount(); i++) {
+                checksum += labelInCells[gameState.getDirtyRow(i)].charAt(gameState.getDirtyColumn(i));
+            }
+
+            gameState.clearDirtyCells();
+
+            if (elapsedTime.set(frame * 37L)) {
+                checksum += elapsedTime.chars()[elapsedTime.length() - 1];
+            }
+
+            if (gameState.getGameStatus() != GameState.GAMING) {
+                gameState.setGameStatus(GameState.GAMING);
+            }
+        }
+
+        return checksum;
+    }
+}
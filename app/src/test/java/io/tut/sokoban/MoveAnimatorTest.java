@@ -0,0 +1,223 @@
+package io.tut.sokoban;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * MoveAnimator 的內插，跳格，和排隊上限。
+ */
+public class MoveAnimatorTest {
+    private static final String[] LEVEL = {
+            "#######",
+            "#     #",
+            "# $ . #",
+            "#  @  #",
+            "# . $ #",
+            "#     #",
+            "#######"
+    };
+
+    private static final long MILLIS = 1000000L;
+
+    @Test
+    public void move_isInterpolatedByTime() {
+        GameState gameState = new GameState(LEVEL);
+        MoveAnimator animator = newAnimator(gameState, 10f);
+
+        gameState.redoStep(Sokoban.MOVE_RIGHT);
+        animator.enqueue(Sokoban.MOVE_RIGHT, false);
+
+        animator.update(0);
+        animator.update(50 * MILLIS);
+
+        assertTrue(animator.isAnimating());
+        assertEquals(3.5f, animator.getManColumn(), 1e-3f);
+        assertEquals(3f, animator.getManRow(), 1e-3f);
+        assertEquals(BoardLayout.DIR_RIGHT, animator.getManDirection());
+
+        animator.update(100 * MILLIS);
+
+        assertFalse(animator.isAnimating());
+        assertEquals(gameState.getManColumn(), (int) animator.getManColumn());
+    }
+
+    @Test
+    public void pushAndUndo_moveTheBox() {
+        GameState gameState = new GameState(LEVEL);
+        MoveAnimator animator = newAnimator(gameState, 10f);
+
+        int box = cellOf(gameState, 4, 4);
+        int pushed = cellOf(gameState, 5, 4);
+
+        // 從 (3, 3) 走到 (3, 4)，往右推 (4, 4) 的箱子
+        for (char step : "dR".toCharArray()) {
+            assertTrue(gameState.redoStep(step));
+            animator.enqueue(step, false);
+        }
+
+        animator.update(0);
+        animator.update(150 * MILLIS);
+
+        assertEquals(box, animator.getMovingBoxCell());
+        assertEquals(4.5f, animator.getMovingBoxColumn(), 1e-3f);
+
+        animator.update(200 * MILLIS);
+
+        assertTrue(animator.isBoxAt(pushed));
+        assertFalse(animator.isBoxAt(box));
+
+        gameState.undoStep();
+        animator.enqueue(Sokoban.PUSH_RIGHT, true);
+
+        animator.update(300 * MILLIS);
+        animator.update(400 * MILLIS);
+
+        assertTrue(animator.isBoxAt(box));
+        assertFalse(animator.isBoxAt(pushed));
+        assertEquals(gameState.getManColumn(), (int) animator.getManColumn());
+        assertEquals(gameState.getManRow(), (int) animator.getManRow());
+
+        // 倒退時不轉身
+        assertEquals(BoardLayout.DIR_RIGHT, animator.getManDirection());
+    }
+
+    @Test
+    public void stalledFrame_skipsInsteadOfQueueing() {
+        GameState gameState = new GameState(LEVEL);
+        MoveAnimator animator = newAnimator(gameState, 10f);
+
+        for (char step : "rrdd".toCharArray()) {
+            animator.enqueue(step, false);
+        }
+
+        animator.update(0);
+
+        // 一次停了 10 秒：下一格畫面直接是最後的位置
+        animator.update(10000 * MILLIS);
+
+        assertFalse(animator.isAnimating());
+        assertEquals(5f, animator.getManColumn(), 1e-3f);
+        assertEquals(5f, animator.getManRow(), 1e-3f);
+    }
+
+    @Test
+    public void thousandQueuedMoves_finishWithinMaxLag() {
+        GameState gameState = new GameState(LEVEL);
+        MoveAnimator animator = newAnimator(gameState, 10f);
+
+        for (int i = 0; i < 1000; i++) {
+            animator.enqueue((i % 2 == 0) ? Sokoban.MOVE_RIGHT : Sokoban.MOVE_LEFT, false);
+        }
+
+        assertEquals(1000, animator.getQueuedCount());
+
+        // 以 60 Hz 播放：最後一步必須在 MAX_LAG_NANOS 之內顯示
+        long frame = 1000000000L / 60;
+        long now = 0;
+
+        animator.update(now);
+
+        while (animator.isAnimating()) {
+            now += frame;
+
+            animator.update(now);
+
+            assertTrue("still animating after " + now + " ns", now <= MoveAnimator.MAX_LAG_NANOS + frame);
+        }
+
+        assertEquals(3f, animator.getManColumn(), 1e-3f);
+    }
+
+    @Test
+    public void queue_isBounded() {
+        GameState gameState = new GameState(LEVEL);
+        MoveAnimator animator = newAnimator(gameState, 10f);
+
+        for (int i = 0; i < 3 * MoveAnimator.QUEUE_CAPACITY + 1; i++) {
+            animator.enqueue((i % 2 == 0) ? Sokoban.MOVE_RIGHT : Sokoban.MOVE_LEFT, false);
+        }
+
+        assertEquals(MoveAnimator.QUEUE_CAPACITY, animator.getQueuedCount());
+
+        animator.finishAll();
+
+        assertEquals(4f, animator.getManColumn(), 1e-3f);
+    }
+
+    @Test
+    public void zeroSpeed_appliesImmediately() {
+        GameState gameState = new GameState(LEVEL);
+        MoveAnimator animator = newAnimator(gameState, 0f);
+
+        animator.enqueue(Sokoban.MOVE_UP, false);
+
+        assertFalse(animator.isAnimating());
+        assertEquals(2f, animator.getManRow(), 1e-3f);
+    }
+
+    @Test
+    public void dirtyCells_coverOnlyTheMovingPieces() {
+        GameState gameState = new GameState(LEVEL);
+        MoveAnimator animator = newAnimator(gameState, 10f);
+
+        int man = cellOf(gameState, 3, 3);
+        int below = cellOf(gameState, 3, 4);
+        int box = cellOf(gameState, 4, 4);
+        int pushed = cellOf(gameState, 5, 4);
+
+        // 第一步馬上開始播放：工人的起點和終點
+        animator.enqueue(Sokoban.MOVE_DOWN, false);
+        animator.enqueue(Sokoban.PUSH_RIGHT, false);
+
+        assertDirtyCells(animator, man, below);
+
+        animator.update(0);
+        animator.update(50 * MILLIS);
+
+        assertDirtyCells(animator, man, below);
+
+        // 第一步播完，推箱開始：工人和箱子經過的格子
+        animator.update(150 * MILLIS);
+
+        assertDirtyCells(animator, man, below, box, pushed);
+
+        animator.update(200 * MILLIS);
+
+        assertFalse(animator.isAnimating());
+        assertDirtyCells(animator, below, box, pushed);
+
+        animator.update(300 * MILLIS);
+
+        assertDirtyCells(animator);
+    }
+
+    private static void assertDirtyCells(MoveAnimator animator, int... cells) {
+        int[] dirty = new int[animator.getDirtyCellCount()];
+
+        for (int i = 0; i < dirty.length; i++) {
+            dirty[i] = animator.getDirtyCell(i);
+        }
+
+        Arrays.sort(dirty);
+        Arrays.sort(cells);
+
+        assertArrayEquals(cells, dirty);
+
+        animator.clearDirtyCells();
+    }
+
+    private static MoveAnimator newAnimator(GameState gameState, float movesPerSecond) {
+        MoveAnimator animator = new MoveAnimator(gameState.snapshot());
+
+        animator.setMovesPerSecond(movesPerSecond);
+
+        return animator;
+    }
+
+    private static int cellOf(GameState gameState, int column, int row) {
+        return row * gameState.NUM_COLUMN + column;
+    }
+}
@@ -0,0 +1,114 @@
+package io.tut.sokoban;
+
+import java.util.Random;
+
+/**
+ * 量測用的盤面，和在盤面上的 _隨機漫步_。
+ *
+ * generate() 產生 size x size 的盤面：外圍是牆，工人在左上角，每隔 SPACING 格放一個箱子，
+ * 目標在箱子的右邊一格 (或就在箱子底下，已經解開的盤面)。箱子之間留有走道，工人可以
+ * 走到盤面上的任何地方。
+ */
+final class Boards {
+    private static final int SPACING = 4;
+
+    private static final long SEED = 0x50c0ba4L;
+
+    private Boards() {
+    }
+
+    /**
+     * 產生 size x size 的盤面。
+     *
+     * @param size   盤面的邊長 (格數，包含外圍的牆)；至少是 6。
+     * @param solved true: 箱子都在目標上； false: 箱子都在目標左邊一格。
+     *
+     * @return String[] 關卡的 _初始盤面_。
+     */
+    static String[] generate(int size, boolean solved) {
+        char[][] cells = new char[size][size];
+
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                boolean border = (r == 0) || (c == 0) || (r == size - 1) || (c == size - 1);
+
+                cells[r][c] = border ? Sokoban.WALL : Sokoban.FLOOR;
+            }
+        }
+
+        // 目標 (箱子右邊一格) 也要在牆內
+        for (int r = 2; r <= size - 3; r += SPACING) {
+            for (int c = 2; c + 1 <= size - 2; c += SPACING) {
+                if (solved) {
+                    cells[r][c] = Sokoban.BOX_ON_GOAL;
+                }
+                else {
+                    cells[r][c] = Sokoban.BOX;
+                    cells[r][c + 1] = Sokoban.GOAL;
+                }
+            }
+        }
+
+        cells[1][1] = Sokoban.MAN;
+
+        String[] board = new String[size];
+
+        for (int r = 0; r < size; r++) {
+            board[r] = new String(cells[r]);
+        }
+
+        return board;
+    }
+
+    /**
+     * 產生隨機漫步的方向；固定的種子，每次執行都相同。
+     *
+     * @param length 方向數。
+     *
+     * @return byte[] 方向 (BoardLayout.DIR_*)。
+     */
+    static byte[] randomDirections(int length) {
+        Random random = new Random(SEED);
+
+        byte[] directions = new byte[length];
+
+        for (int i = 0; i < length; i++) {
+            directions[i] = (byte) random.nextInt(BoardLayout.NUM_DIRECTION);
+        }
+
+        return directions;
+    }
+
+    /**
+     * 往指定方向走一步；前面是箱子時改為推箱。
+     *
+     * @param gameState 遊戲盤面。
+     * @param direction 方向 (BoardLayout.DIR_*)。
+     *
+     * @return true: 走了 (或推了) 一步； false: 走不動。
+     */
+    static boolean step(GameState gameState, int direction) {
+        return gameState.redoStep(Sokoban.STEP_MOVING.charAt(direction))
+            || gameState.redoStep(Sokoban.STEP_PUSHING.charAt(direction));
+    }
+
+    /**
+     * 在盤面上隨機漫步，直到記錄了 length 步。
+     *
+     * @param gameState 遊戲盤面。
+     * @param length    步數。
+     *
+     * @throws IllegalStateException 工人被箱子困住，走不到 length 步。
+     */
+    static void walk(GameState gameState, int length) {
+        byte[] directions = randomDirections(length * SPACING);
+
+        for (int i = 0; gameState.getStepCount() < length; i++) {
+            if (i == directions.length) {
+                throw new IllegalStateException("walk: stuck after " + gameState.getStepCount() + " steps");
+            }
+
+            step(gameState, directions[i]);
+        }
+    }
+}
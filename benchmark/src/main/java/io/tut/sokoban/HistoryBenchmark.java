@@ -0,0 +1,136 @@
+package io.tut.sokoban;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 整個歷史紀錄的悔棋和覆棋：在 HISTORY_LENGTH 步的隨機漫步之後，逐步 undoStep() 回到
+ * 初始盤面，或從初始盤面以 redoStep(Sokoban.REDO_STEP) 逐步走回最後一步。結果是每一步
+ * 的平均時間。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(HistoryBenchmark.HISTORY_LENGTH)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryBenchmark {
+    static final int HISTORY_LENGTH = 10000;
+
+    /**
+     * 每次量測前跳到最後一步。
+     */
+    @State(Scope.Thread)
+    public static class AtEnd {
+        @Param({"10", "20", "40", "60"})
+        public int size;
+
+        GameState mGameState;
+
+        long mPositionHash;
+
+        @Setup(Level.Trial)
+        public void record() {
+            mGameState = newHistory(size);
+
+            mPositionHash = mGameState.positionHash();
+        }
+
+        @Setup(Level.Invocation)
+        public void toEnd() {
+            jumpTo(mGameState, HISTORY_LENGTH, mPositionHash);
+        }
+    }
+
+    /**
+     * 每次量測前跳回初始盤面。
+     */
+    @State(Scope.Thread)
+    public static class AtStart {
+        @Param({"10", "20", "40", "60"})
+        public int size;
+
+        GameState mGameState;
+
+        long mPositionHash;
+
+        @Setup(Level.Trial)
+        public void record() {
+            mGameState = newHistory(size);
+
+            mPositionHash = new GameState(Boards.generate(size, false)).positionHash();
+        }
+
+        @Setup(Level.Invocation)
+        public void toStart() {
+            jumpTo(mGameState, 0, mPositionHash);
+        }
+    }
+
+    @Benchmark
+    public int undoAll(AtEnd history) {
+        GameState gameState = history.mGameState;
+
+        while (gameState.isUndoable()) {
+            gameState.undoStep();
+        }
+
+        return gameState.getStepCount();
+    }
+
+    @Benchmark
+    public int redoAll(AtStart history) {
+        GameState gameState = history.mGameState;
+
+        while (gameState.isRedoable()) {
+            gameState.redoStep(Sokoban.REDO_STEP);
+        }
+
+        return gameState.getStepCount();
+    }
+
+    /**
+     * 產生記錄了 HISTORY_LENGTH 步隨機漫步的盤面。
+     *
+     * @param size 盤面的邊長。
+     *
+     * @return GameState 停在最後一步的盤面。
+     */
+    private static GameState newHistory(int size) {
+        GameState gameState = new GameState(Boards.generate(size, false));
+
+        Boards.walk(gameState, HISTORY_LENGTH);
+
+        return gameState;
+    }
+
+    /**
+     * 跳到第 step 步，並確認盤面和記錄下來的相同；否則量到的是錯誤的盤面。
+     *
+     * @param gameState    遊戲盤面。
+     * @param step         要跳到的步數。
+     * @param positionHash 第 step 步時的 positionHash()。
+     *
+     * @throws IllegalStateException 跳到的盤面和記錄的不同。
+     */
+    private static void jumpTo(GameState gameState, int step, long positionHash) {
+        gameState.jumpToStep(step);
+
+        if (gameState.positionHash() != positionHash) {
+            throw new IllegalStateException("jumpTo: board differs from the recorded one at step " + step);
+        }
+    }
+}
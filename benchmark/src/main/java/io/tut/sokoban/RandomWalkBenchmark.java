@@ -0,0 +1,61 @@
+package io.tut.sokoban;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 隨機漫步的吞吐量：從初始盤面往隨機的方向走 WALK_LENGTH 步 (前面是箱子時推箱，走不動
+ * 時跳過)；每一步都經過 GameState.redoStep()，並記錄在歷史紀錄裡。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(RandomWalkBenchmark.WALK_LENGTH)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RandomWalkBenchmark {
+    static final int WALK_LENGTH = 10000;
+
+    @Param({"10", "20", "40", "60"})
+    public int size;
+
+    private final byte[] mDirections = Boards.randomDirections(WALK_LENGTH);
+
+    private String[] mBoard;
+
+    private GameState mGameState;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        mBoard = Boards.generate(size, false);
+    }
+
+    // 每次都從初始盤面開始，歷史紀錄不會一直增長
+    @Setup(Level.Invocation)
+    public void reset() {
+        mGameState = new GameState(mBoard);
+    }
+
+    @Benchmark
+    public int randomWalk() {
+        for (byte direction : mDirections) {
+            Boards.step(mGameState, direction);
+        }
+
+        return mGameState.getStepCount();
+    }
+}
@@ -0,0 +1,61 @@
+package io.tut.sokoban;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 單一棋步的延遲：GameState.redoStep() 走一步 (或推一次箱子)，再以 undoStep() 悔棋，
+ * 盤面和歷史紀錄都回到原來的狀態。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SingleMoveBenchmark {
+    @Param({"10", "20", "40", "60"})
+    public int size;
+
+    private GameState mMoveState;
+
+    // 工人在第一個箱子的左邊
+    private GameState mPushState;
+
+    @Setup
+    public void setUp() {
+        String[] board = Boards.generate(size, false);
+
+        mMoveState = new GameState(board);
+
+        mPushState = new GameState(board);
+        mPushState.redoStep(Sokoban.MOVE_DOWN);
+    }
+
+    @Benchmark
+    public int moveAndUndo() {
+        mMoveState.redoStep(Sokoban.MOVE_RIGHT);
+        mMoveState.undoStep();
+
+        return mMoveState.getStepCount();
+    }
+
+    @Benchmark
+    public int pushAndUndo() {
+        mPushState.redoStep(Sokoban.PUSH_RIGHT);
+        mPushState.undoStep();
+
+        return mPushState.getStepCount();
+    }
+}
@@ -0,0 +1,49 @@
+package io.tut.sokoban;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每一步之後檢查盤面 (GameState.updateState()：是否解開，是否無解) 的成本；分別量測
+ * 還沒解開和已經解開的盤面。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SolvedCheckBenchmark {
+    @Param({"10", "20", "40", "60"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean solved;
+
+    private GameState mGameState;
+
+    @Setup
+    public void setUp() {
+        mGameState = new GameState(Boards.generate(size, solved));
+    }
+
+    @Benchmark
+    public int updateState() {
+        // 還原成遊戲中，每次都走同樣的檢查
+        mGameState.setGameStatus(GameState.GAMING);
+        mGameState.updateState();
+
+        return mGameState.getGameStatus();
+    }
+}
@@ -0,0 +1,295 @@
+package io.tut.sokoban;
+
+/**
+ * BoardLayout 記錄關卡盤面上 _不會變動_ 的部份 (牆壁，地板，目標點，空白)；以 _一維_
+ * byte[] 保存，格子 (column, row) 的 _索引_ (cell) 為 row * NUM_COLUMN + column。
+ *
+ * 箱子和工人這類 _會變動_ 的部份，由 GameState 另外保存。
+ */
+public final class BoardLayout {
+    // 方向；與 Sokoban.STEP_MOVING ("lurd") 的字元順序相同
+    public static final int DIR_LEFT = 0;
+    public static final int DIR_UP = 1;
+    public static final int DIR_RIGHT = 2;
+    public static final int DIR_DOWN = 3;
+
+    public static final int NUM_DIRECTION = 4;
+
+    // 不存在的格子 (超出盤面)
+    public static final int NO_CELL = -1;
+
+    public final int NUM_ROW;
+    public final int NUM_COLUMN;
+    public final int NUM_CELL;
+
+    private final byte[] mTiles;
+
+    private final int[] mNeighbours;
+
+    private final int[] mGoalCells;
+
+    // 死格：箱子一旦被推進去，就再也推不到任何目標
+    private final boolean[] mDeadCells;
+
+    /**
+     * 建構子。
+     *
+     * @param initialState 記錄遊戲 _初始盤面_ 的字串陣列；長度不足的列，以 _空白_ 補齊。
+     */
+    public BoardLayout(String[] initialState) {
+        int numColumn = 0;
+
+        for (String line : initialState) {
+            numColumn = Math.max(numColumn, line.length());
+        }
+
+        NUM_ROW = initialState.length;
+        NUM_COLUMN = numColumn;
+        NUM_CELL = NUM_ROW * NUM_COLUMN;
+
+        mTiles = new byte[NUM_CELL];
+
+        for (int r = 0; r < NUM_ROW; r++) {
+            for (int c = 0; c < NUM_COLUMN; c++) {
+                char label = (c < initialState[r].length()) ? initialState[r].charAt(c) : Sokoban.EMPTY;
+
+                mTiles[cellOf(c, r)] = (byte) tileOf(label);
+            }
+        }
+
+        int numGoal = 0;
+
+        for (int cell = 0; cell < NUM_CELL; cell++) {
+            if (isGoal(cell)) {
+                numGoal++;
+            }
+        }
+
+        mGoalCells = new int[numGoal];
+
+        for (int cell = 0, i = 0; cell < NUM_CELL; cell++) {
+            if (isGoal(cell)) {
+                mGoalCells[i++] = cell;
+            }
+        }
+
+        mNeighbours = new int[NUM_CELL * NUM_DIRECTION];
+
+        for (int cell = 0; cell < NUM_CELL; cell++) {
+            int c = columnOf(cell);
+            int r = rowOf(cell);
+
+            mNeighbours[cell * NUM_DIRECTION + DIR_LEFT] = (c > 0) ? cell - 1 : NO_CELL;
+            mNeighbours[cell * NUM_DIRECTION + DIR_UP] = (r > 0) ? cell - NUM_COLUMN : NO_CELL;
+            mNeighbours[cell * NUM_DIRECTION + DIR_RIGHT] = ((c + 1) < NUM_COLUMN) ? cell + 1 : NO_CELL;
+            mNeighbours[cell * NUM_DIRECTION + DIR_DOWN] = ((r + 1) < NUM_ROW) ? cell + NUM_COLUMN : NO_CELL;
+        }
+
+        mDeadCells = findDeadCells();
+    }
+
+    /**
+     * 傳回 (column, row) 對應的格子 _索引_。
+     *
+     * @param column 行
+     * @param row    列
+     *
+     * @return int 格子索引。
+     */
+    public int cellOf(int column, int row) {
+        return row * NUM_COLUMN + column;
+    }
+
+    /**
+     * 傳回格子所在的 column (x) 座標。
+     *
+     * @param cell 格子索引。
+     *
+     * @return int column (x) 座標。
+     */
+    public int columnOf(int cell) {
+        return cell % NUM_COLUMN;
+    }
+
+    /**
+     * 傳回格子所在的 row (y) 座標。
+     *
+     * @param cell 格子索引。
+     *
+     * @return int row (y) 座標。
+     */
+    public int rowOf(int cell) {
+        return cell / NUM_COLUMN;
+    }
+
+    /**
+     * 傳回格子在 _指定方向_ 上的相鄰格子。
+     *
+     * @param cell      格子索引。
+     * @param direction 方向 (DIR_LEFT, DIR_UP, DIR_RIGHT, DIR_DOWN)。
+     *
+     * @return int 相鄰格子的索引；超出盤面時傳回 NO_CELL。
+     */
+    public int neighbour(int cell, int direction) {
+        return mNeighbours[cell * NUM_DIRECTION + direction];
+    }
+
+    /**
+     * 傳回格子的 _靜態_ 標記 (Sokoban.FLOOR, GOAL, WALL, EMPTY, EMPTY_ALT)。
+     *
+     * @param cell 格子索引。
+     *
+     * @return char 靜態標記。
+     */
+    public char getTile(int cell) {
+        return (char) mTiles[cell];
+    }
+
+    /**
+     * 傳回第 i 個 _目標_ (goal) 格子。
+     *
+     * @param i 目標編號 (0 ~ getGoalCount() - 1)。
+     *
+     * @return int 格子索引。
+     */
+    public int getGoalCell(int i) {
+        return mGoalCells[i];
+    }
+
+    /**
+     * 傳回 _目標_ (goal) 格子的數目。
+     *
+     * @return int 目標數目。
+     */
+    public int getGoalCount() {
+        return mGoalCells.length;
+    }
+
+    /**
+     * 格子是否為 _死格_：箱子在這裡，不論其它箱子怎麼擺，都推不到任何目標。
+     *
+     * @param cell 格子索引。
+     *
+     * @return true: 死格； false: otherwise (包括牆壁等不能放箱子的格子)。
+     */
+    public boolean isDeadCell(int cell) {
+        return mDeadCells[cell];
+    }
+
+    /**
+     * 格子是否為 _目標_ (goal) 位置。
+     *
+     * @param cell 格子索引。
+     *
+     * @return true: 目標位置； false: otherwise。
+     */
+    public boolean isGoal(int cell) {
+        return mTiles[cell] == Sokoban.GOAL;
+    }
+
+    /**
+     * 格子是否 _可以_ 站人或放箱子 (地板或目標)。
+     *
+     * @param cell 格子索引。
+     *
+     * @return true: 可以佔據； false: otherwise。
+     */
+    public boolean isWalkable(int cell) {
+        byte tile = mTiles[cell];
+
+        return (tile == Sokoban.FLOOR) || (tile == Sokoban.GOAL);
+    }
+
+    /**
+     * 傳回 LURD 棋步字元對應的 _方向_。
+     *
+     * @param step 棋步字元 (大小寫皆可)。
+     *
+     * @return int 方向；不是棋步字元時傳回 -1。
+     */
+    public static int directionOf(char step) {
+        int direction = Sokoban.STEP_MOVING.indexOf(step);
+
+        return (direction > -1) ? direction : Sokoban.STEP_PUSHING.indexOf(step);
+    }
+
+    /**
+     * 傳回 _相反_ 的方向。
+     *
+     * @param direction 方向。
+     *
+     * @return int 相反方向。
+     */
+    public static int opposite(int direction) {
+        return (direction + 2) % NUM_DIRECTION;
+    }
+
+    /**
+     * 找出所有的 _死格_。從所有目標同時出發，反向 _拉_ 箱子做一次 BFS (箱子在 c，工人
+     * 站在 p = c + d 往 p + d 退一格，箱子就被拉到 p)；拉得到的格子是 _活格_，其餘可以
+     * 放箱子的格子都是死格。每個格子最多進佇列一次，所以是 O(NUM_CELL)。
+     *
+     * @return boolean[] 死格標記。
+     */
+    private boolean[] findDeadCells() {
+        boolean[] live = new boolean[NUM_CELL];
+        int[] queue = new int[NUM_CELL];
+
+        int head = 0;
+        int tail = 0;
+
+        for (int goal : mGoalCells) {
+            live[goal] = true;
+            queue[tail++] = goal;
+        }
+
+        while (head < tail) {
+            int cell = queue[head++];
+
+            for (int d = 0; d < NUM_DIRECTION; d++) {
+                int pulled = neighbour(cell, d);
+
+                if ((pulled == NO_CELL) || live[pulled] || !isWalkable(pulled)) {
+                    continue;
+                }
+
+                int manTo = neighbour(pulled, d);
+
+                if ((manTo != NO_CELL) && isWalkable(manTo)) {
+                    live[pulled] = true;
+                    queue[tail++] = pulled;
+                }
+            }
+        }
+
+        boolean[] dead = new boolean[NUM_CELL];
+
+        for (int cell = 0; cell < NUM_CELL; cell++) {
+            dead[cell] = isWalkable(cell) && !live[cell];
+        }
+
+        return dead;
+    }
+
+    /**
+     * 傳回 XSB 標記去掉箱子和工人之後的 _靜態_ 標記。
+     *
+     * @param label XSB 標記。
+     *
+     * @return char 靜態標記。
+     */
+    private static char tileOf(char label) {
+        switch (label) {
+            case Sokoban.BOX:
+            case Sokoban.MAN:
+                return Sokoban.FLOOR;
+
+            case Sokoban.BOX_ON_GOAL:
+            case Sokoban.MAN_ON_GOAL:
+                return Sokoban.GOAL;
+
+            default:
+                return label;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package io.tut.sokoban;
+
+/**
+ * 某一個時間點的盤面 _快照_ (工人和箱子的位置)；建立之後內容不再變動，可以安全地交給
+ * 其它執行緒 (例如解題程式) 使用，不必碰到 GameState 裡正在變化的盤面。
+ */
+public final class BoardSnapshot {
+    private final BoardLayout mLayout;
+
+    private final int mManCell;
+
+    private final int[] mBoxCells;
+
+    /**
+     * 建構子。
+     *
+     * @param layout   關卡的靜態盤面。
+     * @param manCell  工人位置。
+     * @param boxCells 箱子位置；會複製一份，呼叫者之後可以繼續使用原陣列。
+     */
+    BoardSnapshot(BoardLayout layout, int manCell, int[] boxCells) {
+        mLayout = layout;
+        mManCell = manCell;
+        mBoxCells = boxCells.clone();
+    }
+
+    /**
+     * 傳回關卡的靜態盤面。
+     *
+     * @return BoardLayout 物件。
+     */
+    public BoardLayout getLayout() {
+        return mLayout;
+    }
+
+    /**
+     * 傳回工人位置。
+     *
+     * @return int 格子索引。
+     */
+    public int getManCell() {
+        return mManCell;
+    }
+
+    /**
+     * 傳回箱子數目。
+     *
+     * @return int 箱子數。
+     */
+    public int getBoxCount() {
+        return mBoxCells.length;
+    }
+
+    /**
+     * 傳回第 i 個箱子的位置。
+     *
+     * @param i 箱子編號。
+     *
+     * @return int 格子索引。
+     */
+    public int getBoxCell(int i) {
+        return mBoxCells[i];
+    }
+}
@@ -0,0 +1,265 @@
+package io.tut.sokoban;
+
+/**
+ * 偵測盤面是否已經 _無解_ (deadlock)；每次推箱後由 GameState 呼叫。
+ *
+ * 1. 凍結 (freeze)：箱子在水平和垂直方向都推不動 (旁邊是牆，兩邊都是死格，或是同樣
+ *    推不動的箱子)，它就永遠不會再動；只要凍結的一群箱子裡，有一個不在目標上，就無解。
+ *
+ * 2. 封閉區域 (closed corral)：把凍結的箱子當成牆，其它箱子當成可以推開，工人仍然到
+ *    不了的區域就 _永遠_ 到不了；這種區域裡如果有不在目標上的箱子，或是空著的目標，
+ *    也無解。
+ *
+ * 所有陣列在建構時配置好；一次檢查只走訪推動的箱子附近，和 (必要時) 一次 BFS。
+ */
+final class DeadlockDetector {
+    private final BoardLayout mLayout;
+
+    private final byte[] mPieces;
+
+    // 凍結檢查時，暫時 _當成牆_ 的箱子 (以世代標記)
+    private final int[] mAsWall;
+
+    // 已經確定凍結的箱子 (以世代標記)
+    private final int[] mFrozen;
+
+    // 一次凍結檢查中，_暫時_ 證明凍結的箱子；假設 (當成牆的箱子) 不成立時要丟掉
+    private final int[] mProof;
+    private int mProofSize;
+
+    private final int[] mQueue;
+    private final int[] mReached;
+
+    private int mGeneration;
+
+    private boolean mFrozenOffGoal;
+
+    /**
+     * 建構子。
+     *
+     * @param layout 關卡的靜態盤面。
+     * @param pieces GameState 的動態盤面；直接讀取，不複製。
+     */
+    DeadlockDetector(BoardLayout layout, byte[] pieces) {
+        mLayout = layout;
+        mPieces = pieces;
+
+        mAsWall = new int[layout.NUM_CELL];
+        mFrozen = new int[layout.NUM_CELL];
+        mProof = new int[layout.NUM_CELL];
+
+        mQueue = new int[layout.NUM_CELL];
+        mReached = new int[layout.NUM_CELL];
+    }
+
+    /**
+     * 箱子剛被推到 boxCell 之後，檢查盤面是否無解；只檢查這個箱子和它旁邊的箱子是否
+     * 因此凍結。
+     *
+     * @param boxCell 箱子推到的格子。
+     * @param manCell 工人位置。
+     *
+     * @return true: 無解； false: otherwise (不代表一定有解)。
+     */
+    boolean isDeadlockedAfterPush(int boxCell, int manCell) {
+        nextGeneration();
+
+        boolean frozen = findFrozen(boxCell);
+
+        for (int d = 0; d < BoardLayout.NUM_DIRECTION; d++) {
+            int neighbour = mLayout.neighbour(boxCell, d);
+
+            if (isBox(neighbour)) {
+                frozen |= findFrozen(neighbour);
+            }
+        }
+
+        if (mFrozenOffGoal) {
+            return true;
+        }
+
+        // 沒有 _新_ 凍結的箱子，封閉區域就不會改變
+        return frozen && isCorralDeadlocked(manCell);
+    }
+
+    /**
+     * 完整檢查整個盤面是否無解 (例如關卡的初始盤面)。
+     *
+     * @param manCell 工人位置。
+     *
+     * @return true: 無解； false: otherwise (不代表一定有解)。
+     */
+    boolean isDeadlocked(int manCell) {
+        nextGeneration();
+
+        for (int cell = 0; cell < mLayout.NUM_CELL; cell++) {
+            if (isBox(cell)) {
+                findFrozen(cell);
+            }
+        }
+
+        return mFrozenOffGoal || isCorralDeadlocked(manCell);
+    }
+
+    /**
+     * 檢查箱子是否 _新_ 凍結；連同證明過程中一起凍結的箱子，記錄在 mFrozen。
+     *
+     * @param cell 箱子所在格子。
+     *
+     * @return true: 這次檢查發現新的凍結箱子； false: otherwise。
+     */
+    private boolean findFrozen(int cell) {
+        if (mFrozen[cell] == mGeneration) {
+            return false;
+        }
+
+        mProofSize = 0;
+
+        if (!checkFrozen(cell)) {
+            return false;
+        }
+
+        // 最外層的箱子沒有任何假設，證明過程中留下來的箱子都 _真的_ 凍結了
+        for (int i = 0; i < mProofSize; i++) {
+            int box = mProof[i];
+
+            mFrozen[box] = mGeneration;
+
+            if (!mLayout.isGoal(box)) {
+                mFrozenOffGoal = true;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * 檢查箱子是否凍結；成立時把箱子放進 mProof。
+     *
+     * @param cell 箱子所在格子。
+     *
+     * @return true: 凍結 (在目前 _當成牆_ 的假設下)； false: otherwise。
+     */
+    private boolean checkFrozen(int cell) {
+        if (mFrozen[cell] == mGeneration) {
+            return true;
+        }
+
+        int proofSize = mProofSize;
+
+        // 檢查其它箱子時，先把這個箱子當成牆，避免互相遞迴
+        mAsWall[cell] = mGeneration;
+
+        boolean frozen = isBlocked(cell, BoardLayout.DIR_LEFT, BoardLayout.DIR_RIGHT)
+            && isBlocked(cell, BoardLayout.DIR_UP, BoardLayout.DIR_DOWN);
+
+        mAsWall[cell] = 0;
+
+        if (frozen) {
+            mProof[mProofSize++] = cell;
+        }
+        else {
+            // 這個箱子推得動，以它當成牆為前提的證明都不成立
+            mProofSize = proofSize;
+        }
+
+        return frozen;
+    }
+
+    /**
+     * 箱子在 (side, otherSide) 這條軸上是否推不動。
+     *
+     * @param cell      箱子所在格子。
+     * @param side      軸的一個方向。
+     * @param otherSide 軸的另一個方向。
+     *
+     * @return true: 推不動； false: otherwise。
+     */
+    private boolean isBlocked(int cell, int side, int otherSide) {
+        int a = mLayout.neighbour(cell, side);
+        int b = mLayout.neighbour(cell, otherSide);
+
+        if (isWall(a) || isWall(b)) {
+            return true;
+        }
+
+        if (mLayout.isDeadCell(a) && mLayout.isDeadCell(b)) {
+            return true;
+        }
+
+        return (isBox(a) && checkFrozen(a)) || (isBox(b) && checkFrozen(b));
+    }
+
+    /**
+     * 把凍結的箱子當成牆，檢查工人永遠到不了的區域裡，是否有不在目標上的箱子，或是空著
+     * 的目標。
+     *
+     * @param manCell 工人位置。
+     *
+     * @return true: 無解； false: otherwise。
+     */
+    private boolean isCorralDeadlocked(int manCell) {
+        int head = 0;
+        int tail = 0;
+
+        mReached[manCell] = mGeneration;
+        mQueue[tail++] = manCell;
+
+        while (head < tail) {
+            int cell = mQueue[head++];
+
+            for (int d = 0; d < BoardLayout.NUM_DIRECTION; d++) {
+                int next = mLayout.neighbour(cell, d);
+
+                if ((next != BoardLayout.NO_CELL) && (mReached[next] != mGeneration)
+                    && mLayout.isWalkable(next) && (mFrozen[next] != mGeneration)) {
+                    mReached[next] = mGeneration;
+                    mQueue[tail++] = next;
+                }
+            }
+        }
+
+        for (int cell = 0; cell < mLayout.NUM_CELL; cell++) {
+            if ((mReached[cell] == mGeneration) || (mFrozen[cell] == mGeneration) || !mLayout.isWalkable(cell)) {
+                continue;
+            }
+
+            if (isBox(cell) != mLayout.isGoal(cell)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * 格子是否 _暫時_ 或 _永久_ 是牆 (包括超出盤面)。
+     *
+     * @param cell 格子索引；可以是 BoardLayout.NO_CELL。
+     *
+     * @return true: 牆； false: otherwise。
+     */
+    private boolean isWall(int cell) {
+        return (cell == BoardLayout.NO_CELL) || !mLayout.isWalkable(cell) || (mAsWall[cell] == mGeneration);
+    }
+
+    /**
+     * 格子上是否有箱子。
+     *
+     * @param cell 格子索引；可以是 BoardLayout.NO_CELL。
+     *
+     * @return true: 有箱子； false: otherwise。
+     */
+    private boolean isBox(int cell) {
+        return (cell != BoardLayout.NO_CELL) && (mPieces[cell] == GameState.PIECE_BOX);
+    }
+
+    /**
+     * 開始新的一次檢查。
+     */
+    private void nextGeneration() {
+        mGeneration++;
+
+        mFrozenOffGoal = false;
+    }
+}
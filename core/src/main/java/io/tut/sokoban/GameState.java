@@ -0,0 +1,1222 @@
+package io.tut.sokoban;
+
+import java.util.logging.Logger;
+
+/**
+ * GameState 實際紀錄遊戲盤面的變化。
+ */
+public class GameState {
+    private static final String TAG = "SOKOBAN";
+
+    // core 不依賴 Android；在 Android 上 java.util.logging 也會寫到 logcat
+    private static final Logger LOG = Logger.getLogger(TAG);
+
+    public static final int PAUSED = 0;
+    public static final int STARTED = 1;
+    public static final int GAMING = 2;
+    public static final int STUCK = 3;
+    public static final int SOLVED = 4;
+
+    // 遊戲中，但盤面已經無解；只是警告，悔棋讓盤面恢復之後回到 GAMING
+    public static final int DEADLOCKED = 5;
+
+    public static final int STEP_BLOCKED = 0;
+    public static final int STEP_MOVING = 1;
+    public static final int STEP_PUSHING = 2;
+
+    static final byte PIECE_NONE = 0;
+    static final byte PIECE_BOX = 1;
+    static final byte PIECE_MAN = 2;
+
+    // mFrozenSince：目前的解題步驟上，盤面一直沒有凍結
+    private static final int NOT_FROZEN = Integer.MAX_VALUE;
+
+    public final int NUM_ROW;
+    public final int NUM_COLUMN;
+
+    private final StepHistory mHistory;
+
+    private final BoardLayout mLayout;
+
+    // 盤面上 _會變動_ 的部份 (箱子，工人)；索引與 BoardLayout 相同
+    private final byte[] mPieces;
+
+    private final CharSequence[] mLabelInCells;
+
+    private final ReachableArea mReachableArea;
+
+    // 第一次使用 pushBoxTo() 時才建立
+    private PushPlanner mPushPlanner;
+
+    private final DeadlockDetector mDeadlockDetector;
+
+    // 建構，和還原 checkpoint 時，暫存箱子位置用
+    private final int[] mBoxCells;
+
+    // 所有箱子的位置 (沒有特定順序)，隨推箱即時更新，記錄 checkpoint 時不必掃描整個盤面；
+    // mBoxSlots[cell] 是 cell 上的箱子在 mBoxList 裡的位置
+    private final int[] mBoxList;
+    private final int[] mBoxSlots;
+
+    // walkTo() 找到的路徑 (LURD 移動字元)
+    private final char[] mWalkSteps;
+
+    // 上次 clearDirtyCells() 之後，內容 (箱子，工人) 改變過的格子，不重複
+    private final int[] mDirtyCells;
+    private final boolean[] mDirtyMarks;
+    private int mDirtyCount;
+
+    private long mElapsedTime;
+
+    private int mGameStatus;
+
+    private int mManCell;
+
+    // 已經在 _目標_ 上，和在 _死格_ 上的箱子數；隨推箱即時更新
+    private int mBoxesOnGoals;
+    private int mBoxesOnDeadCells;
+
+    // 推箱後發現凍結 (freeze) 或封閉區域 (corral) 造成的無解
+    private boolean mFrozen;
+
+    // 沿著解題步驟，mFrozen 只會由 false 變成 true：記下第一個凍結的步數，悔棋和跳到
+    // checkpoint 時直接比較游標，不必重新檢查整個盤面 (O(盤面大小))
+    private int mFrozenSince;
+
+    // Zobrist 雜湊：箱子的部份隨推箱 _即時_ 更新；工人的部份以 _可到達區域_ 中索引最小的
+    // 格子代表，只在箱子移動後才需要重算
+    private long mBoxHash;
+
+    private int mManRegionCell;
+    private boolean mManRegionDirty;
+
+    private int mStepType;
+
+    /**
+     * 建構子。
+     *
+     * @param initialState 記錄遊戲 _初始盤面_ 的字串陣列。
+     */
+    public GameState(String[] initialState) {
+        int numBoxes = 0;
+
+        mLayout = new BoardLayout(initialState);
+
+        NUM_ROW = mLayout.NUM_ROW;
+        NUM_COLUMN = mLayout.NUM_COLUMN;
+
+        mPieces = new byte[mLayout.NUM_CELL];
+
+        mDirtyCells = new int[mLayout.NUM_CELL];
+        mDirtyMarks = new boolean[mLayout.NUM_CELL];
+
+        mLabelInCells = new CharSequence[NUM_ROW];
+
+        for (int r = 0; r < NUM_ROW; r++) {
+            mLabelInCells[r] = new RowView(r);
+
+            // 搜尋 _箱子_ 和 _搬運工_ 在關卡內的初始位置；_目標點_ 由 BoardLayout 記錄
+            for (int c = 0; (c < NUM_COLUMN) && (c < initialState[r].length()); c++) {
+                char label = initialState[r].charAt(c);
+                int cell = mLayout.cellOf(c, r);
+
+                if ((label == Sokoban.BOX) || (label == Sokoban.BOX_ON_GOAL)) {
+                    moveBoxIn(cell);
+
+                    numBoxes++;
+                }
+
+                if ((label == Sokoban.MAN) || (label == Sokoban.MAN_ON_GOAL)) {
+                    mPieces[cell] = PIECE_MAN;
+
+                    mManCell = cell;
+                }
+            }
+        }
+
+        mReachableArea = new ReachableArea(mLayout);
+
+        mWalkSteps = new char[mLayout.NUM_CELL];
+
+        mDeadlockDetector = new DeadlockDetector(mLayout, mPieces);
+        mFrozen = mDeadlockDetector.isDeadlocked(mManCell);
+        mFrozenSince = mFrozen ? 0 : NOT_FROZEN;
+
+        mManRegionDirty = true;
+
+        mBoxCells = new int[numBoxes];
+
+        mBoxList = new int[numBoxes];
+        mBoxSlots = new int[mLayout.NUM_CELL];
+
+        collectBoxCells();
+        setBoxList(mBoxCells);
+
+        mHistory = new StepHistory(numBoxes);
+
+        recordCheckpoint();
+
+        // 初始盤面由 GameView 整個畫出來
+        clearDirtyCells();
+    }
+
+    /**
+     * 取得目前的遊戲 _進行時間_。遊戲進行時間的估算由 GameActivity 負責，顯示
+     * 由 GameView 負責，這裡只負責 _保留_ (記錄)。
+     *
+     * @return long _已進行_ 的 _遊戲時間_。
+     */
+    public long getElapsedTime() {
+        return mElapsedTime;
+    }
+
+    /**
+     * 取得 _目前_ 的 _遊戲狀態_。
+     *
+     * @return int 遊戲狀態。
+     */
+    public int getGameStatus() {
+        return mGameStatus;
+    }
+
+    /**
+     * 傳回 _目前_ 的 _遊戲盤面_ 狀態；每一列是一個 _唯讀_ 的 CharSequence，內容隨盤面
+     * 變化即時更新，不需要重新取得。
+     *
+     * @return CharSequence[] _遊戲盤面_。
+     */
+    public CharSequence[] getLabelInCells() {
+        return mLabelInCells;
+    }
+
+    /**
+     * 傳回 _箱子位置_ 的 Zobrist 雜湊值 (不含工人)。
+     *
+     * @return long 64 位元雜湊值。
+     */
+    public long boxHash() {
+        return mBoxHash;
+    }
+
+    /**
+     * 傳回 _目前盤面_ 的 Zobrist 雜湊值；由箱子位置，加上工人 _可到達區域_ 組成。工人在
+     * 同一個區域內走動，雜湊值不變，所以兩個只差在工人走路的盤面會得到相同的值。
+     *
+     * 成本：工人走路不會改變可到達區域，也不需要重算，所以箱子沒有移動時是 O(1)，只讀取
+     * 已經算好的值。箱子移動 (推箱，悔棋推箱，還原 checkpoint) 之後的第一次呼叫，要以
+     * flood fill 重算工人的可到達區域，是 O(區域的格子數)；之後的呼叫又是 O(1)。推箱可能
+     * 把區域切開或連起來，所以無法在推箱時以 O(1) 更新。需要固定成本的呼叫者 (例如每一步
+     * 都要查詢的搜尋) 應該使用 boxHash()，自己維護工人的部份。
+     *
+     * @return long 64 位元雜湊值。
+     */
+    public long positionHash() {
+        if (mManRegionDirty) {
+            mManRegionCell = mReachableArea.flood(mPieces, mManCell);
+
+            mManRegionDirty = false;
+        }
+
+        return mBoxHash ^ Zobrist.manKey(mManRegionCell);
+    }
+
+    /**
+     * 建立目前盤面的 _快照_；可以交給其它執行緒 (例如解題程式) 使用。
+     *
+     * 箱子位置複製自隨推箱即時更新的 mBoxList，不掃描整個盤面；箱子沒有特定順序。
+     *
+     * @return BoardSnapshot 盤面快照。
+     */
+    public BoardSnapshot snapshot() {
+        return new BoardSnapshot(mLayout, mManCell, mBoxList);
+    }
+
+    /**
+     * 傳回指定的棋盤位置目前的 XSB 標記。
+     *
+     * @param column 行
+     * @param row    列
+     *
+     * @return char XSB 標記。
+     */
+    public char getLabel(int column, int row) {
+        int cell = mLayout.cellOf(column, row);
+
+        switch (mPieces[cell]) {
+            case PIECE_BOX:
+                return mLayout.isGoal(cell) ? Sokoban.BOX_ON_GOAL : Sokoban.BOX;
+
+            case PIECE_MAN:
+                return mLayout.isGoal(cell) ? Sokoban.MAN_ON_GOAL : Sokoban.MAN;
+
+            default:
+                return mLayout.getTile(cell);
+        }
+    }
+
+    /**
+     * 接收遊戲進行的 _指令_ (人物移動，推箱移動，重覆之前動作等），分派執行，並在執行
+     * 成功後 ( _done_ == true) 記錄。
+     *
+     * @param step 要進行的動作。
+     *
+     * @return boolean: true 指令成功執行並紀錄； false otherwise。
+     */
+    public boolean redoStep(char step) {
+        boolean done;
+
+        if (step == Sokoban.REDO_STEP) {
+            done = redoUndoneStep();
+        }
+        else {
+            done = applyStep(step);
+        }
+
+        if (done) {
+            setStepType(step);
+
+            mHistory.append(step);
+
+            // 游標之後的步驟捨棄了；之後才凍結的紀錄也跟著作廢
+            mFrozenSince = mFrozen ? Math.min(mFrozenSince, mHistory.cursor()) : NOT_FROZEN;
+
+            recordCheckpoint();
+        }
+
+        return done;
+    }
+
+    /**
+     * 讓工人以 _最短_ 的路徑 (不推動箱子) 走到指定的棋盤位置；路徑上的每一步都經由
+     * redoStep() 執行並記錄。
+     *
+     * @param column 行
+     * @param row    列
+     *
+     * @return int 走了幾步；位置在盤面外，或者走不到時傳回 0。
+     */
+    public int walkTo(int column, int row) {
+        if ((column < 0) || (column >= NUM_COLUMN) || (row < 0) || (row >= NUM_ROW)) {
+            return 0;
+        }
+
+        int cell = mLayout.cellOf(column, row);
+
+        if (!isFloor(cell)) {
+            return 0;
+        }
+
+        int length = mReachableArea.findPath(mPieces, mManCell, cell, mWalkSteps);
+
+        for (int i = 0; i < length; i++) {
+            redoStep(mWalkSteps[i]);
+        }
+
+        return Math.max(length, 0);
+    }
+
+    /**
+     * 把 (boxColumn, boxRow) 上的箱子，以推箱次數最少的方式推到 (column, row)；其它箱子
+     * 不動。規劃出的每一步都經由 redoStep() 執行並記錄。
+     *
+     * @param boxColumn 箱子所在的行
+     * @param boxRow    箱子所在的列
+     * @param column    目的地的行
+     * @param row       目的地的列
+     *
+     * @return String 執行的 LURD 步驟；推不過去時傳回 null。
+     */
+    public String pushBoxTo(int boxColumn, int boxRow, int column, int row) {
+        if (!isBoxAt(boxColumn, boxRow) || (column < 0) || (column >= NUM_COLUMN) || (row < 0) || (row >= NUM_ROW)) {
+            return null;
+        }
+
+        int to = mLayout.cellOf(column, row);
+
+        if (!mLayout.isWalkable(to) || isBox(to)) {
+            return null;
+        }
+
+        if (mPushPlanner == null) {
+            mPushPlanner = new PushPlanner(mLayout);
+        }
+
+        String steps = mPushPlanner.plan(mPieces, mManCell, mLayout.cellOf(boxColumn, boxRow), to);
+
+        if (steps != null) {
+            for (int i = 0; i < steps.length(); i++) {
+                redoStep(steps.charAt(i));
+            }
+        }
+
+        return steps;
+    }
+
+    /**
+     * 直接 _跳到_ 解題步驟的第 step 步 (0 是關卡的初始盤面)；往前或往後都可以，step 不能
+     * 超過目前 (包含可以覆棋) 的步數。
+     *
+     * 距離不遠時逐步悔棋或覆棋；否則從最近的 checkpoint 還原盤面，再重走不到
+     * StepHistory.checkpointInterval() 步。
+     *
+     * @param step 目標步數。
+     *
+     * @throws IllegalArgumentException step 不在 0 到 (包含可以覆棋的) 步數之間。
+     */
+    public void jumpToStep(int step) {
+        if ((step < 0) || (step > mHistory.length())) {
+            throw new IllegalArgumentException("jumpToStep: " + step + " not in [0, " + mHistory.length() + "]");
+        }
+
+        int cursor = mHistory.cursor();
+        int checkpoint = mHistory.checkpointBefore(step);
+        int stepsFromCheckpoint = step - checkpoint * mHistory.checkpointInterval();
+
+        if ((step <= cursor) && ((cursor - step) <= stepsFromCheckpoint)) {
+            while (mHistory.cursor() > step) {
+                undoStep();
+            }
+
+            return;
+        }
+
+        if ((step < cursor) || ((step - cursor) > stepsFromCheckpoint)) {
+            restoreCheckpoint(checkpoint);
+        }
+
+        while (mHistory.cursor() < step) {
+            redoUndoneStep();
+        }
+    }
+
+    /**
+     * 傳回上次 clearDirtyCells() 之後，內容改變過的格子數。
+     *
+     * @return int 格子數。
+     */
+    public int getDirtyCellCount() {
+        return mDirtyCount;
+    }
+
+    /**
+     * 傳回第 index 個改變過的格子的 column (x) 座標。
+     *
+     * @param index 編號 (0 到 getDirtyCellCount() - 1)。
+     *
+     * @return int column (x) 座標。
+     */
+    public int getDirtyColumn(int index) {
+        return mLayout.columnOf(mDirtyCells[index]);
+    }
+
+    /**
+     * 傳回第 index 個改變過的格子的 row (y) 座標。
+     *
+     * @param index 編號 (0 到 getDirtyCellCount() - 1)。
+     *
+     * @return int row (y) 座標。
+     */
+    public int getDirtyRow(int index) {
+        return mLayout.rowOf(mDirtyCells[index]);
+    }
+
+    /**
+     * 清除改變過的格子的記錄；GameView 重繪之後呼叫。
+     */
+    public void clearDirtyCells() {
+        for (int i = 0; i < mDirtyCount; i++) {
+            mDirtyMarks[mDirtyCells[i]] = false;
+        }
+
+        mDirtyCount = 0;
+    }
+
+    /**
+     * _清空_ 目前的 _悔棋_ 記錄。
+     */
+    public void resetUndoHistory() {
+        mHistory.truncate();
+    }
+
+    /**
+     * 設定目前的 _遊戲狀態_。
+     *
+     * @param gameStatus 遊戲狀態
+     */
+    public void setGameStatus(int gameStatus) {
+        mGameStatus = gameStatus;
+    }
+
+    /**
+     * 取消 (undo) 遊戲進行的上一步驟；同時將它取消的步驟保留下來，如果萬一又反悔想要
+     * redo。
+     */
+    public void undoStep() {
+        if (!isUndoable()) {
+            return;
+        }
+
+        char step = mHistory.stepAt(mHistory.cursor() - 1);
+
+        switch (step) {
+            case Sokoban.MOVE_DOWN:
+                moveManUp();
+
+                break;
+
+            case Sokoban.MOVE_LEFT:
+                moveManRight();
+
+                break;
+
+            case Sokoban.MOVE_RIGHT:
+                moveManLeft();
+
+                break;
+
+            case Sokoban.MOVE_UP:
+                moveManDown();
+
+                break;
+
+            case Sokoban.PUSH_DOWN:
+                moveManUp();
+                moveBoxUp(mManCell + 2 * mLayout.NUM_COLUMN);
+
+                break;
+
+            case Sokoban.PUSH_LEFT:
+                moveManRight();
+                moveBoxRight(mManCell - 2);
+
+                break;
+
+            case Sokoban.PUSH_RIGHT:
+                moveManLeft();
+                moveBoxLeft(mManCell + 2);
+
+                break;
+
+            case Sokoban.PUSH_UP:
+                moveManDown();
+                moveBoxDown(mManCell - 2 * mLayout.NUM_COLUMN);
+
+                break;
+
+            default:
+                // 不應該到這兒，記錄一下
+                LOG.fine("undoStep: " + step);
+
+                break;
+        }
+
+        setStepType(step);
+
+        mHistory.backward();
+
+        mFrozen = mHistory.cursor() >= mFrozenSince;
+    }
+
+    /**
+     * 更新 _已進行_ 的 _遊戲時間_ 為 elapsedTime。遊戲進行時間的估算由 GameActivity 負責，顯示
+     * 由 GameView 負責，這裡只負責 _保留_ (記錄)。
+     *
+     * @param elapsedTime GameActivity 估算後傳入的遊戲進行時間。
+     */
+    public void updateElapsedTime(long elapsedTime) {
+        mElapsedTime = elapsedTime;
+    }
+
+    /**
+     * 檢查遊戲謎題是否已被解開；遊戲進行中發現盤面已經 _無解_ 時，改為 DEADLOCKED，
+     * 悔棋之後盤面不再無解時，改回 GAMING。
+     *
+     * 無解不會結束遊戲；只有玩家 _認輸_ (STUCK) 或解開 (SOLVED) 才會。
+     */
+    public void updateState() {
+        if (isPuzzleSolved()) {
+            mGameStatus = SOLVED;
+        }
+        else if ((mGameStatus == GAMING) && isDeadlocked()) {
+            mGameStatus = DEADLOCKED;
+        }
+        else if ((mGameStatus == DEADLOCKED) && !isDeadlocked()) {
+            mGameStatus = GAMING;
+        }
+    }
+
+    /**
+     * 遊戲是否正在進行 (計時，可以移動)：GAMING，或是盤面無解但還可以悔棋的 DEADLOCKED。
+     *
+     * @return true: 遊戲進行中； false: otherwise。
+     */
+    public boolean isPlaying() {
+        return (mGameStatus == GAMING) || (mGameStatus == DEADLOCKED);
+    }
+
+    /**
+     * 傳回工人目前所在位置的 column (x) 座標。
+     *
+     * @return int 工人目前所在的 column (x) 座標。
+     */
+    public int getManColumn() {
+        return mLayout.columnOf(mManCell);
+    }
+
+    /**
+     * 傳回工人目前所在位置的 row (y) 座標。
+     *
+     * @return int 工人目前所在位置的 row (y) 座標。
+     */
+    public int getManRow() {
+        return mLayout.rowOf(mManCell);
+    }
+
+    /**
+     * 傳回解謎步驟的字串 。
+     *
+     * @return String 由解謎步驟組成的字串。
+     */
+    public String getSolvingSteps() {
+        return mHistory.toString();
+    }
+
+    /**
+     * 傳回目前已走的 _步數_；不需要像 getSolvingSteps() 那樣建立字串。
+     *
+     * @return int 步數。
+     */
+    public int getStepCount() {
+        return mHistory.cursor();
+    }
+
+    /**
+     * 傳回解題步驟中的第 index 步 (包含可以覆棋的步驟)。
+     *
+     * @param index 步數 (0 是第一步)。
+     *
+     * @return char 棋步字元。
+     */
+    public char getStep(int index) {
+        return mHistory.stepAt(index);
+    }
+
+    /**
+     * 傳回目前盤面之前的 _最後一步_ 棋步。
+     *
+     * @return char 棋步字元；還沒有任何棋步時傳回 0。
+     */
+    public char getLastStep() {
+        return isUndoable() ? mHistory.stepAt(mHistory.cursor() - 1) : 0;
+    }
+
+    /**
+     * 傳回 _最近_ 執行的棋步 _類型_。
+     *
+     * @return int 棋步類型。
+     */
+    public int getStepType() {
+        return mStepType;
+    }
+
+    /**
+     * 傳回箱子是否在工人正 _上_ 方一格。
+     *
+     * @return true: 箱子在工人正 _上_ 方一格； false: otherwise。
+     */
+    public boolean isBoxAboveToMan() {
+        return isBox(mLayout.neighbour(mManCell, BoardLayout.DIR_UP));
+    }
+
+    /**
+     * 傳回箱子是否在箱子正 _下_ 方一格。
+     *
+     * @return true: 工人在箱子正 _下_ 方一格； false: otherwise。
+     */
+    public boolean isBoxBelowToMan() {
+        return isBox(mLayout.neighbour(mManCell, BoardLayout.DIR_DOWN));
+    }
+
+    /**
+     * 傳回箱子是否在工人正 _左_ 方一格。
+     *
+     * @return true: 箱子在工人正 _左_ 方一格； false: otherwise。
+     */
+    public boolean isBoxLeftToMan() {
+        return isBox(mLayout.neighbour(mManCell, BoardLayout.DIR_LEFT));
+    }
+
+    /**
+     * 傳回工人是否在工人正 _右_ 方一格。
+     *
+     * @return true: 箱子在工人正 _右_ 方一格； false: otherwise。
+     */
+    public boolean isBoxRightToMan() {
+        return isBox(mLayout.neighbour(mManCell, BoardLayout.DIR_RIGHT));
+    }
+
+    /**
+     * 指定的棋盤位置上是否有箱子。
+     *
+     * @param column 行
+     * @param row    列
+     *
+     * @return true: 有箱子； false: otherwise (包括位置在盤面外)。
+     */
+    public boolean isBoxAt(int column, int row) {
+        if ((column < 0) || (column >= NUM_COLUMN) || (row < 0) || (row >= NUM_ROW)) {
+            return false;
+        }
+
+        return isBox(mLayout.cellOf(column, row));
+    }
+
+    /**
+     * 目前盤面是否已經 _無解_：有箱子被推進了 _死格_，有不在目標上的箱子 _凍結_ 了，
+     * 或是工人到不了的 _封閉區域_ 裡還有箱子或目標沒有配對。
+     *
+     * @return true: 無解； false: otherwise (不代表一定有解)。
+     */
+    public boolean isDeadlocked() {
+        return (mBoxesOnDeadCells > 0) || mFrozen;
+    }
+
+    /**
+     * 指定的棋盤位置是否為 _死格_ (箱子推進去就再也推不到目標)。
+     *
+     * @param column 行
+     * @param row    列
+     *
+     * @return true: 死格； false: otherwise。
+     */
+    public boolean isDeadCell(int column, int row) {
+        return mLayout.isDeadCell(mLayout.cellOf(column, row));
+    }
+
+    /**
+     * 之前是否有 _悔棋_ 可以再後悔， _重覆_ (redo) 悔棋的棋步。
+     *
+     * @return true: 有棋步可以 redo; false: otherwise。
+     */
+    public boolean isRedoable() {
+        return (mHistory.cursor() < mHistory.length());
+    }
+
+    /**
+     * 之前是否有棋步可以 _悔棋_。
+     *
+     * @return true: 有棋步可以 undo; false: otherwise。
+     */
+    public boolean isUndoable() {
+        return (mHistory.cursor() > 0);
+    }
+
+    /**
+     * 執行一個 LURD 棋步 (人物移動或推箱移動)，不做記錄。
+     *
+     * @param step 棋步字元。
+     *
+     * @return true: 執行成功； false: otherwise。
+     */
+    private boolean applyStep(char step) {
+        boolean done;
+
+        switch (step) {
+            case Sokoban.MOVE_DOWN:
+                done = moveManDown();
+
+                break;
+
+            case Sokoban.MOVE_LEFT:
+                done = moveManLeft();
+
+                break;
+
+            case Sokoban.MOVE_RIGHT:
+                done = moveManRight();
+
+                break;
+
+            case Sokoban.MOVE_UP:
+                done = moveManUp();
+
+                break;
+
+            case Sokoban.PUSH_DOWN:
+                done = pushBoxDown();
+
+                break;
+
+            case Sokoban.PUSH_LEFT:
+                done = pushBoxLeft();
+
+                break;
+
+            case Sokoban.PUSH_RIGHT:
+                done = pushBoxRight();
+
+                break;
+
+            case Sokoban.PUSH_UP:
+                done = pushBoxUp();
+
+                break;
+
+            default:
+                // 不應該到這兒，記錄一下
+                LOG.fine("applyStep: " + step);
+
+                done = false;
+
+                break;
+        }
+
+        return done;
+    }
+
+    /**
+     * 指定的棋盤位置，是否由 _箱子_ 佔據。
+     *
+     * @param cell 格子索引；可以是 BoardLayout.NO_CELL。
+     *
+     * @return true: 指定的位置有箱子； false: otherwise。
+     */
+    private boolean isBox(int cell) {
+        return (cell != BoardLayout.NO_CELL) && (mPieces[cell] == PIECE_BOX);
+    }
+
+    /**
+     * 指定的棋盤位置，是否 _可以_ 被佔據。
+     *
+     * @param cell 格子索引；可以是 BoardLayout.NO_CELL。
+     *
+     * @return true: 指定的位置 _可以_ 被佔據； false: otherwise。
+     */
+    private boolean isFloor(int cell) {
+        return (cell != BoardLayout.NO_CELL) && (mPieces[cell] == PIECE_NONE) && mLayout.isWalkable(cell);
+    }
+
+    /**
+     * 是否 _所有_ 的 _箱子_ 都已經移到 _目標_ 格子。
+     *
+     * @return true: _所有_ 箱子都在目標格子； false: otherwise。
+     */
+    private boolean isPuzzleSolved() {
+        return mBoxesOnGoals == mLayout.getGoalCount();
+    }
+
+    /**
+     * 將指定 _位置_ 的箱子往 _下_ 移一格。
+     *
+     * @param cell 格子索引。
+     */
+    private void moveBoxDown(int cell) {
+        moveBox(cell, BoardLayout.DIR_DOWN);
+    }
+
+    /**
+     * 將指定 _位置_ 的箱子往 _左_ 移一格。
+     *
+     * @param cell 格子索引。
+     */
+    private void moveBoxLeft(int cell) {
+        moveBox(cell, BoardLayout.DIR_LEFT);
+    }
+
+    /**
+     * 將指定 _位置_ 的箱子往 _右_ 移一格。
+     *
+     * @param cell 格子索引。
+     */
+    private void moveBoxRight(int cell) {
+        moveBox(cell, BoardLayout.DIR_RIGHT);
+    }
+
+    /**
+     * 將指定 _位置_ 的箱子往 _上_ 移一格。
+     *
+     * @param cell 格子索引。
+     */
+    private void moveBoxUp(int cell) {
+        moveBox(cell, BoardLayout.DIR_UP);
+    }
+
+    /**
+     * 將指定 _位置_ 的箱子往 _指定方向_ 移一格。
+     *
+     * @param cell      格子索引。
+     * @param direction 方向。
+     */
+    private void moveBox(int cell, int direction) {
+        int target = mLayout.neighbour(cell, direction);
+
+        int slot = mBoxSlots[cell];
+
+        mBoxList[slot] = target;
+        mBoxSlots[target] = slot;
+
+        moveBoxOut(cell);
+        moveBoxIn(target);
+    }
+
+    /**
+     * 將箱子 _移入_ 指定 _位置_。
+     *
+     * @param cell 格子索引。
+     */
+    private void moveBoxIn(int cell) {
+        mPieces[cell] = PIECE_BOX;
+
+        markDirty(cell);
+
+        if (mLayout.isGoal(cell)) {
+            mBoxesOnGoals++;
+        }
+
+        if (mLayout.isDeadCell(cell)) {
+            mBoxesOnDeadCells++;
+        }
+
+        mBoxHash ^= Zobrist.boxKey(cell);
+        mManRegionDirty = true;
+    }
+
+    /**
+     * 將箱子 _移出_ 指定 _位置_。
+     *
+     * @param cell 格子索引。
+     */
+    private void moveBoxOut(int cell) {
+        mPieces[cell] = PIECE_NONE;
+
+        markDirty(cell);
+
+        if (mLayout.isGoal(cell)) {
+            mBoxesOnGoals--;
+        }
+
+        if (mLayout.isDeadCell(cell)) {
+            mBoxesOnDeadCells--;
+        }
+
+        mBoxHash ^= Zobrist.boxKey(cell);
+        mManRegionDirty = true;
+    }
+
+    /**
+     * 將 _工人_ 往 _下移_ 一格。
+     *
+     * @return true: 移動成功； false: otherwise。
+     */
+    private boolean moveManDown() {
+        return moveMan(BoardLayout.DIR_DOWN);
+    }
+
+    /**
+     * 將 _工人_ 往 _左移_ 一格。
+     *
+     * @return true: 移動成功； false: otherwise。
+     */
+    private boolean moveManLeft() {
+        return moveMan(BoardLayout.DIR_LEFT);
+    }
+
+    /**
+     * 將 _工人_ 往 _右移_ 一格。
+     *
+     * @return true: 移動成功； false: otherwise。
+     */
+    private boolean moveManRight() {
+        return moveMan(BoardLayout.DIR_RIGHT);
+    }
+
+    /**
+     * 將 _工人_ 往 _上移_ 一格。
+     *
+     * @return true: 移動成功； false: otherwise。
+     */
+    private boolean moveManUp() {
+        return moveMan(BoardLayout.DIR_UP);
+    }
+
+    /**
+     * 將 _工人_ 往 _指定方向_ 移一格。
+     *
+     * @param direction 方向。
+     *
+     * @return true: 移動成功； false: otherwise。
+     */
+    private boolean moveMan(int direction) {
+        boolean done = false;
+
+        int target = mLayout.neighbour(mManCell, direction);
+
+        if (isFloor(target)) {
+            moveManOut(mManCell);
+            moveManIn(target);
+
+            done = true;
+        }
+
+        return done;
+    }
+
+    /**
+     * 將工人 _移入_ 指定 _位置_。
+     *
+     * @param cell 格子索引。
+     */
+    private void moveManIn(int cell) {
+        mManCell = cell;
+
+        // 工人在可到達區域內走動，正規化的位置不變，雜湊值不需要更新
+        mPieces[cell] = PIECE_MAN;
+
+        markDirty(cell);
+    }
+
+    /**
+     * 將工人 _移出_ 指定 _位置_。
+     *
+     * @param cell 格子索引。
+     */
+    private void moveManOut(int cell) {
+        mPieces[cell] = PIECE_NONE;
+
+        markDirty(cell);
+    }
+
+    /**
+     * 記錄格子的內容改變了。
+     *
+     * @param cell 格子索引。
+     */
+    private void markDirty(int cell) {
+        if (!mDirtyMarks[cell]) {
+            mDirtyMarks[cell] = true;
+            mDirtyCells[mDirtyCount++] = cell;
+        }
+    }
+
+    /**
+     * 將 _箱子_ 往 _下推_ (工人 + 箱子) 一格。
+     *
+     * @return true: 移動成功； false: otherwise。
+     */
+    private boolean pushBoxDown() {
+        return pushBox(BoardLayout.DIR_DOWN);
+    }
+
+    /**
+     * 將 _箱子_ 往 _左推_ (工人 + 箱子) 一格。
+     *
+     * @return true: 移動成功； false: otherwise。
+     */
+    private boolean pushBoxLeft() {
+        return pushBox(BoardLayout.DIR_LEFT);
+    }
+
+    /**
+     * 將 _箱子_ 往 _右推_ (工人 + 箱子) 一格。
+     *
+     * @return true: 移動成功； false: otherwise。
+     */
+    private boolean pushBoxRight() {
+        return pushBox(BoardLayout.DIR_RIGHT);
+    }
+
+    /**
+     * 將 _箱子_ 往 _上推_ (工人 + 箱子) 一格。
+     *
+     * @return true: 移動成功； false: otherwise。
+     */
+    private boolean pushBoxUp() {
+        return pushBox(BoardLayout.DIR_UP);
+    }
+
+    /**
+     * 將 _箱子_ 往 _指定方向_ 推 (工人 + 箱子) 一格。
+     *
+     * @param direction 方向。
+     *
+     * @return true: 移動成功； false: otherwise。
+     */
+    private boolean pushBox(int direction) {
+        boolean done = false;
+
+        int boxCell = mLayout.neighbour(mManCell, direction);
+
+        if (isBox(boxCell) && isFloor(mLayout.neighbour(boxCell, direction))) {
+            moveBox(boxCell, direction);
+            moveMan(direction);
+
+            // 凍結的箱子不會再動，無解之後再推箱也不會變回有解
+            if (!mFrozen) {
+                mFrozen = mDeadlockDetector.isDeadlockedAfterPush(mLayout.neighbour(boxCell, direction), mManCell);
+            }
+
+            done = true;
+        }
+
+        return done;
+    }
+
+    /**
+     * _重覆_ (redo) 之前 _悔棋_ (undo) 的棋步。
+     *
+     * @return false: 固定傳回 false; 以 _避免_ redo 指令 _進入_ 解題步驟內。
+     */
+    private boolean redoUndoneStep() {
+        if (!isRedoable()) {
+            return false;
+        }
+
+        char step = mHistory.stepAt(mHistory.cursor());
+
+        applyStep(step);
+        setStepType(step);
+
+        mHistory.forward();
+
+        mFrozen = mHistory.cursor() >= mFrozenSince;
+
+        recordCheckpoint();
+
+        return false;
+    }
+
+    /**
+     * 將所有箱子的位置，依格子索引順序存入 mBoxCells。
+     */
+    private void collectBoxCells() {
+        for (int cell = 0, i = 0; cell < mLayout.NUM_CELL; cell++) {
+            if (mPieces[cell] == PIECE_BOX) {
+                mBoxCells[i++] = cell;
+            }
+        }
+    }
+
+    /**
+     * 以 boxCells 重設 mBoxList 和 mBoxSlots。
+     *
+     * @param boxCells 所有箱子的位置。
+     */
+    private void setBoxList(int[] boxCells) {
+        for (int i = 0; i < boxCells.length; i++) {
+            mBoxList[i] = boxCells[i];
+            mBoxSlots[boxCells[i]] = i;
+        }
+    }
+
+    /**
+     * 如果游標位置需要 checkpoint，記錄目前的盤面。
+     */
+    private void recordCheckpoint() {
+        if (!mHistory.needsCheckpoint()) {
+            return;
+        }
+
+        mHistory.putCheckpoint(mManCell, mBoxList);
+    }
+
+    /**
+     * 將盤面還原成第 index 個 checkpoint，並將游標移到對應的步數。
+     *
+     * @param index checkpoint 編號。
+     */
+    private void restoreCheckpoint(int index) {
+        // 先把工人移開：checkpoint 的箱子可能放回工人目前所在的格子
+        moveManOut(mManCell);
+
+        for (int cell : mBoxList) {
+            moveBoxOut(cell);
+        }
+
+        mHistory.checkpointBoxCells(index, mBoxCells);
+
+        for (int cell : mBoxCells) {
+            moveBoxIn(cell);
+        }
+
+        setBoxList(mBoxCells);
+
+        moveManIn(mHistory.checkpointManCell(index));
+
+        mManRegionDirty = true;
+
+        mHistory.seek(index * mHistory.checkpointInterval());
+
+        mFrozen = mHistory.cursor() >= mFrozenSince;
+    }
+
+    /**
+     * 依據 _最後_ 執行 (redo/undo) 的 _棋步_ 類型 (moving/pushing) 設定棋步
+     * _類型_。
+     *
+     * @param step 棋步字元。
+     */
+    private void setStepType(char step) {
+        switch (step) {
+            case Sokoban.MOVE_DOWN:
+            case Sokoban.MOVE_LEFT:
+            case Sokoban.MOVE_RIGHT:
+            case Sokoban.MOVE_UP:
+                mStepType = STEP_MOVING;
+
+                break;
+
+            case Sokoban.PUSH_DOWN:
+            case Sokoban.PUSH_LEFT:
+            case Sokoban.PUSH_RIGHT:
+            case Sokoban.PUSH_UP:
+                mStepType = STEP_PUSHING;
+
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 遊戲盤面上 _一列_ 的 _唯讀_ 視圖；提供給仍以字元列存取盤面的程式使用。
+     */
+    private final class RowView implements CharSequence {
+        private final int mRow;
+
+        /**
+         * 建構子。
+         *
+         * @param row 列
+         */
+        RowView(int row) {
+            mRow = row;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return getLabel(index, mRow);
+        }
+
+        @Override
+        public int length() {
+            return NUM_COLUMN;
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            char[] labels = new char[NUM_COLUMN];
+
+            for (int c = 0; c < NUM_COLUMN; c++) {
+                labels[c] = getLabel(c, mRow);
+            }
+
+            return new String(labels);
+        }
+    }
+}
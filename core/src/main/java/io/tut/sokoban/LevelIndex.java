@@ -0,0 +1,283 @@
+package io.tut.sokoban;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 一個關卡集的 _二進位索引_ 檔；以 memory-mapped file 開啟，不論有幾個關卡，開啟的時間
+ * 都一樣，也不佔 Java heap。
+ *
+ * 檔案格式 (big-endian)：
+ *
+ *     檔頭 (HEADER_SIZE bytes)：
+ *         int  MAGIC
+ *         int  VERSION
+ *         long stamp        建立索引時關卡集的版本 (例如 App 的安裝時間)，不同就重建
+ *         int  count        關卡數
+ *         int  (保留)
+ *         long (保留)
+ *
+ *     每個關卡一筆 (RECORD_SIZE bytes)：
+ *         long  offset      盤面在關卡集裡的位置 (byte offset)
+ *         int   length      盤面的長度 (bytes)
+ *         short width       盤面寬度
+ *         short height      盤面高度
+ *         short boxes       箱子數
+ *         short goals       目標數
+ *         long  hash        盤面內容的雜湊值 (見 LevelPack.getHash())
+ *         int   (保留)
+ */
+public final class LevelIndex {
+    private static final int MAGIC = 0x534b4958; // "SKIX"
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 32;
+
+    private static final int OFFSET_STAMP = 8;
+    private static final int OFFSET_COUNT = 16;
+
+    private static final int FIELD_LENGTH = 8;
+    private static final int FIELD_WIDTH = 12;
+    private static final int FIELD_HEIGHT = 14;
+    private static final int FIELD_BOXES = 16;
+    private static final int FIELD_GOALS = 18;
+    private static final int FIELD_HASH = 20;
+
+    private final ByteBuffer mBuffer;
+
+    private final int mSize;
+
+    /**
+     * 建構子。
+     *
+     * @param buffer 整個索引檔的內容 (已檢查過檔頭)。
+     * @param size   關卡數。
+     */
+    private LevelIndex(ByteBuffer buffer, int size) {
+        mBuffer = buffer;
+        mSize = size;
+    }
+
+    /**
+     * 開啟索引檔；檔案不存在，或是 stamp 不同 (關卡集已經更新) 時，以 source 重新掃描
+     * 關卡集，寫入新的索引檔之後再開啟。
+     *
+     * @param file   索引檔。
+     * @param stamp  關卡集的版本。
+     * @param source 關卡集的來源。
+     *
+     * @return LevelIndex 物件。
+     *
+     * @throws IOException 讀取關卡集，或寫入索引檔失敗。
+     */
+    public static LevelIndex load(File file, long stamp, LevelPack.Source source) throws IOException {
+        LevelIndex index = open(file, stamp);
+
+        if (index == null) {
+            write(file, stamp, new LevelPack(source));
+
+            index = open(file, stamp);
+
+            if (index == null) {
+                throw new IOException("invalid level index: " + file);
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * 以 memory-mapped file 開啟索引檔。
+     *
+     * @param file  索引檔。
+     * @param stamp 關卡集的版本。
+     *
+     * @return LevelIndex 物件；檔案不存在，格式不對，或是版本不同時傳回 null。
+     *
+     * @throws IOException 讀取失敗。
+     */
+    public static LevelIndex open(File file, long stamp) throws IOException {
+        if (!file.isFile() || (file.length() < HEADER_SIZE)) {
+            return null;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        ByteBuffer buffer;
+
+        try {
+            // 關閉檔案之後，對應的記憶體仍然有效
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+        finally {
+            raf.close();
+        }
+
+        if ((buffer.getInt(0) != MAGIC) || (buffer.getInt(4) != VERSION)
+            || (buffer.getLong(OFFSET_STAMP) != stamp)) {
+            return null;
+        }
+
+        int size = buffer.getInt(OFFSET_COUNT);
+
+        if ((size < 0) || (buffer.capacity() != HEADER_SIZE + (long) size * RECORD_SIZE)) {
+            return null;
+        }
+
+        return new LevelIndex(buffer, size);
+    }
+
+    /**
+     * 把關卡集的掃描結果寫成索引檔；先寫到暫存檔再改名，寫到一半失敗也不會留下壞掉的
+     * 索引。
+     *
+     * @param file  索引檔。
+     * @param stamp 關卡集的版本。
+     * @param pack  掃描過的關卡集。
+     *
+     * @throws IOException 寫入失敗。
+     */
+    public static void write(File file, long stamp, LevelPack pack) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(stamp);
+            out.writeInt(pack.size());
+            out.writeInt(0);
+            out.writeLong(0);
+
+            for (int i = 0; i < pack.size(); i++) {
+                out.writeLong(pack.getOffset(i));
+                out.writeInt(pack.getLength(i));
+                out.writeShort(pack.getWidth(i));
+                out.writeShort(pack.getHeight(i));
+                out.writeShort(pack.getBoxCount(i));
+                out.writeShort(pack.getGoalCount(i));
+                out.writeLong(pack.getHash(i));
+                out.writeInt(0);
+            }
+        }
+        finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(file)) {
+            temp.delete();
+
+            throw new IOException("cannot write level index: " + file);
+        }
+    }
+
+    /**
+     * 傳回關卡數。
+     *
+     * @return int 關卡數。
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * 傳回關卡在關卡集裡的位置。
+     *
+     * @param index 關卡編號 (從 0 開始)。
+     *
+     * @return long byte offset。
+     */
+    public long getOffset(int index) {
+        return mBuffer.getLong(recordOf(index));
+    }
+
+    /**
+     * 傳回關卡盤面在關卡集裡的長度。
+     *
+     * @param index 關卡編號 (從 0 開始)。
+     *
+     * @return int bytes。
+     */
+    public int getLength(int index) {
+        return mBuffer.getInt(recordOf(index) + FIELD_LENGTH);
+    }
+
+    /**
+     * 傳回關卡盤面的寬度。
+     *
+     * @param index 關卡編號 (從 0 開始)。
+     *
+     * @return int 寬度。
+     */
+    public int getWidth(int index) {
+        return mBuffer.getShort(recordOf(index) + FIELD_WIDTH) & 0xffff;
+    }
+
+    /**
+     * 傳回關卡盤面的高度。
+     *
+     * @param index 關卡編號 (從 0 開始)。
+     *
+     * @return int 高度。
+     */
+    public int getHeight(int index) {
+        return mBuffer.getShort(recordOf(index) + FIELD_HEIGHT) & 0xffff;
+    }
+
+    /**
+     * 傳回關卡的箱子數。
+     *
+     * @param index 關卡編號 (從 0 開始)。
+     *
+     * @return int 箱子數。
+     */
+    public int getBoxCount(int index) {
+        return mBuffer.getShort(recordOf(index) + FIELD_BOXES) & 0xffff;
+    }
+
+    /**
+     * 傳回關卡的目標數。
+     *
+     * @param index 關卡編號 (從 0 開始)。
+     *
+     * @return int 目標數。
+     */
+    public int getGoalCount(int index) {
+        return mBuffer.getShort(recordOf(index) + FIELD_GOALS) & 0xffff;
+    }
+
+    /**
+     * 傳回關卡盤面內容的雜湊值。
+     *
+     * @param index 關卡編號 (從 0 開始)。
+     *
+     * @return long 雜湊值。
+     */
+    public long getHash(int index) {
+        return mBuffer.getLong(recordOf(index) + FIELD_HASH);
+    }
+
+    /**
+     * 傳回關卡的記錄在檔案裡的位置。
+     *
+     * @param index 關卡編號 (從 0 開始)。
+     *
+     * @return int byte offset。
+     */
+    private int recordOf(int index) {
+        if ((index < 0) || (index >= mSize)) {
+            throw new IndexOutOfBoundsException("level " + index + " of " + mSize);
+        }
+
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+}
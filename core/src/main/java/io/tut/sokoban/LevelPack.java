@@ -0,0 +1,947 @@
+package io.tut.sokoban;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 一個 XSB (或 SOK) 格式的 _關卡集_ (level pack)。
+ *
+ * 建構時只以 _一次_ 緩衝的讀取掃過整個檔案，記錄每個關卡在檔案裡的位置 (byte offset)
+ * 和長度，盤面的大小，箱子和目標數，內容的雜湊值，以及標題；關卡盤面等到 getLevel()
+ * 時才重新讀取那一段，轉成 String[]。掃描的結果可以存成 LevelIndex，下次啟動就不必再
+ * 掃描。
+ *
+ * 支援的格式：
+ *
+ * 1. 盤面每一列由 XSB 字元組成 (# @ + $ * . 空白 - _)；列的長度可以不同，短的列
+ *    視為以 _空白_ (Sokoban.EMPTY) 補齊；工人走不到的空白 (列首，或凹進去的外牆
+ *    之間) 都視為牆外的空白。
+ * 2. SOK 的 _連續字元_ 壓縮 (例如 "4#" 代表 "####")，以及以 '|' 分隔的列。
+ * 3. 以 ';' 開頭的列是註解。
+ * 4. 盤面 _之前_ 的文字列，或是盤面 _之後_ 的 "Title: ..."，是關卡的標題；其它
+ *    "Key: value" 形式的列 (Author: 等) 忽略。
+ * 5. 盤面之後以 "Solution" 開頭，':' 結尾的列 (例如 "Solution (moves 97, pushes 33):")
+ *    開始關卡的 LURD 解答，可以接在 ':' 之後，也可以分成好幾列 (允許連續字元壓縮)；
+ *    和盤面一樣只記錄位置，getSolution() 時才讀取。一個關卡有好幾個解答時只記錄第一個。
+ */
+public final class LevelPack {
+    /**
+     * 關卡集的來源；每次呼叫 open() 都從檔案開頭開始讀取。
+     */
+    public interface Source {
+        InputStream open() throws IOException;
+    }
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int LINE_BLANK = 0;
+    private static final int LINE_COMMENT = 1;
+    private static final int LINE_BOARD = 2;
+    private static final int LINE_TEXT = 3;
+
+    private static final String KEY_TITLE = "title:";
+    private static final String KEY_SOLUTION = "solution";
+
+    // 64 位元 FNV-1a 雜湊
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Source mSource;
+
+    private long[] mOffsets = new long[16];
+    private int[] mLengths = new int[16];
+    private String[] mTitles = new String[16];
+
+    private int[] mWidths = new int[16];
+    private int[] mHeights = new int[16];
+    private int[] mBoxCounts = new int[16];
+    private int[] mGoalCounts = new int[16];
+    private long[] mHashes = new long[16];
+
+    // 解答在檔案裡的位置和長度；長度 0 表示沒有解答
+    private long[] mSolutionOffsets = new long[16];
+    private int[] mSolutionLengths = new int[16];
+
+    private int mSize;
+
+    // 以下只在 scan() 時使用：目前關卡盤面的開頭 (-1 表示不在盤面裡)，還沒有配給關卡的
+    // 標題，和剛結束的關卡是否還可以接受盤面之後的 "Title:"
+    private long mLevelStart = -1;
+    private String mPendingTitle;
+    private boolean mTitleFollows;
+
+    // 目前關卡盤面的大小，箱子和目標數，和雜湊值 (一邊掃描一邊累計)
+    private int mLevelWidth;
+    private int mLevelHeight;
+    private int mLevelBoxes;
+    private int mLevelGoals;
+    private long mLevelHash;
+
+    // 最後一個關卡正在收集的解答：開頭 (-1 表示不在解答裡)，結尾，和目前的步數
+    private long mSolutionStart = -1;
+    private long mSolutionEnd;
+    private int mSolutionSteps;
+
+    /**
+     * 建構子；掃描整個關卡集，建立關卡位置的索引。
+     *
+     * @param source 關卡集的來源。
+     *
+     * @throws IOException 讀取失敗。
+     */
+    public LevelPack(Source source) throws IOException {
+        mSource = source;
+
+        scan();
+    }
+
+    /**
+     * 傳回關卡數。
+     *
+     * @return int 關卡數。
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * 傳回關卡的標題。
+     *
+     * @param index 關卡編號 (從 0 開始)。
+     *
+     * @return String 標題；沒有標題時傳回 null。
+     */
+    public String getTitle(int index) {
+        return mTitles[index];
+    }
+
+    /**
+     * 傳回關卡在檔案裡的位置。
+     *
+     * @param index 關卡編號 (從 0 開始)。
+     *
+     * @return long byte offset。
+     */
+    public long getOffset(int index) {
+        return mOffsets[index];
+    }
+
+    /**
+     * 傳回關卡盤面在檔案裡的長度。
+     *
+     * @param index 關卡編號 (從 0 開始)。
+     *
+     * @return int bytes。
+     */
+    public int getLength(int index) {
+        return mLengths[index];
+    }
+
+    /**
+     * 傳回關卡盤面的寬度 (最長一列的格數)。
+     *
+     * @param index 關卡編號 (從 0 開始)。
+     *
+     * @return int 寬度。
+     */
+    public int getWidth(int index) {
+        return mWidths[index];
+    }
+
+    /**
+     * 傳回關卡盤面的高度 (列數)。
+     *
+     * @param index 關卡編號 (從 0 開始)。
+     *
+     * @return int 高度。
+     */
+    public int getHeight(int index) {
+        return mHeights[index];
+    }
+
+    /**
+     * 傳回關卡的箱子數。
+     *
+     * @param index 關卡編號 (從 0 開始)。
+     *
+     * @return int 箱子數。
+     */
+    public int getBoxCount(int index) {
+        return mBoxCounts[index];
+    }
+
+    /**
+     * 傳回關卡的目標數。
+     *
+     * @param index 關卡編號 (從 0 開始)。
+     *
+     * @return int 目標數。
+     */
+    public int getGoalCount(int index) {
+        return mGoalCounts[index];
+    }
+
+    /**
+     * 傳回關卡盤面內容的雜湊值 (64 位元 FNV-1a，不計 '\r')；相同的盤面有相同的值。
+     *
+     * @param index 關卡編號 (從 0 開始)。
+     *
+     * @return long 雜湊值。
+     */
+    public long getHash(int index) {
+        return mHashes[index];
+    }
+
+    /**
+     * 關卡集裡是否有這個關卡的解答。
+     *
+     * @param index 關卡編號 (從 0 開始)。
+     *
+     * @return true: 有解答； false: otherwise。
+     */
+    public boolean hasSolution(int index) {
+        return mSolutionLengths[index] > 0;
+    }
+
+    /**
+     * 讀取關卡的解答。
+     *
+     * @param index 關卡編號 (從 0 開始)。
+     *
+     * @return String LURD 解答 (已展開連續字元，去掉換行和空白)；沒有解答時傳回 null。
+     *
+     * @throws IOException 讀取失敗。
+     */
+    public String getSolution(int index) throws IOException {
+        if (!hasSolution(index)) {
+            return null;
+        }
+
+        byte[] data = readRange(mSource, mSolutionOffsets[index], mSolutionLengths[index]);
+
+        return parseSolution(data, data.length);
+    }
+
+    /**
+     * 讀取並解析關卡盤面。
+     *
+     * @param index 關卡編號 (從 0 開始)。
+     *
+     * @return String[] 關卡的 _初始盤面_。
+     *
+     * @throws IOException 讀取失敗。
+     */
+    public String[] getLevel(int index) throws IOException {
+        return readLevel(mSource, mOffsets[index], mLengths[index]);
+    }
+
+    /**
+     * 從關卡集讀取並解析一個關卡盤面；只讀取 [offset, offset + length) 這一段。
+     *
+     * @param source 關卡集的來源。
+     * @param offset 盤面在檔案裡的位置。
+     * @param length 盤面的長度。
+     *
+     * @return String[] 關卡的 _初始盤面_。
+     *
+     * @throws IOException 讀取失敗。
+     */
+    public static String[] readLevel(Source source, long offset, int length) throws IOException {
+        byte[] data = readRange(source, offset, length);
+
+        return parseBoard(data, data.length);
+    }
+
+    /**
+     * 將一段盤面文字 (可以有 '\r'，SOK 的連續字元壓縮和 '|' 分隔) 轉成盤面的字串陣列。
+     *
+     * @param data   盤面文字。
+     * @param length 文字長度 (bytes)。
+     *
+     * @return String[] 盤面，每一列一個字串。
+     */
+    public static String[] parseBoard(byte[] data, int length) {
+        List<String> rows = new ArrayList<>();
+
+        StringBuilder row = new StringBuilder();
+
+        int count = 0;
+
+        for (int i = 0; i <= length; i++) {
+            char c = (i < length) ? (char) (data[i] & 0xff) : '\n';
+
+            if ((c >= '0') && (c <= '9')) {
+                count = count * 10 + (c - '0');
+
+                continue;
+            }
+
+            if ((c == '\n') || (c == '|')) {
+                addRow(rows, row);
+
+                count = 0;
+
+                continue;
+            }
+
+            if (c == '\r') {
+                continue;
+            }
+
+            for (int n = Math.max(count, 1); n > 0; n--) {
+                row.append(c);
+            }
+
+            count = 0;
+        }
+
+        String[] board = rows.toArray(new String[rows.size()]);
+
+        markOutside(board);
+
+        return board;
+    }
+
+    /**
+     * 將一段解答文字轉成 LURD 字串：展開連續字元壓縮 (例如 "3r" 代表 "rrr")，去掉換行
+     * 和空白。
+     *
+     * @param data   解答文字。
+     * @param length 文字長度 (bytes)。
+     *
+     * @return String LURD 解答。
+     */
+    public static String parseSolution(byte[] data, int length) {
+        StringBuilder steps = new StringBuilder(length);
+
+        int count = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = (char) (data[i] & 0xff);
+
+            if ((c >= '0') && (c <= '9')) {
+                count = count * 10 + (c - '0');
+
+                continue;
+            }
+
+            if (!isStep(c)) {
+                continue;
+            }
+
+            for (int n = Math.max(count, 1); n > 0; n--) {
+                steps.append(c);
+            }
+
+            count = 0;
+        }
+
+        return steps.toString();
+    }
+
+    /**
+     * 將一列盤面加入列表：去掉列尾的空白，列首的空白改成牆外的空白 (Sokoban.EMPTY)；
+     * 空的列 (盤面最後的換行字元) 不加入。
+     *
+     * @param rows 盤面列表。
+     * @param row  這一列的字元；加入後清空。
+     */
+    private static void addRow(List<String> rows, StringBuilder row) {
+        if (row.length() == 0) {
+            return;
+        }
+
+        int end = row.length();
+
+        while ((end > 0) && (row.charAt(end - 1) == Sokoban.FLOOR)) {
+            end--;
+        }
+
+        row.setLength(end);
+
+        for (int c = 0; (c < end) && (row.charAt(c) == Sokoban.FLOOR); c++) {
+            row.setCharAt(c, Sokoban.EMPTY);
+        }
+
+        rows.add(row.toString());
+
+        row.setLength(0);
+    }
+
+    /**
+     * 從工人的位置 flood fill，工人 (不管箱子) 走不到的 _地板_ 是牆外的空白，改成
+     * Sokoban.EMPTY；例如凹進去的外牆之間，或列中間牆外的空白。addRow() 只處理得了列首
+     * 的空白。沒有工人的盤面不變。
+     *
+     * @param rows 盤面；直接修改。
+     */
+    private static void markOutside(String[] rows) {
+        int numColumn = 0;
+
+        for (String row : rows) {
+            numColumn = Math.max(numColumn, row.length());
+        }
+
+        int numCell = rows.length * numColumn;
+
+        int[] queue = new int[numCell];
+        boolean[] inside = new boolean[numCell];
+
+        int head = 0;
+        int tail = 0;
+
+        for (int r = 0; r < rows.length; r++) {
+            for (int c = 0; c < rows[r].length(); c++) {
+                char label = rows[r].charAt(c);
+
+                if ((label == Sokoban.MAN) || (label == Sokoban.MAN_ON_GOAL)) {
+                    inside[r * numColumn + c] = true;
+                    queue[tail++] = r * numColumn + c;
+                }
+            }
+        }
+
+        if (tail == 0) {
+            return;
+        }
+
+        int[] columnOffsets = {-1, 0, 1, 0};
+        int[] rowOffsets = {0, -1, 0, 1};
+
+        while (head < tail) {
+            int cell = queue[head++];
+
+            for (int d = 0; d < columnOffsets.length; d++) {
+                int r = cell / numColumn + rowOffsets[d];
+                int c = cell % numColumn + columnOffsets[d];
+
+                // 超出短的列也是牆外
+                if ((r < 0) || (r >= rows.length) || (c < 0) || (c >= rows[r].length()) || inside[r * numColumn + c]) {
+                    continue;
+                }
+
+                char label = rows[r].charAt(c);
+
+                if ((label == Sokoban.WALL) || (label == Sokoban.EMPTY) || (label == Sokoban.EMPTY_ALT)) {
+                    continue;
+                }
+
+                inside[r * numColumn + c] = true;
+                queue[tail++] = r * numColumn + c;
+            }
+        }
+
+        for (int r = 0; r < rows.length; r++) {
+            char[] row = rows[r].toCharArray();
+
+            boolean changed = false;
+
+            for (int c = 0; c < row.length; c++) {
+                if ((row[c] == Sokoban.FLOOR) && !inside[r * numColumn + c]) {
+                    row[c] = Sokoban.EMPTY;
+                    changed = true;
+                }
+            }
+
+            if (changed) {
+                rows[r] = new String(row);
+            }
+        }
+    }
+
+    /**
+     * 掃描整個關卡集：每一段連續的盤面列是一個關卡。
+     *
+     * @throws IOException 讀取失敗。
+     */
+    private void scan() throws IOException {
+        InputStream in = mSource.open();
+
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            byte[] line = new byte[256];
+
+            int lineLength = 0;
+            long lineStart = 0;
+            long position = 0;
+
+            int read;
+
+            while ((read = in.read(buffer)) >= 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] != '\n') {
+                        if (lineLength == line.length) {
+                            line = Arrays.copyOf(line, lineLength * 2);
+                        }
+
+                        line[lineLength++] = buffer[i];
+
+                        continue;
+                    }
+
+                    scanLine(line, lineLength, lineStart);
+
+                    lineStart = position + i + 1;
+                    lineLength = 0;
+                }
+
+                position += read;
+            }
+
+            // 最後一列沒有換行字元
+            if (lineLength > 0) {
+                scanLine(line, lineLength, lineStart);
+            }
+
+            // 以一列空白結束最後一個關卡
+            scanLine(line, 0, position);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 處理掃描到的一列。
+     *
+     * @param line      文字。
+     * @param length    長度 (bytes，不含換行字元)。
+     * @param lineStart 這一列在檔案裡的位置。
+     */
+    private void scanLine(byte[] line, int length, long lineStart) {
+        int kind = classify(line, length);
+
+        if (mSolutionStart >= 0) {
+            int steps = (kind == LINE_TEXT) ? countSteps(line, 0, length) : -1;
+
+            // 解答的下一列
+            if (steps >= 0) {
+                mSolutionEnd = lineStart + length;
+                mSolutionSteps += steps;
+
+                return;
+            }
+
+            endSolution();
+        }
+
+        if (kind == LINE_BOARD) {
+            if (mLevelStart < 0) {
+                mLevelStart = lineStart;
+
+                mLevelWidth = 0;
+                mLevelHeight = 0;
+                mLevelBoxes = 0;
+                mLevelGoals = 0;
+                mLevelHash = FNV_OFFSET;
+            }
+
+            measure(line, length);
+
+            return;
+        }
+
+        if (mLevelStart >= 0) {
+            addLevel(mLevelStart, (int) (lineStart - mLevelStart), mPendingTitle);
+
+            mLevelStart = -1;
+            mPendingTitle = null;
+            mTitleFollows = true;
+        }
+
+        if (kind != LINE_TEXT) {
+            return;
+        }
+
+        int colon = solutionColon(line, length);
+
+        if (colon >= 0) {
+            // 只接受緊接在盤面 (和它的 Title: 等) 之後的解答
+            if (mTitleFollows) {
+                beginSolution(line, colon + 1, length, lineStart);
+            }
+
+            return;
+        }
+
+        String text = new String(line, 0, length, UTF_8).trim();
+
+        if (text.regionMatches(true, 0, KEY_TITLE, 0, KEY_TITLE.length())) {
+            String title = text.substring(KEY_TITLE.length()).trim();
+
+            if (mTitleFollows) {
+                mTitles[mSize - 1] = title;
+            }
+            else {
+                mPendingTitle = title;
+            }
+        }
+        else if (!isMetadata(text)) {
+            mPendingTitle = text;
+            mTitleFollows = false;
+        }
+    }
+
+    /**
+     * 開始收集最後一個關卡的解答；':' 之後不是 LURD 棋步時 (例如 "Solution: none") 忽略。
+     *
+     * @param line      文字。
+     * @param from      ':' 之後的位置。
+     * @param length    長度 (bytes，不含換行字元)。
+     * @param lineStart 這一列在檔案裡的位置。
+     */
+    private void beginSolution(byte[] line, int from, int length, long lineStart) {
+        int steps = countSteps(line, from, length);
+
+        if (steps < 0) {
+            return;
+        }
+
+        mSolutionStart = lineStart + from;
+        mSolutionEnd = lineStart + length;
+        mSolutionSteps = steps;
+    }
+
+    /**
+     * 結束收集解答；關卡還沒有解答時記錄下來。
+     */
+    private void endSolution() {
+        if ((mSolutionSteps > 0) && (mSolutionLengths[mSize - 1] == 0)) {
+            mSolutionOffsets[mSize - 1] = mSolutionStart;
+            mSolutionLengths[mSize - 1] = (int) (mSolutionEnd - mSolutionStart);
+        }
+
+        mSolutionStart = -1;
+    }
+
+    /**
+     * 累計一列盤面的大小，箱子和目標數，和雜湊值；規則與 parseBoard() 相同 (連續字元
+     * 展開，'|' 分列，列尾的空白不算寬度)。
+     *
+     * @param line   文字。
+     * @param length 長度 (bytes，不含換行字元)。
+     */
+    private void measure(byte[] line, int length) {
+        long hash = mLevelHash;
+
+        int count = 0;
+        int column = 0;
+        int width = 0;
+
+        for (int i = 0; i <= length; i++) {
+            byte c = (i < length) ? line[i] : (byte) '\n';
+
+            if (c != '\r') {
+                hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            }
+
+            if ((c >= '0') && (c <= '9')) {
+                count = count * 10 + (c - '0');
+
+                continue;
+            }
+
+            if ((c == '\n') || (c == '|')) {
+                if (column > 0) {
+                    mLevelHeight++;
+                    mLevelWidth = Math.max(mLevelWidth, width);
+                }
+
+                count = 0;
+                column = 0;
+                width = 0;
+
+                continue;
+            }
+
+            if (c == '\r') {
+                continue;
+            }
+
+            int n = Math.max(count, 1);
+
+            column += n;
+
+            if (c != Sokoban.FLOOR) {
+                width = column;
+            }
+
+            if ((c == Sokoban.BOX) || (c == Sokoban.BOX_ON_GOAL)) {
+                mLevelBoxes += n;
+            }
+
+            if ((c == Sokoban.GOAL) || (c == Sokoban.BOX_ON_GOAL) || (c == Sokoban.MAN_ON_GOAL)) {
+                mLevelGoals += n;
+            }
+
+            count = 0;
+        }
+
+        mLevelHash = hash;
+    }
+
+    /**
+     * 記錄一個關卡；大小，箱子和目標數，和雜湊值取自 measure() 的累計。
+     *
+     * @param offset 盤面在檔案裡的位置。
+     * @param length 盤面的長度。
+     * @param title  標題；可以是 null。
+     */
+    private void addLevel(long offset, int length, String title) {
+        if (mSize == mOffsets.length) {
+            int capacity = mSize * 2;
+
+            mOffsets = Arrays.copyOf(mOffsets, capacity);
+            mLengths = Arrays.copyOf(mLengths, capacity);
+            mTitles = Arrays.copyOf(mTitles, capacity);
+            mWidths = Arrays.copyOf(mWidths, capacity);
+            mHeights = Arrays.copyOf(mHeights, capacity);
+            mBoxCounts = Arrays.copyOf(mBoxCounts, capacity);
+            mGoalCounts = Arrays.copyOf(mGoalCounts, capacity);
+            mHashes = Arrays.copyOf(mHashes, capacity);
+            mSolutionOffsets = Arrays.copyOf(mSolutionOffsets, capacity);
+            mSolutionLengths = Arrays.copyOf(mSolutionLengths, capacity);
+        }
+
+        mOffsets[mSize] = offset;
+        mLengths[mSize] = length;
+        mTitles[mSize] = title;
+        mWidths[mSize] = mLevelWidth;
+        mHeights[mSize] = mLevelHeight;
+        mBoxCounts[mSize] = mLevelBoxes;
+        mGoalCounts[mSize] = mLevelGoals;
+        mHashes[mSize] = mLevelHash;
+
+        mSize++;
+    }
+
+    /**
+     * 判斷一列文字的種類 (空白，註解，盤面，其它文字)；不建立字串。
+     *
+     * @param line   文字。
+     * @param length 長度 (bytes)。
+     *
+     * @return int LINE_BLANK, LINE_COMMENT, LINE_BOARD 或 LINE_TEXT。
+     */
+    private static int classify(byte[] line, int length) {
+        int start = 0;
+
+        while ((start < length) && ((line[start] == ' ') || (line[start] == '\t') || (line[start] == '\r'))) {
+            start++;
+        }
+
+        if (start == length) {
+            return LINE_BLANK;
+        }
+
+        if (line[start] == ';') {
+            return LINE_COMMENT;
+        }
+
+        boolean hasBoardMark = false;
+
+        for (int i = 0; i < length; i++) {
+            switch (line[i]) {
+                case Sokoban.WALL:
+                case Sokoban.EMPTY:
+                case Sokoban.EMPTY_ALT:
+                    hasBoardMark = true;
+
+                    break;
+
+                case Sokoban.BOX:
+                case Sokoban.BOX_ON_GOAL:
+                case Sokoban.FLOOR:
+                case Sokoban.GOAL:
+                case Sokoban.MAN:
+                case Sokoban.MAN_ON_GOAL:
+                case '|':
+                case '\r':
+                    break;
+
+                default:
+                    if ((line[i] < '0') || (line[i] > '9')) {
+                        return LINE_TEXT;
+                    }
+
+                    break;
+            }
+        }
+
+        return hasBoardMark ? LINE_BOARD : LINE_TEXT;
+    }
+
+    /**
+     * 如果一列文字是解答的開頭 ("Solution" 開頭，不分大小寫，之後有 ':')，傳回 ':' 的
+     * 位置；不建立字串。
+     *
+     * @param line   文字。
+     * @param length 長度 (bytes)。
+     *
+     * @return int ':' 的位置；不是解答的開頭時傳回 -1。
+     */
+    private static int solutionColon(byte[] line, int length) {
+        int start = 0;
+
+        while ((start < length) && ((line[start] == ' ') || (line[start] == '\t'))) {
+            start++;
+        }
+
+        if (length - start < KEY_SOLUTION.length()) {
+            return -1;
+        }
+
+        for (int i = 0; i < KEY_SOLUTION.length(); i++) {
+            if (Character.toLowerCase((char) (line[start + i] & 0xff)) != KEY_SOLUTION.charAt(i)) {
+                return -1;
+            }
+        }
+
+        for (int i = start + KEY_SOLUTION.length(); i < length; i++) {
+            if (line[i] == ':') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * 計算一段文字裡的 LURD 棋步數；可以有連續字元壓縮的數字和空白。
+     *
+     * @param line   文字。
+     * @param from   開始的位置。
+     * @param length 結束的位置 (bytes)。
+     *
+     * @return int 棋步字元數 (不展開壓縮)；有其它字元時傳回 -1。
+     */
+    private static int countSteps(byte[] line, int from, int length) {
+        int steps = 0;
+
+        for (int i = from; i < length; i++) {
+            char c = (char) (line[i] & 0xff);
+
+            if (isStep(c)) {
+                steps++;
+            }
+            else if (((c < '0') || (c > '9')) && (c != ' ') && (c != '\t') && (c != '\r')) {
+                return -1;
+            }
+        }
+
+        return steps;
+    }
+
+    /**
+     * 是否為 LURD 棋步字元。
+     *
+     * @param c 字元。
+     *
+     * @return true: 棋步； false: otherwise。
+     */
+    private static boolean isStep(char c) {
+        return (Sokoban.STEP_MOVING.indexOf(c) > -1) || (Sokoban.STEP_PUSHING.indexOf(c) > -1);
+    }
+
+    /**
+     * 讀取 [offset, offset + length) 這一段。
+     *
+     * @param source 關卡集的來源。
+     * @param offset 在檔案裡的位置。
+     * @param length 長度。
+     *
+     * @return byte[] 讀到的內容。
+     *
+     * @throws IOException 讀取失敗。
+     */
+    private static byte[] readRange(Source source, long offset, int length) throws IOException {
+        byte[] data = new byte[length];
+
+        InputStream in = source.open();
+
+        try {
+            skipFully(in, offset);
+            readFully(in, data);
+        }
+        finally {
+            in.close();
+        }
+
+        return data;
+    }
+
+    /**
+     * 是否為 "Key: value" 形式的資料列 (Author:，Comment: 等)。
+     *
+     * @param text 去掉前後空白的文字。
+     *
+     * @return true: 資料列； false: otherwise。
+     */
+    private static boolean isMetadata(String text) {
+        int colon = text.indexOf(':');
+
+        if (colon <= 0) {
+            return false;
+        }
+
+        for (int i = 0; i < colon; i++) {
+            if (!Character.isLetter(text.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * 跳過 n 個 bytes。
+     *
+     * @param in InputStream。
+     * @param n  要跳過的 bytes。
+     *
+     * @throws IOException 讀取失敗，或檔案提前結束。
+     */
+    private static void skipFully(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new IOException("unexpected end of level pack");
+                }
+
+                skipped = 1;
+            }
+
+            n -= skipped;
+        }
+    }
+
+    /**
+     * 讀滿整個陣列。
+     *
+     * @param in   InputStream。
+     * @param data 存放資料的陣列。
+     *
+     * @throws IOException 讀取失敗，或檔案提前結束。
+     */
+    private static void readFully(InputStream in, byte[] data) throws IOException {
+        int done = 0;
+
+        while (done < data.length) {
+            int read = in.read(data, done, data.length - done);
+
+            if (read < 0) {
+                throw new IOException("unexpected end of level pack");
+            }
+
+            done += read;
+        }
+    }
+}
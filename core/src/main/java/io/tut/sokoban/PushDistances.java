@@ -0,0 +1,101 @@
+package io.tut.sokoban;
+
+import java.util.Arrays;
+
+/**
+ * 每個格子到每個 _目標_ 的 _推箱距離_ (不考慮其它箱子時，最少要推幾次)。
+ *
+ * 從每個目標出發，反向 _拉_ 箱子做 BFS：箱子在 c，工人站在 p = c + d 上往 p + d 退一格，
+ * 箱子就被拉到 p；所以 p 和 p + d 都必須是可以站立的格子。
+ *
+ * 到不了任何目標的格子，距離為 INFINITE；箱子一旦被推進這種格子，關卡就無解了。
+ */
+final class PushDistances {
+    static final int INFINITE = Integer.MAX_VALUE;
+
+    private final BoardLayout mLayout;
+
+    // mDistances[goal * NUM_CELL + cell]
+    private final int[] mDistances;
+
+    private final int[] mMinDistances;
+
+    /**
+     * 建構子；計算所有目標的推箱距離。
+     *
+     * @param layout 關卡的靜態盤面。
+     */
+    PushDistances(BoardLayout layout) {
+        mLayout = layout;
+
+        int numCell = layout.NUM_CELL;
+        int numGoal = layout.getGoalCount();
+
+        mDistances = new int[numGoal * numCell];
+        mMinDistances = new int[numCell];
+
+        Arrays.fill(mDistances, INFINITE);
+        Arrays.fill(mMinDistances, INFINITE);
+
+        int[] queue = new int[numCell];
+
+        for (int g = 0; g < numGoal; g++) {
+            int offset = g * numCell;
+            int head = 0;
+            int tail = 0;
+
+            int goal = layout.getGoalCell(g);
+
+            mDistances[offset + goal] = 0;
+            queue[tail++] = goal;
+
+            while (head < tail) {
+                int cell = queue[head++];
+                int distance = mDistances[offset + cell];
+
+                for (int d = 0; d < BoardLayout.NUM_DIRECTION; d++) {
+                    int pulled = layout.neighbour(cell, d);
+
+                    if ((pulled == BoardLayout.NO_CELL) || (mDistances[offset + pulled] != INFINITE)
+                        || !layout.isWalkable(pulled)) {
+                        continue;
+                    }
+
+                    int manTo = layout.neighbour(pulled, d);
+
+                    if ((manTo != BoardLayout.NO_CELL) && layout.isWalkable(manTo)) {
+                        mDistances[offset + pulled] = distance + 1;
+                        queue[tail++] = pulled;
+                    }
+                }
+            }
+
+            for (int cell = 0; cell < numCell; cell++) {
+                mMinDistances[cell] = Math.min(mMinDistances[cell], mDistances[offset + cell]);
+            }
+        }
+    }
+
+    /**
+     * 傳回格子到指定目標的推箱距離。
+     *
+     * @param goal 目標編號 (0 ~ BoardLayout.getGoalCount() - 1)。
+     * @param cell 格子索引。
+     *
+     * @return int 推箱距離；到不了時傳回 INFINITE。
+     */
+    int distance(int goal, int cell) {
+        return mDistances[goal * mLayout.NUM_CELL + cell];
+    }
+
+    /**
+     * 傳回格子到 _最近_ 目標的推箱距離。
+     *
+     * @param cell 格子索引。
+     *
+     * @return int 推箱距離；到不了任何目標時傳回 INFINITE。
+     */
+    int minDistance(int cell) {
+        return mMinDistances[cell];
+    }
+}
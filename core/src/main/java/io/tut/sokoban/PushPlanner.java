@@ -0,0 +1,237 @@
+package io.tut.sokoban;
+
+import java.util.Arrays;
+
+/**
+ * 找出把 _一個_ 箱子推到指定格子，推箱次數最少的 LURD 步驟；其它箱子都不動。
+ *
+ * 搜尋的狀態是 (箱子位置, 工人在箱子的哪一側)，以 BFS 依推箱次數展開；工人不推箱子就能
+ * 繞到的各側視為同一個狀態，一起標記。一個狀態只做一次可到達區域的計算，30x30 的盤面
+ * 也只要幾毫秒。
+ *
+ * 所有陣列都在建構時配置好；只有最後組出的 LURD 字串是新的物件。
+ */
+final class PushPlanner {
+    private static final int NO_STATE = -1;
+
+    private final BoardLayout mLayout;
+
+    // 搜尋時使用的盤面：其它箱子留在原地，要推的箱子另外放
+    private final byte[] mPieces;
+
+    private final ReachableArea mReach;
+
+    // 狀態編號 = 箱子位置 * 4 + 工人所在的一側 (方向)
+    private final int[] mQueue;
+    private final int[] mParent;
+    private final int[] mMarks;
+
+    // 已經展開過的狀態 (包括工人可以繞過去的同一個箱子位置的其它側)
+    private final int[] mExpanded;
+
+    private final char[] mWalk;
+
+    private int mGeneration;
+
+    /**
+     * 建構子。
+     *
+     * @param layout 關卡的靜態盤面。
+     */
+    PushPlanner(BoardLayout layout) {
+        mLayout = layout;
+
+        mPieces = new byte[layout.NUM_CELL];
+
+        mReach = new ReachableArea(layout);
+
+        int numStates = layout.NUM_CELL * BoardLayout.NUM_DIRECTION;
+
+        mQueue = new int[numStates];
+        mParent = new int[numStates];
+        mMarks = new int[numStates];
+        mExpanded = new int[numStates];
+
+        mWalk = new char[layout.NUM_CELL];
+    }
+
+    /**
+     * 規劃把 from 上的箱子推到 to 的步驟。
+     *
+     * @param pieces  目前的盤面 (箱子，工人)；不會被修改。
+     * @param manCell 工人位置。
+     * @param from    要推的箱子所在格子。
+     * @param to      目的格子。
+     *
+     * @return String LURD 步驟；推不過去時傳回 null。
+     */
+    String plan(byte[] pieces, int manCell, int from, int to) {
+        System.arraycopy(pieces, 0, mPieces, 0, mPieces.length);
+
+        mPieces[manCell] = GameState.PIECE_NONE;
+        mPieces[from] = GameState.PIECE_NONE;
+
+        nextGeneration();
+
+        int head = 0;
+        int tail = 0;
+
+        // 起點：工人目前走得到的各側
+        reachSides(from, manCell);
+
+        for (int d = 0; d < BoardLayout.NUM_DIRECTION; d++) {
+            int side = mLayout.neighbour(from, d);
+
+            if ((side != BoardLayout.NO_CELL) && mReach.isReachable(side)) {
+                int state = from * BoardLayout.NUM_DIRECTION + d;
+
+                mMarks[state] = mGeneration;
+                mParent[state] = NO_STATE;
+                mQueue[tail++] = state;
+            }
+        }
+
+        int found = (from == to) ? NO_STATE : findGoal(head, tail, to);
+
+        if (found == NO_STATE) {
+            return null;
+        }
+
+        return toLurd(found, manCell);
+    }
+
+    /**
+     * 以 BFS 展開狀態，直到箱子到達 to。
+     *
+     * @param head 佇列的開頭。
+     * @param tail 佇列的結尾。
+     * @param to   目的格子。
+     *
+     * @return int 箱子到達 to 的狀態；找不到時傳回 NO_STATE。
+     */
+    private int findGoal(int head, int tail, int to) {
+        while (head < tail) {
+            int state = mQueue[head++];
+
+            if (mExpanded[state] == mGeneration) {
+                continue;
+            }
+
+            int box = state / BoardLayout.NUM_DIRECTION;
+            int side = mLayout.neighbour(box, state % BoardLayout.NUM_DIRECTION);
+
+            reachSides(box, side);
+
+            for (int d = 0; d < BoardLayout.NUM_DIRECTION; d++) {
+                int other = mLayout.neighbour(box, d);
+
+                if ((other != BoardLayout.NO_CELL) && mReach.isReachable(other)) {
+                    mExpanded[box * BoardLayout.NUM_DIRECTION + d] = mGeneration;
+                }
+            }
+
+            for (int d = 0; d < BoardLayout.NUM_DIRECTION; d++) {
+                int pushFrom = mLayout.neighbour(box, BoardLayout.opposite(d));
+                int target = mLayout.neighbour(box, d);
+
+                if ((pushFrom == BoardLayout.NO_CELL) || !mReach.isReachable(pushFrom)
+                    || (target == BoardLayout.NO_CELL) || !mLayout.isWalkable(target)
+                    || (mPieces[target] == GameState.PIECE_BOX)) {
+                    continue;
+                }
+
+                // 推完之後，工人站在箱子原來的位置，也就是新位置的反方向一側
+                int next = target * BoardLayout.NUM_DIRECTION + BoardLayout.opposite(d);
+
+                if (mMarks[next] == mGeneration) {
+                    continue;
+                }
+
+                mMarks[next] = mGeneration;
+                mParent[next] = state;
+
+                if (target == to) {
+                    return next;
+                }
+
+                mQueue[tail++] = next;
+            }
+        }
+
+        return NO_STATE;
+    }
+
+    /**
+     * 計算箱子在 box 時，工人從 from 出發走得到的格子。
+     *
+     * @param box  箱子位置。
+     * @param from 工人位置。
+     */
+    private void reachSides(int box, int from) {
+        mPieces[box] = GameState.PIECE_BOX;
+
+        mReach.flood(mPieces, from);
+
+        mPieces[box] = GameState.PIECE_NONE;
+    }
+
+    /**
+     * 沿著父狀態往回找出每一次推箱，再補上工人的走路步驟，組成 LURD 字串。
+     *
+     * @param goal    箱子到達目的地的狀態。
+     * @param manCell 工人的起始位置。
+     *
+     * @return String LURD 步驟。
+     */
+    private String toLurd(int goal, int manCell) {
+        int pushes = 0;
+
+        for (int state = goal; mParent[state] != NO_STATE; state = mParent[state]) {
+            pushes++;
+        }
+
+        // 借用佇列，依序存放每一次推箱後的狀態
+        for (int state = goal, i = pushes - 1; mParent[state] != NO_STATE; state = mParent[state], i--) {
+            mQueue[i] = state;
+        }
+
+        StringBuilder steps = new StringBuilder();
+
+        int man = manCell;
+
+        for (int i = 0; i < pushes; i++) {
+            int box = mQueue[i] / BoardLayout.NUM_DIRECTION;
+            int direction = BoardLayout.opposite(mQueue[i] % BoardLayout.NUM_DIRECTION);
+
+            int from = mLayout.neighbour(box, BoardLayout.opposite(direction));
+            int pushFrom = mLayout.neighbour(from, BoardLayout.opposite(direction));
+
+            mPieces[from] = GameState.PIECE_BOX;
+
+            int length = mReach.findPath(mPieces, man, pushFrom, mWalk);
+
+            mPieces[from] = GameState.PIECE_NONE;
+
+            steps.append(mWalk, 0, length);
+            steps.append(Sokoban.STEP_PUSHING.charAt(direction));
+
+            man = from;
+        }
+
+        return steps.toString();
+    }
+
+    /**
+     * 進入下一個世代；世代編號用完時才清空標記陣列。
+     */
+    private void nextGeneration() {
+        mGeneration++;
+
+        if (mGeneration == Integer.MAX_VALUE) {
+            Arrays.fill(mMarks, 0);
+            Arrays.fill(mExpanded, 0);
+
+            mGeneration = 1;
+        }
+    }
+}
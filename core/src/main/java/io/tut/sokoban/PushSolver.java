@@ -0,0 +1,347 @@
+package io.tut.sokoban;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+/**
+ * 推箱次數最少 (push-optimal) 的 A* 解題程式。
+ *
+ * 搜尋在 _推箱空間_ 進行：每個節點是一組箱子位置，加上正規化的工人位置；每條邊是一次
+ * 推箱。估計值是箱子與目標 _最小成本配對_ 的推箱距離總和 (MatchingLowerBound)；它不會
+ * 高估，而且每推一次最多減少 1，所以第一個找到的解答，推箱次數就是最少的。
+ *
+ * 所有節點存放在 _扁平_ 的 int[] 裡；節點數和時間都有上限，也可以隨時 cancel()。
+ * PushSolver 是一個 Callable，應該交給背景執行緒 (ExecutorService) 執行，不要在 UI
+ * 執行緒上呼叫 call()。
+ */
+public final class PushSolver implements Callable<SolverResult> {
+    private static final int TIME_CHECK_INTERVAL = 1024;
+
+    // 狀態表預設的記憶體上限：4M 個狀態
+    public static final long DEFAULT_TABLE_BYTES = 32L << 20;
+
+    private final BoardSnapshot mStart;
+    private final BoardLayout mLayout;
+
+    private final int mNumBoxes;
+
+    private final long mNodeBudget;
+    private final long mTimeBudgetMillis;
+
+    private final SearchBoard mBoard;
+
+    private volatile boolean mCancelled;
+
+    // 節點資料：箱子位置 (每個節點 mNumBoxes 個)，工人位置，父節點，產生它的推箱動作，
+    // 已推次數 (g) 和估計值 (h)
+    private int[] mNodeBoxes;
+    private int[] mNodeMan;
+    private int[] mNodeParent;
+    private int[] mNodePush;
+    private int[] mNodeG;
+    private int[] mNodeH;
+
+    private int mNumNodes;
+
+    // open list：以 f = g + h 排序的二元堆積 (binary heap)
+    private int[] mHeap;
+    private int mHeapSize;
+
+    private final TranspositionTable mVisited;
+
+    /**
+     * 建構子；狀態表使用預設的記憶體上限。
+     *
+     * @param start            起始盤面。
+     * @param nodeBudget       最多產生的節點數。
+     * @param timeBudgetMillis 最多花費的時間 (毫秒)。
+     */
+    public PushSolver(BoardSnapshot start, long nodeBudget, long timeBudgetMillis) {
+        this(start, DEFAULT_TABLE_BYTES, nodeBudget, timeBudgetMillis);
+    }
+
+    /**
+     * 建構子。
+     *
+     * @param start            起始盤面。
+     * @param tableBytes       狀態表的記憶體上限 (bytes)。
+     * @param nodeBudget       最多產生的節點數。
+     * @param timeBudgetMillis 最多花費的時間 (毫秒)。
+     */
+    public PushSolver(BoardSnapshot start, long tableBytes, long nodeBudget, long timeBudgetMillis) {
+        mStart = start;
+        mLayout = start.getLayout();
+
+        mNumBoxes = start.getBoxCount();
+
+        mNodeBudget = nodeBudget;
+        mTimeBudgetMillis = timeBudgetMillis;
+
+        mBoard = new SearchBoard(mLayout, new PushDistances(mLayout), mNumBoxes);
+
+        int capacity = 1024;
+
+        mNodeBoxes = new int[capacity * mNumBoxes];
+        mNodeMan = new int[capacity];
+        mNodeParent = new int[capacity];
+        mNodePush = new int[capacity];
+        mNodeG = new int[capacity];
+        mNodeH = new int[capacity];
+
+        mHeap = new int[capacity];
+
+        mVisited = new TranspositionTable(tableBytes);
+    }
+
+    /**
+     * 要求解題程式 _儘快_ 停止；call() 會傳回 SolverResult.CANCELLED。
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    /**
+     * 執行 A* 搜尋。
+     *
+     * @return SolverResult 解題結果。
+     */
+    @Override
+    public SolverResult call() {
+        long startTime = System.nanoTime();
+        long deadline = startTime + mTimeBudgetMillis * 1000000L;
+
+        if (mNumBoxes != mLayout.getGoalCount()) {
+            return result(SolverResult.UNSOLVABLE, null, startTime);
+        }
+
+        int[] boxes = new int[mNumBoxes];
+
+        for (int i = 0; i < mNumBoxes; i++) {
+            boxes[i] = mStart.getBoxCell(i);
+        }
+
+        int region = mBoard.load(boxes, 0, mStart.getManCell());
+        int h = mBoard.lowerBound();
+
+        if (h >= PushDistances.INFINITE) {
+            return result(SolverResult.UNSOLVABLE, null, startTime);
+        }
+
+        int root = addNode(boxes, 0, mStart.getManCell(), -1, -1, 0, h);
+
+        if (h == 0) {
+            return result(SolverResult.SOLVED, solutionOf(root), startTime);
+        }
+
+        mVisited.visit(mBoard.boxHash() ^ Zobrist.manKey(region), 0);
+
+        heapPush(root);
+
+        long expanded = 0;
+
+        while (mHeapSize > 0) {
+            if ((++expanded % TIME_CHECK_INTERVAL) == 0) {
+                if (mCancelled) {
+                    return result(SolverResult.CANCELLED, null, startTime);
+                }
+
+                if (System.nanoTime() > deadline) {
+                    return result(SolverResult.TIME_LIMIT, null, startTime);
+                }
+            }
+
+            int node = heapPop();
+            int g = mNodeG[node];
+
+            mBoard.load(mNodeBoxes, node * mNumBoxes, mNodeMan[node]);
+            mBoard.lowerBound();
+
+            long boxHash = mBoard.boxHash();
+
+            for (int i = 0; i < mNumBoxes; i++) {
+                int box = mBoard.boxCell(i);
+
+                for (int d = 0; d < BoardLayout.NUM_DIRECTION; d++) {
+                    int target = mBoard.pushTarget(i, d);
+
+                    if (target == BoardLayout.NO_CELL) {
+                        continue;
+                    }
+
+                    long hash = boxHash ^ Zobrist.boxKey(box) ^ Zobrist.boxKey(target)
+                        ^ Zobrist.manKey(mBoard.manRegionAfterPush(i, target));
+
+                    if (!mVisited.visit(hash, g + 1)) {
+                        continue;
+                    }
+
+                    if (mNumNodes >= mNodeBudget) {
+                        return result(SolverResult.NODE_LIMIT, null, startTime);
+                    }
+
+                    int childH = mBoard.lowerBoundAfterPush(i, target);
+
+                    if (childH >= PushDistances.INFINITE) {
+                        continue;
+                    }
+
+                    int child = addNode(mNodeBoxes, node * mNumBoxes, box, node, box * BoardLayout.NUM_DIRECTION + d, g + 1, childH);
+
+                    mNodeBoxes[child * mNumBoxes + i] = target;
+
+                    if (childH == 0) {
+                        return result(SolverResult.SOLVED, solutionOf(child), startTime);
+                    }
+
+                    heapPush(child);
+                }
+            }
+        }
+
+        return result(SolverResult.UNSOLVABLE, null, startTime);
+    }
+
+    /**
+     * 新增一個節點。
+     *
+     * @param boxes  箱子位置陣列。
+     * @param offset 第一個箱子在陣列裡的位置。
+     * @param man    工人位置。
+     * @param parent 父節點；根節點為 -1。
+     * @param push   產生這個節點的推箱動作 (from * 4 + direction)。
+     * @param g      已推次數。
+     * @param h      估計值。
+     *
+     * @return int 節點編號。
+     */
+    private int addNode(int[] boxes, int offset, int man, int parent, int push, int g, int h) {
+        if (mNumNodes == mNodeMan.length) {
+            int capacity = mNumNodes * 2;
+
+            mNodeBoxes = Arrays.copyOf(mNodeBoxes, capacity * mNumBoxes);
+            mNodeMan = Arrays.copyOf(mNodeMan, capacity);
+            mNodeParent = Arrays.copyOf(mNodeParent, capacity);
+            mNodePush = Arrays.copyOf(mNodePush, capacity);
+            mNodeG = Arrays.copyOf(mNodeG, capacity);
+            mNodeH = Arrays.copyOf(mNodeH, capacity);
+        }
+
+        int node = mNumNodes++;
+
+        System.arraycopy(boxes, offset, mNodeBoxes, node * mNumBoxes, mNumBoxes);
+
+        mNodeMan[node] = man;
+        mNodeParent[node] = parent;
+        mNodePush[node] = push;
+        mNodeG[node] = g;
+        mNodeH[node] = h;
+
+        return node;
+    }
+
+    /**
+     * 沿著父節點往回找，組出從起始盤面到 node 的 LURD 解答。
+     *
+     * @param node 終點節點。
+     *
+     * @return String LURD 解答。
+     */
+    private String solutionOf(int node) {
+        int[] pushes = new int[mNodeG[node]];
+
+        for (int n = node; mNodeParent[n] != -1; n = mNodeParent[n]) {
+            pushes[mNodeG[n] - 1] = mNodePush[n];
+        }
+
+        return mBoard.toLurd(mStart, pushes, pushes.length);
+    }
+
+    /**
+     * 建立解題結果。
+     *
+     * @param status    結果。
+     * @param solution  LURD 解答。
+     * @param startTime 開始的時間 (System.nanoTime())。
+     *
+     * @return SolverResult 解題結果。
+     */
+    private SolverResult result(int status, String solution, long startTime) {
+        return new SolverResult(status, solution, mNumNodes, (System.nanoTime() - startTime) / 1000000L);
+    }
+
+    /**
+     * 節點 a 是否應該比節點 b 先展開：f 小的先；f 相同時，g 大 (比較接近終點) 的先。
+     *
+     * @param a 節點編號。
+     * @param b 節點編號。
+     *
+     * @return true: a 先； false: otherwise。
+     */
+    private boolean precedes(int a, int b) {
+        int fa = mNodeG[a] + mNodeH[a];
+        int fb = mNodeG[b] + mNodeH[b];
+
+        return (fa < fb) || ((fa == fb) && (mNodeG[a] > mNodeG[b]));
+    }
+
+    /**
+     * 將節點加入 open list。
+     *
+     * @param node 節點編號。
+     */
+    private void heapPush(int node) {
+        if (mHeapSize == mHeap.length) {
+            mHeap = Arrays.copyOf(mHeap, mHeapSize * 2);
+        }
+
+        int i = mHeapSize++;
+
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+
+            if (!precedes(node, mHeap[parent])) {
+                break;
+            }
+
+            mHeap[i] = mHeap[parent];
+            i = parent;
+        }
+
+        mHeap[i] = node;
+    }
+
+    /**
+     * 取出 open list 裡最優先的節點。
+     *
+     * @return int 節點編號。
+     */
+    private int heapPop() {
+        int top = mHeap[0];
+        int last = mHeap[--mHeapSize];
+
+        int i = 0;
+
+        while (true) {
+            int child = i * 2 + 1;
+
+            if (child >= mHeapSize) {
+                break;
+            }
+
+            if (((child + 1) < mHeapSize) && precedes(mHeap[child + 1], mHeap[child])) {
+                child++;
+            }
+
+            if (!precedes(mHeap[child], last)) {
+                break;
+            }
+
+            mHeap[i] = mHeap[child];
+            i = child;
+        }
+
+        mHeap[i] = last;
+
+        return top;
+    }
+}
@@ -0,0 +1,169 @@
+package io.tut.sokoban;
+
+import java.util.Arrays;
+
+/**
+ * 計算工人在 _不推動_ 箱子的情況下，可以走到的格子 (reachable area)。
+ *
+ * 佇列和標記陣列都在建構時配置好，重覆計算不會產生新的物件；標記陣列以 _世代_
+ * (generation) 區分每一次的計算結果，不需要每次清空。
+ */
+final class ReachableArea {
+    private final BoardLayout mLayout;
+
+    private final int[] mQueue;
+    private final int[] mMarks;
+
+    // 找路徑時，記錄每個格子是從哪個方向走過來的
+    private final byte[] mCameFrom;
+
+    private int mGeneration;
+
+    private int mSize;
+
+    /**
+     * 建構子。
+     *
+     * @param layout 關卡的靜態盤面。
+     */
+    ReachableArea(BoardLayout layout) {
+        mLayout = layout;
+
+        mQueue = new int[layout.NUM_CELL];
+        mMarks = new int[layout.NUM_CELL];
+
+        mCameFrom = new byte[layout.NUM_CELL];
+    }
+
+    /**
+     * 從 from 出發，以 BFS 標記工人可以走到的格子。
+     *
+     * @param pieces 盤面上的箱子；pieces[cell] == GameState.PIECE_BOX 的格子不能通過。
+     * @param from   出發格子。
+     *
+     * @return int 可以走到的格子中，索引 _最小_ 的一格 (正規化的工人位置)。
+     */
+    int flood(byte[] pieces, int from) {
+        nextGeneration();
+
+        int head = 0;
+        int tail = 0;
+        int minCell = from;
+
+        mMarks[from] = mGeneration;
+        mQueue[tail++] = from;
+
+        while (head < tail) {
+            int cell = mQueue[head++];
+
+            if (cell < minCell) {
+                minCell = cell;
+            }
+
+            for (int d = 0; d < BoardLayout.NUM_DIRECTION; d++) {
+                int next = mLayout.neighbour(cell, d);
+
+                if ((next != BoardLayout.NO_CELL) && (mMarks[next] != mGeneration)
+                    && mLayout.isWalkable(next) && (pieces[next] != GameState.PIECE_BOX)) {
+                    mMarks[next] = mGeneration;
+                    mQueue[tail++] = next;
+                }
+            }
+        }
+
+        mSize = tail;
+
+        return minCell;
+    }
+
+    /**
+     * 以 BFS 找出工人從 from 走到 to 的 _最短_ 路徑，將 LURD 移動字元 (小寫) 依序寫入
+     * steps。
+     *
+     * @param pieces 盤面上的箱子；pieces[cell] == GameState.PIECE_BOX 的格子不能通過。
+     * @param from   出發格子。
+     * @param to     目的格子。
+     * @param steps  存放移動字元的陣列；長度至少要有 BoardLayout.NUM_CELL。
+     *
+     * @return int 路徑的步數；走不到時傳回 -1。
+     */
+    int findPath(byte[] pieces, int from, int to, char[] steps) {
+        nextGeneration();
+
+        int head = 0;
+        int tail = 0;
+
+        mMarks[from] = mGeneration;
+        mQueue[tail++] = from;
+
+        while ((head < tail) && (mMarks[to] != mGeneration)) {
+            int cell = mQueue[head++];
+
+            for (int d = 0; d < BoardLayout.NUM_DIRECTION; d++) {
+                int next = mLayout.neighbour(cell, d);
+
+                if ((next != BoardLayout.NO_CELL) && (mMarks[next] != mGeneration)
+                    && mLayout.isWalkable(next) && (pieces[next] != GameState.PIECE_BOX)) {
+                    mMarks[next] = mGeneration;
+                    mCameFrom[next] = (byte) d;
+                    mQueue[tail++] = next;
+                }
+            }
+        }
+
+        mSize = tail;
+
+        if (mMarks[to] != mGeneration) {
+            return -1;
+        }
+
+        int length = 0;
+
+        for (int cell = to; cell != from; cell = mLayout.neighbour(cell, BoardLayout.opposite(mCameFrom[cell]))) {
+            length++;
+        }
+
+        for (int cell = to, i = length - 1; cell != from; i--) {
+            int direction = mCameFrom[cell];
+
+            steps[i] = Sokoban.STEP_MOVING.charAt(direction);
+
+            cell = mLayout.neighbour(cell, BoardLayout.opposite(direction));
+        }
+
+        return length;
+    }
+
+    /**
+     * 最近一次 flood() (或 findPath()) 之後，指定的格子是否可以走到。
+     *
+     * @param cell 格子索引。
+     *
+     * @return true: 可以走到； false: otherwise。
+     */
+    boolean isReachable(int cell) {
+        return mMarks[cell] == mGeneration;
+    }
+
+    /**
+     * 傳回最近一次 flood() 可以走到的格子數。
+     *
+     * @return int 格子數。
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * 進入下一個世代；世代編號用完時才清空標記陣列。
+     */
+    private void nextGeneration() {
+        mGeneration++;
+
+        if (mGeneration == Integer.MAX_VALUE) {
+            Arrays.fill(mMarks, 0);
+
+            mGeneration = 1;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package io.tut.sokoban;
+
+/**
+ * 以 SolutionVerifier 重播 LURD 解答的結果。
+ */
+public final class ReplayResult {
+    private final boolean mSolved;
+
+    private final int mIllegalStep;
+
+    private final int mMoveCount;
+    private final int mPushCount;
+
+    /**
+     * 建構子。
+     *
+     * @param solved      重播之後是否解開。
+     * @param illegalStep 第一個不合法棋步的位置；所有棋步都合法時為 -1。
+     * @param moveCount   執行的步數 (包含推箱)。
+     * @param pushCount   執行的推箱次數。
+     */
+    ReplayResult(boolean solved, int illegalStep, int moveCount, int pushCount) {
+        mSolved = solved;
+        mIllegalStep = illegalStep;
+        mMoveCount = moveCount;
+        mPushCount = pushCount;
+    }
+
+    /**
+     * 重播之後謎題是否解開；有不合法的棋步時一定是 false。
+     *
+     * @return true: 解開； false: otherwise。
+     */
+    public boolean isSolved() {
+        return mSolved;
+    }
+
+    /**
+     * 傳回第一個不合法棋步 (走不動，推不動，或不是 LURD 字元) 在解答字串裡的位置；重播
+     * 在這一步停止。
+     *
+     * @return int 位置 (從 0 開始)；所有棋步都合法時傳回 -1。
+     */
+    public int getIllegalStep() {
+        return mIllegalStep;
+    }
+
+    /**
+     * 傳回執行的步數 (包含推箱)；有不合法的棋步時，只算它之前的棋步。
+     *
+     * @return int 步數。
+     */
+    public int getMoveCount() {
+        return mMoveCount;
+    }
+
+    /**
+     * 傳回執行的推箱次數；有不合法的棋步時，只算它之前的棋步。
+     *
+     * @return int 推箱次數。
+     */
+    public int getPushCount() {
+        return mPushCount;
+    }
+
+    @Override
+    public String toString() {
+        if (mIllegalStep >= 0) {
+            return "illegal step at " + mIllegalStep + " (moves " + mMoveCount + ", pushes " + mPushCount + ")";
+        }
+
+        return (mSolved ? "solved" : "unsolved") + " (moves " + mMoveCount + ", pushes " + mPushCount + ")";
+    }
+}
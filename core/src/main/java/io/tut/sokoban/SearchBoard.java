@@ -0,0 +1,223 @@
+package io.tut.sokoban;
+
+/**
+ * 解題程式使用的 _工作盤面_：在 _推箱空間_ (push space) 裡，一個狀態只包含箱子的位置
+ * 和工人 _可到達的區域_；工人怎麼走到推箱的位置，等找到解答後才補上。
+ *
+ * 每個搜尋執行緒各自擁有一個 SearchBoard；所有陣列都在建構時配置好，搜尋過程中不會
+ * 再產生新的物件。
+ */
+final class SearchBoard {
+    private final BoardLayout mLayout;
+    private final MatchingLowerBound mMatching;
+
+    private final byte[] mPieces;
+
+    private final int[] mBoxCells;
+
+    // mReach 保存目前盤面的可到達區域；mProbe 用來計算推箱後的正規化工人位置
+    private final ReachableArea mReach;
+    private final ReachableArea mProbe;
+
+    /**
+     * 建構子。
+     *
+     * @param layout    關卡的靜態盤面。
+     * @param distances 推箱距離表。
+     * @param numBoxes  箱子數。
+     */
+    SearchBoard(BoardLayout layout, PushDistances distances, int numBoxes) {
+        mLayout = layout;
+        mMatching = new MatchingLowerBound(layout, distances);
+
+        mPieces = new byte[layout.NUM_CELL];
+        mBoxCells = new int[numBoxes];
+
+        mReach = new ReachableArea(layout);
+        mProbe = new ReachableArea(layout);
+    }
+
+    /**
+     * 載入一個狀態，並計算工人的可到達區域。
+     *
+     * @param boxes   箱子位置陣列。
+     * @param offset  第一個箱子在陣列裡的位置。
+     * @param manCell 工人位置。
+     *
+     * @return int 正規化的工人位置。
+     */
+    int load(int[] boxes, int offset, int manCell) {
+        for (int cell : mBoxCells) {
+            mPieces[cell] = GameState.PIECE_NONE;
+        }
+
+        System.arraycopy(boxes, offset, mBoxCells, 0, mBoxCells.length);
+
+        for (int cell : mBoxCells) {
+            mPieces[cell] = GameState.PIECE_BOX;
+        }
+
+        return mReach.flood(mPieces, manCell);
+    }
+
+    /**
+     * 傳回目前載入的第 i 個箱子位置。
+     *
+     * @param i 箱子編號。
+     *
+     * @return int 格子索引。
+     */
+    int boxCell(int i) {
+        return mBoxCells[i];
+    }
+
+    /**
+     * 傳回目前載入的箱子位置 (唯讀使用)。
+     *
+     * @return int[] 箱子位置。
+     */
+    int[] boxCells() {
+        return mBoxCells;
+    }
+
+    /**
+     * 將第 i 個箱子往 direction 推一格，是否合法 (工人到得了推箱的位置，箱子前方是
+     * 空的地板，而且不是 _死格_)。
+     *
+     * @param i         箱子編號。
+     * @param direction 方向。
+     *
+     * @return int 箱子推過去的格子；不合法時傳回 BoardLayout.NO_CELL。
+     */
+    int pushTarget(int i, int direction) {
+        int box = mBoxCells[i];
+
+        int side = mLayout.neighbour(box, BoardLayout.opposite(direction));
+
+        if ((side == BoardLayout.NO_CELL) || !mReach.isReachable(side)) {
+            return BoardLayout.NO_CELL;
+        }
+
+        int target = mLayout.neighbour(box, direction);
+
+        if ((target == BoardLayout.NO_CELL) || !mLayout.isWalkable(target)
+            || (mPieces[target] == GameState.PIECE_BOX)
+            || mLayout.isDeadCell(target)) {
+            return BoardLayout.NO_CELL;
+        }
+
+        return target;
+    }
+
+    /**
+     * 計算第 i 個箱子推到 target 之後，正規化的工人位置；盤面本身保持不變。
+     *
+     * @param i      箱子編號。
+     * @param target 箱子推過去的格子。
+     *
+     * @return int 正規化的工人位置。
+     */
+    int manRegionAfterPush(int i, int target) {
+        int box = mBoxCells[i];
+
+        mPieces[box] = GameState.PIECE_NONE;
+        mPieces[target] = GameState.PIECE_BOX;
+
+        int region = mProbe.flood(mPieces, box);
+
+        mPieces[target] = GameState.PIECE_NONE;
+        mPieces[box] = GameState.PIECE_BOX;
+
+        return region;
+    }
+
+    /**
+     * 計算目前載入的箱子位置的 Zobrist 雜湊值。
+     *
+     * @return long 雜湊值。
+     */
+    long boxHash() {
+        long hash = 0;
+
+        for (int cell : mBoxCells) {
+            hash ^= Zobrist.boxKey(cell);
+        }
+
+        return hash;
+    }
+
+    /**
+     * 計算目前載入的箱子與目標的最小成本配對 (可採納的下限)；之後可以用
+     * lowerBoundAfterPush() 估計推一次箱子之後的值。
+     *
+     * @return int 估計值；無法配對時傳回 PushDistances.INFINITE。
+     */
+    int lowerBound() {
+        return mMatching.load(mBoxCells);
+    }
+
+    /**
+     * 估計第 i 個箱子推到 target 之後的下限；只重算這個箱子的配對成本。必須先呼叫過
+     * lowerBound()。
+     *
+     * @param i      箱子編號。
+     * @param target 箱子推過去的格子。
+     *
+     * @return int 估計值；無法配對時傳回 PushDistances.INFINITE。
+     */
+    int lowerBoundAfterPush(int i, int target) {
+        return mMatching.evaluate(i, target);
+    }
+
+    /**
+     * 將一串推箱動作 (from * 4 + direction)，補上工人的走路步驟，轉成完整的 LURD 解答。
+     *
+     * @param start  起始盤面。
+     * @param pushes 推箱動作。
+     * @param count  推箱動作的數目。
+     *
+     * @return String LURD 解答。
+     */
+    String toLurd(BoardSnapshot start, int[] pushes, int count) {
+        StringBuilder solution = new StringBuilder();
+
+        char[] walk = new char[mLayout.NUM_CELL];
+
+        int[] boxes = new int[mBoxCells.length];
+
+        for (int i = 0; i < boxes.length; i++) {
+            boxes[i] = start.getBoxCell(i);
+        }
+
+        int man = start.getManCell();
+
+        load(boxes, 0, man);
+
+        for (int p = 0; p < count; p++) {
+            int from = pushes[p] / BoardLayout.NUM_DIRECTION;
+            int direction = pushes[p] % BoardLayout.NUM_DIRECTION;
+
+            int side = mLayout.neighbour(from, BoardLayout.opposite(direction));
+
+            int length = mReach.findPath(mPieces, man, side, walk);
+
+            solution.append(walk, 0, length);
+            solution.append(Sokoban.STEP_PUSHING.charAt(direction));
+
+            int target = mLayout.neighbour(from, direction);
+
+            for (int i = 0; i < mBoxCells.length; i++) {
+                if (mBoxCells[i] == from) {
+                    mBoxCells[i] = target;
+                }
+            }
+
+            mPieces[from] = GameState.PIECE_NONE;
+            mPieces[target] = GameState.PIECE_BOX;
+
+            man = from;
+        }
+
+        return solution.toString();
+    }
+}
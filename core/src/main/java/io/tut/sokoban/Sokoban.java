@@ -0,0 +1,31 @@
+package io.tut.sokoban;
+
+public abstract class Sokoban {
+    // XSB 檔案格式
+    public static final char BOX = '$';
+    public static final char BOX_ON_GOAL = '*';
+    public static final char FLOOR = ' ';
+    public static final char GOAL = '.';
+    public static final char MAN = '@';
+    public static final char MAN_ON_GOAL = '+';
+    public static final char WALL = '#';
+    public static final char EMPTY = '-';
+    public static final char EMPTY_ALT = '_';
+
+    // LURD 解答格式
+    public static final char MOVE_LEFT = 'l';
+    public static final char MOVE_UP = 'u';
+    public static final char MOVE_RIGHT = 'r';
+    public static final char MOVE_DOWN = 'd';
+
+    public static final char PUSH_LEFT = 'L';
+    public static final char PUSH_UP = 'U';
+    public static final char PUSH_RIGHT = 'R';
+    public static final char PUSH_DOWN = 'D';
+
+    public static final String STEP_MOVING = "lurd";
+    public static final String STEP_PUSHING = "LURD";
+
+    // 覆棋用
+    public static final char REDO_STEP = '.';
+}
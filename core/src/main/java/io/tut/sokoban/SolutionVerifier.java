@@ -0,0 +1,132 @@
+package io.tut.sokoban;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 不經過畫面和觸控，以 GameState.redoStep() 重播 LURD 解答，檢查解答是否合法，是否
+ * 解開關卡。
+ *
+ * replay() 重播一個解答；verify() 以多個執行緒重播整個關卡集裡記錄的解答 (見
+ * LevelPack.getSolution())，可以在修改遊戲引擎之後當作回歸測試。
+ */
+public final class SolutionVerifier {
+    private final LevelPack mPack;
+
+    private final int mParallelism;
+
+    /**
+     * 建構子。
+     *
+     * @param pack        關卡集；來源 (LevelPack.Source) 必須可以同時由多個執行緒開啟。
+     * @param parallelism 使用的執行緒數。
+     */
+    public SolutionVerifier(LevelPack pack, int parallelism) {
+        mPack = pack;
+        mParallelism = Math.max(parallelism, 1);
+    }
+
+    /**
+     * 從關卡的初始盤面重播一個 LURD 解答；遇到第一個不合法的棋步就停止。
+     *
+     * @param level    關卡的 _初始盤面_。
+     * @param solution LURD 解答；小寫是移動，大寫是推箱。
+     *
+     * @return ReplayResult 重播的結果。
+     */
+    public static ReplayResult replay(String[] level, CharSequence solution) {
+        GameState gameState = new GameState(level);
+
+        int moves = 0;
+        int pushes = 0;
+
+        for (int i = 0; i < solution.length(); i++) {
+            char step = solution.charAt(i);
+
+            boolean pushing = Sokoban.STEP_PUSHING.indexOf(step) > -1;
+
+            // 不是 LURD 的字元 (包括 Sokoban.REDO_STEP) 不交給 GameState
+            if ((!pushing && (Sokoban.STEP_MOVING.indexOf(step) < 0)) || !gameState.redoStep(step)) {
+                return new ReplayResult(false, i, moves, pushes);
+            }
+
+            moves++;
+
+            if (pushing) {
+                pushes++;
+            }
+        }
+
+        gameState.updateState();
+
+        return new ReplayResult(gameState.getGameStatus() == GameState.SOLVED, -1, moves, pushes);
+    }
+
+    /**
+     * 重播關卡集裡所有記錄的解答；每個執行緒輪流取下一個還沒有檢查的關卡。
+     *
+     * @return ReplayResult[] 每個關卡的結果，以關卡編號 (從 0 開始) 為索引；沒有解答的
+     *         關卡為 null。
+     *
+     * @throws IOException          讀取關卡集失敗。
+     * @throws InterruptedException 等待時被中斷。
+     */
+    public ReplayResult[] verify() throws IOException, InterruptedException {
+        final ReplayResult[] results = new ReplayResult[mPack.size()];
+
+        final AtomicInteger next = new AtomicInteger();
+
+        List<Callable<Void>> workers = new ArrayList<>(mParallelism);
+
+        for (int i = 0; i < mParallelism; i++) {
+            workers.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    for (int level = next.getAndIncrement(); level < results.length; level = next.getAndIncrement()) {
+                        if (mPack.hasSolution(level)) {
+                            results[level] = replay(mPack.getLevel(level), mPack.getSolution(level));
+                        }
+                    }
+
+                    return null;
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(mParallelism);
+
+        try {
+            for (Future<Void> future : executor.invokeAll(workers)) {
+                try {
+                    future.get();
+                }
+                catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+
+                    throw (Error) cause;
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        // invokeAll() 之後，所有執行緒寫入的結果對這個執行緒都是可見的
+        return results;
+    }
+}
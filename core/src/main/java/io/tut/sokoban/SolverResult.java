@@ -0,0 +1,100 @@
+package io.tut.sokoban;
+
+/**
+ * 解題程式的執行結果。
+ */
+public final class SolverResult {
+    public static final int SOLVED = 0;
+    public static final int UNSOLVABLE = 1;
+    public static final int NODE_LIMIT = 2;
+    public static final int TIME_LIMIT = 3;
+    public static final int CANCELLED = 4;
+
+    private final int mStatus;
+
+    private final String mSolution;
+
+    private final long mNodes;
+    private final long mElapsedMillis;
+
+    /**
+     * 建構子。
+     *
+     * @param status        結果 (SOLVED, UNSOLVABLE, NODE_LIMIT, TIME_LIMIT, CANCELLED)。
+     * @param solution      LURD 解答；沒有解出時為 null。
+     * @param nodes         展開的節點數。
+     * @param elapsedMillis 花費的時間 (毫秒)。
+     */
+    SolverResult(int status, String solution, long nodes, long elapsedMillis) {
+        mStatus = status;
+        mSolution = solution;
+        mNodes = nodes;
+        mElapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * 傳回解題結果。
+     *
+     * @return int 結果。
+     */
+    public int getStatus() {
+        return mStatus;
+    }
+
+    /**
+     * 傳回 LURD 解答；可以逐字交給 GameState.redoStep() 重播。
+     *
+     * @return String 解答；沒有解出時為 null。
+     */
+    public String getSolution() {
+        return mSolution;
+    }
+
+    /**
+     * 傳回解答的推箱次數。
+     *
+     * @return int 推箱次數；沒有解出時為 -1。
+     */
+    public int getPushCount() {
+        if (mSolution == null) {
+            return -1;
+        }
+
+        int pushes = 0;
+
+        for (int i = 0; i < mSolution.length(); i++) {
+            if (Sokoban.STEP_PUSHING.indexOf(mSolution.charAt(i)) > -1) {
+                pushes++;
+            }
+        }
+
+        return pushes;
+    }
+
+    /**
+     * 傳回展開的節點數。
+     *
+     * @return long 節點數。
+     */
+    public long getNodes() {
+        return mNodes;
+    }
+
+    /**
+     * 傳回花費的時間。
+     *
+     * @return long 毫秒。
+     */
+    public long getElapsedMillis() {
+        return mElapsedMillis;
+    }
+
+    /**
+     * 是否解出。
+     *
+     * @return true: 解出； false: otherwise。
+     */
+    public boolean isSolved() {
+        return mStatus == SOLVED;
+    }
+}
@@ -0,0 +1,275 @@
+package io.tut.sokoban;
+
+import java.util.Arrays;
+
+/**
+ * 解題步驟 (棋譜) 的紀錄；同時負責 _悔棋_ (undo) 與 _覆棋_ (redo)。
+ *
+ * 每一步以一個 byte 保存：低 2 個位元是 _方向_，第 3 個位元表示 _推箱_。所有步驟放在
+ * 同一個陣列裡，以 _游標_ (cursor) 區分：游標之前是已經走過的步驟，游標之後是悔棋後
+ * 還可以覆棋的步驟。悔棋和覆棋只是移動游標，不需要搬移資料。
+ *
+ * 每走 checkpointInterval() 步，記錄一份 _完整_ 的盤面 (工人和所有箱子的位置)；要跳到
+ * 第 k 步時，只要從最近的 checkpoint 出發，最多重走 checkpointInterval() 步。
+ *
+ * checkpoint 的間隔至少是 MIN_CHECKPOINT_INTERVAL 步，而且大於箱子數 (2 的次方)：平均
+ * 每一步複製不到一個箱子位置，箱子多的關卡也一樣；還原 checkpoint 本來就要 O(箱子數)，
+ * 重走的步數也是同一個等級。
+ */
+final class StepHistory {
+    static final int MIN_CHECKPOINT_INTERVAL = 64;
+
+    private static final int PUSH_FLAG = 0x04;
+    private static final int DIRECTION_MASK = 0x03;
+
+    // LURD 棋步字元 (以字元值為索引) 的編碼；每一步都要編碼，不逐字搜尋 STEP_MOVING 和
+    // STEP_PUSHING
+    private static final byte[] CODES = buildCodes();
+
+    private final int mCheckpointStride;
+
+    // checkpoint 間隔 (2 的次方) 的 log2；每一步都要判斷是否需要 checkpoint，以位移代替除法
+    private final int mCheckpointShift;
+
+    private byte[] mSteps;
+
+    private int mCursor;
+    private int mLength;
+
+    // 第 j 個 checkpoint 是走完 j * checkpointInterval() 步之後的盤面；
+    // 內容依序為工人位置，和每個箱子的位置
+    private int[] mCheckpoints;
+
+    private int mNumCheckpoints;
+
+    /**
+     * 建構子。
+     *
+     * @param numBoxes 關卡內的箱子數。
+     */
+    StepHistory(int numBoxes) {
+        mCheckpointStride = numBoxes + 1;
+        mCheckpointShift = Integer.numberOfTrailingZeros(
+            Math.max(MIN_CHECKPOINT_INTERVAL, Integer.highestOneBit(numBoxes) << 1)
+        );
+
+        mSteps = new byte[256];
+        mCheckpoints = new int[mCheckpointStride * 16];
+    }
+
+    /**
+     * 在游標位置記錄新的一步；游標之後 (可以覆棋) 的步驟，以及相關的 checkpoint 都被
+     * 捨棄。
+     *
+     * @param step LURD 棋步字元。
+     */
+    void append(char step) {
+        truncate();
+
+        if (mLength == mSteps.length) {
+            mSteps = Arrays.copyOf(mSteps, mLength * 2);
+        }
+
+        mSteps[mLength++] = encode(step);
+
+        mCursor = mLength;
+    }
+
+    /**
+     * 傳回游標的位置 (已經走過的步數)。
+     *
+     * @return int 游標位置。
+     */
+    int cursor() {
+        return mCursor;
+    }
+
+    /**
+     * 傳回兩個 checkpoint 之間的步數。
+     *
+     * @return int checkpoint 間隔 (2 的次方)。
+     */
+    int checkpointInterval() {
+        return 1 << mCheckpointShift;
+    }
+
+    /**
+     * 傳回全部 (包含可以覆棋) 的步數。
+     *
+     * @return int 步數。
+     */
+    int length() {
+        return mLength;
+    }
+
+    /**
+     * 傳回第 index 步的棋步字元。
+     *
+     * @param index 步驟編號 (0 ~ length() - 1)。
+     *
+     * @return char LURD 棋步字元。
+     */
+    char stepAt(int index) {
+        return decode(mSteps[index]);
+    }
+
+    /**
+     * 傳回第 index 步是否為 _推箱_。
+     *
+     * @param index 步驟編號 (0 ~ length() - 1)。
+     *
+     * @return true: 推箱； false: 移動。
+     */
+    boolean isPushAt(int index) {
+        return (mSteps[index] & PUSH_FLAG) != 0;
+    }
+
+    /**
+     * 游標往前 (覆棋) 一步。
+     */
+    void forward() {
+        mCursor++;
+    }
+
+    /**
+     * 游標往後 (悔棋) 一步。
+     */
+    void backward() {
+        mCursor--;
+    }
+
+    /**
+     * 將游標直接移到指定位置 (不超過 length())。
+     *
+     * @param cursor 游標位置。
+     */
+    void seek(int cursor) {
+        mCursor = cursor;
+    }
+
+    /**
+     * 捨棄游標之後 (可以覆棋) 的步驟。
+     */
+    void truncate() {
+        mLength = mCursor;
+
+        mNumCheckpoints = Math.min(mNumCheckpoints, (mCursor >> mCheckpointShift) + 1);
+    }
+
+    /**
+     * 游標位置是否 _剛好_ 需要一個 (還沒有記錄的) checkpoint。
+     *
+     * @return true: 需要記錄； false: otherwise。
+     */
+    boolean needsCheckpoint() {
+        return mCursor == (mNumCheckpoints << mCheckpointShift);
+    }
+
+    /**
+     * 記錄目前游標位置的 checkpoint。
+     *
+     * @param manCell  工人位置。
+     * @param boxCells 所有箱子的位置。
+     */
+    void putCheckpoint(int manCell, int[] boxCells) {
+        int offset = mNumCheckpoints * mCheckpointStride;
+
+        if (offset + mCheckpointStride > mCheckpoints.length) {
+            mCheckpoints = Arrays.copyOf(mCheckpoints, mCheckpoints.length * 2);
+        }
+
+        mCheckpoints[offset] = manCell;
+
+        System.arraycopy(boxCells, 0, mCheckpoints, offset + 1, mCheckpointStride - 1);
+
+        mNumCheckpoints++;
+    }
+
+    /**
+     * 傳回第 step 步 _之前_ (含)，最近一個 checkpoint 的編號。
+     *
+     * @param step 步驟編號。
+     *
+     * @return int checkpoint 編號；對應的步數是 編號 * checkpointInterval()。
+     */
+    int checkpointBefore(int step) {
+        return Math.min(step >> mCheckpointShift, mNumCheckpoints - 1);
+    }
+
+    /**
+     * 傳回第 index 個 checkpoint 的工人位置。
+     *
+     * @param index checkpoint 編號。
+     *
+     * @return int 工人位置。
+     */
+    int checkpointManCell(int index) {
+        return mCheckpoints[index * mCheckpointStride];
+    }
+
+    /**
+     * 將第 index 個 checkpoint 的箱子位置複製到 boxCells。
+     *
+     * @param index    checkpoint 編號。
+     * @param boxCells 存放箱子位置的陣列。
+     */
+    void checkpointBoxCells(int index, int[] boxCells) {
+        System.arraycopy(mCheckpoints, index * mCheckpointStride + 1, boxCells, 0, mCheckpointStride - 1);
+    }
+
+    /**
+     * 傳回游標之前 (已經走過) 的步驟字串。
+     *
+     * @return String LURD 字串。
+     */
+    @Override
+    public String toString() {
+        char[] steps = new char[mCursor];
+
+        for (int i = 0; i < mCursor; i++) {
+            steps[i] = decode(mSteps[i]);
+        }
+
+        return new String(steps);
+    }
+
+    /**
+     * 將 LURD 棋步字元編碼成 3 個位元。
+     *
+     * @param step LURD 棋步字元。
+     *
+     * @return byte 編碼。
+     */
+    private static byte encode(char step) {
+        return CODES[step];
+    }
+
+    /**
+     * 建立 LURD 棋步字元的編碼表。
+     *
+     * @return byte[] 以字元值為索引的編碼。
+     */
+    private static byte[] buildCodes() {
+        byte[] codes = new byte[128];
+
+        for (int direction = 0; direction < Sokoban.STEP_MOVING.length(); direction++) {
+            codes[Sokoban.STEP_MOVING.charAt(direction)] = (byte) direction;
+            codes[Sokoban.STEP_PUSHING.charAt(direction)] = (byte) (direction | PUSH_FLAG);
+        }
+
+        return codes;
+    }
+
+    /**
+     * 將 3 個位元的編碼還原成 LURD 棋步字元。
+     *
+     * @param code 編碼。
+     *
+     * @return char LURD 棋步字元。
+     */
+    private static char decode(byte code) {
+        int direction = code & DIRECTION_MASK;
+
+        return ((code & PUSH_FLAG) != 0) ? Sokoban.STEP_PUSHING.charAt(direction) : Sokoban.STEP_MOVING.charAt(direction);
+    }
+}
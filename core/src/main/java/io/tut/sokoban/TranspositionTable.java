@@ -0,0 +1,242 @@
+package io.tut.sokoban;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 解題程式的 _狀態表_ (transposition table)：記錄已經看過的盤面 (64 位元雜湊值)，和
+ * 到達它的最少推箱次數。
+ *
+ * 每個狀態只佔一個 long (8 bytes)，不建立任何物件；表的大小在建構時由 _記憶體上限_
+ * 決定，之後不再成長。一個 long 的內容：
+ *
+ *     | 雜湊值的高 40 位元 | 世代 (8 位元) | 推箱次數 (16 位元) |
+ *
+ * 雜湊值的低位元決定狀態放在哪一個 _桶_ (bucket，BUCKET_SIZE 個相鄰的 slot)；桶滿了
+ * 就要取代其中一個：先取代舊世代 (aging) 的狀態，再取代推箱次數最多的狀態 (depth-
+ * preferred：離起點越近的狀態，剪掉的子樹越大，越值得保留)。
+ *
+ * 存放在 AtomicLongArray 裡 (底層仍是 long[])，寫入以 compareAndSet 完成，可以由多個
+ * 搜尋執行緒同時使用，在 32 位元的裝置上也不會讀到寫了一半的 long。
+ */
+final class TranspositionTable {
+    static final int NOT_FOUND = -1;
+
+    static final int MAX_VALUE = 0xffff;
+
+    private static final int BUCKET_SIZE = 4;
+
+    private static final int VALUE_BITS = 16;
+    private static final int AGE_BITS = 8;
+    private static final int CHECK_SHIFT = VALUE_BITS + AGE_BITS;
+
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+    private static final long AGE_MASK = (1L << AGE_BITS) - 1;
+
+    // 最少 1 個桶，最多 2^30 個 slot (8 GB)
+    static final int MIN_SLOTS = BUCKET_SIZE;
+    static final int MAX_SLOTS = 1 << 30;
+
+    private final AtomicLongArray mSlots;
+
+    private final int mBucketMask;
+
+    // 世代從 1 開始，所以使用中的 slot 永遠不是 0
+    private volatile int mAge = 1;
+
+    /**
+     * 建構子。
+     *
+     * @param maxBytes 記憶體上限 (bytes)；實際大小是不超過上限的最大 2 的次方個 slot。
+     */
+    TranspositionTable(long maxBytes) {
+        int slots = slotsFor(maxBytes);
+
+        mSlots = new AtomicLongArray(slots);
+
+        mBucketMask = (slots - 1) & ~(BUCKET_SIZE - 1);
+    }
+
+    /**
+     * 記憶體上限 maxBytes 的表有多少個 slot：不超過上限的最大 2 的次方，介於 MIN_SLOTS
+     * 和 MAX_SLOTS 之間。
+     *
+     * @param maxBytes 記憶體上限 (bytes)。
+     *
+     * @return int slot 數。
+     */
+    static int slotsFor(long maxBytes) {
+        int slots = MIN_SLOTS;
+
+        while ((slots < MAX_SLOTS) && ((long) slots * 2 * 8 <= maxBytes)) {
+            slots *= 2;
+        }
+
+        return slots;
+    }
+
+    /**
+     * 傳回表可以容納的狀態數。
+     *
+     * @return int 狀態數。
+     */
+    int capacity() {
+        return mSlots.length();
+    }
+
+    /**
+     * 傳回表佔用的記憶體 (bytes)。
+     *
+     * @return long bytes。
+     */
+    long sizeInBytes() {
+        return (long) mSlots.length() * 8;
+    }
+
+    /**
+     * 開始新的一個世代 (例如 IDA* 的下一輪)；之前世代的狀態視為沒看過，並且優先被取代。
+     *
+     * 世代只有 8 位元：用完時清除整個表，從 1 重新開始；否則 255 個世代之前的狀態會被
+     * 當成這個世代看過的狀態。
+     */
+    void nextAge() {
+        int age = mAge + 1;
+
+        if (age > AGE_MASK) {
+            clear();
+        }
+        else {
+            mAge = age;
+        }
+    }
+
+    /**
+     * 傳回這個世代裡，狀態的最少推箱次數。
+     *
+     * @param hash 狀態的雜湊值。
+     *
+     * @return int 推箱次數；沒看過時傳回 NOT_FOUND。
+     */
+    int get(long hash) {
+        long check = hash >>> CHECK_SHIFT;
+        int age = mAge;
+
+        int bucket = bucketOf(hash);
+
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            long entry = mSlots.get(bucket + i);
+
+            if (((entry >>> CHECK_SHIFT) == check) && (ageOf(entry) == age)) {
+                return (int) (entry & VALUE_MASK);
+            }
+        }
+
+        return NOT_FOUND;
+    }
+
+    /**
+     * 以 value 次推箱到達狀態 hash；這個世代裡已經以不多於 value 次推箱到達過時，
+     * 傳回 false，否則記錄下來並傳回 true。
+     *
+     * @param hash  狀態的雜湊值。
+     * @param value 推箱次數 (0 到 MAX_VALUE)。
+     *
+     * @return true: 第一次 (或以更少推箱次數) 到達； false: otherwise。
+     */
+    boolean visit(long hash, int value) {
+        long check = hash >>> CHECK_SHIFT;
+        int age = mAge;
+
+        long entry = (check << CHECK_SHIFT) | ((long) age << VALUE_BITS) | Math.min(value, MAX_VALUE);
+
+        int bucket = bucketOf(hash);
+
+        while (true) {
+            int victim = -1;
+            long victimEntry = 0;
+            int victimRank = -1;
+
+            for (int i = 0; i < BUCKET_SIZE; i++) {
+                long current = mSlots.get(bucket + i);
+
+                if ((current >>> CHECK_SHIFT) == check) {
+                    if ((ageOf(current) == age) && ((current & VALUE_MASK) <= value)) {
+                        return false;
+                    }
+
+                    // 同一個狀態：直接覆寫
+                    victim = bucket + i;
+                    victimEntry = current;
+
+                    break;
+                }
+
+                int rank = rankOf(current, age);
+
+                if (rank > victimRank) {
+                    victim = bucket + i;
+                    victimEntry = current;
+                    victimRank = rank;
+                }
+            }
+
+            if (mSlots.compareAndSet(victim, victimEntry, entry)) {
+                return true;
+            }
+
+            // 其它執行緒剛寫入這個桶，重新檢查
+        }
+    }
+
+    /**
+     * 清除所有狀態。
+     */
+    void clear() {
+        for (int i = 0; i < mSlots.length(); i++) {
+            mSlots.set(i, 0);
+        }
+
+        mAge = 1;
+    }
+
+    /**
+     * 狀態放在哪一個桶 (第一個 slot 的索引)。
+     *
+     * @param hash 狀態的雜湊值。
+     *
+     * @return int slot 索引。
+     */
+    private int bucketOf(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & mBucketMask;
+    }
+
+    /**
+     * 取代 slot 裡狀態的優先順序；數值越大越先被取代。
+     *
+     * @param entry slot 的內容。
+     * @param age   目前的世代。
+     *
+     * @return int 優先順序。
+     */
+    private static int rankOf(long entry, int age) {
+        if (entry == 0) {
+            return Integer.MAX_VALUE;
+        }
+
+        if (ageOf(entry) != age) {
+            return Integer.MAX_VALUE - 1;
+        }
+
+        return (int) (entry & VALUE_MASK);
+    }
+
+    /**
+     * 取出 slot 內容裡的世代。
+     *
+     * @param entry slot 的內容。
+     *
+     * @return int 世代。
+     */
+    private static int ageOf(long entry) {
+        return (int) ((entry >>> VALUE_BITS) & AGE_MASK);
+    }
+}
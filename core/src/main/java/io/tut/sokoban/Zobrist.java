@@ -0,0 +1,55 @@
+package io.tut.sokoban;
+
+/**
+ * Zobrist 雜湊的 _亂數鍵值_。每個格子各有一個 _箱子_ 鍵值和一個 _工人_ 鍵值；盤面的
+ * 雜湊值是所有箱子鍵值，再加上 (正規化後) 工人鍵值的 XOR。
+ *
+ * 鍵值由格子索引 _直接算出_ (SplitMix64)，不需要查表；同一個格子在任何 GameState 或
+ * 搜尋程式裡都得到相同的鍵值，不同來源的雜湊值因此可以直接比較。
+ */
+final class Zobrist {
+    private static final long SEED_BOX = 0x2545f4914f6cdd1dL;
+    private static final long SEED_MAN = 0x9e3779b97f4a7c15L;
+
+    /**
+     * 不需要建立物件。
+     */
+    private Zobrist() {
+    }
+
+    /**
+     * 傳回箱子在指定格子上的鍵值。
+     *
+     * @param cell 格子索引。
+     *
+     * @return long 鍵值。
+     */
+    static long boxKey(int cell) {
+        return mix(SEED_BOX + cell * 0x9e3779b97f4a7c15L);
+    }
+
+    /**
+     * 傳回工人在指定格子上的鍵值。
+     *
+     * @param cell 格子索引。
+     *
+     * @return long 鍵值。
+     */
+    static long manKey(int cell) {
+        return mix(SEED_MAN + cell * 0xbf58476d1ce4e5b9L);
+    }
+
+    /**
+     * SplitMix64 的混合函數。
+     *
+     * @param z 輸入值。
+     *
+     * @return long 混合後的值。
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+
+        return z ^ (z >>> 31);
+    }
+}
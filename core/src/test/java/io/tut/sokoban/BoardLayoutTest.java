@@ -0,0 +1,88 @@
+package io.tut.sokoban;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 扁平 (一維) 盤面：BoardLayout 的格子索引和鄰格，以及 GameState 由盤面讀回的 XSB 標記。
+ */
+public class BoardLayoutTest {
+    // 第 2, 3 列比較短，以 Sokoban.EMPTY 補齊
+    private static final String[] LEVEL = {
+            "#######",
+            "#.@$ *#",
+            "# $. #",
+            "######"
+    };
+
+    @Test
+    public void layout_mapsCellsAndNeighbours() {
+        BoardLayout layout = new BoardLayout(LEVEL);
+
+        assertEquals(4, layout.NUM_ROW);
+        assertEquals(7, layout.NUM_COLUMN);
+        assertEquals(28, layout.NUM_CELL);
+
+        int cell = layout.cellOf(3, 2);
+
+        assertEquals(3, layout.columnOf(cell));
+        assertEquals(2, layout.rowOf(cell));
+
+        assertEquals(layout.cellOf(2, 2), layout.neighbour(cell, BoardLayout.DIR_LEFT));
+        assertEquals(layout.cellOf(3, 1), layout.neighbour(cell, BoardLayout.DIR_UP));
+        assertEquals(layout.cellOf(4, 2), layout.neighbour(cell, BoardLayout.DIR_RIGHT));
+        assertEquals(layout.cellOf(3, 3), layout.neighbour(cell, BoardLayout.DIR_DOWN));
+
+        // 盤面邊緣沒有鄰格
+        assertEquals(BoardLayout.NO_CELL, layout.neighbour(layout.cellOf(0, 0), BoardLayout.DIR_LEFT));
+        assertEquals(BoardLayout.NO_CELL, layout.neighbour(layout.cellOf(6, 3), BoardLayout.DIR_DOWN));
+
+        assertEquals(3, layout.getGoalCount());
+        assertTrue(layout.isGoal(layout.cellOf(5, 1)));
+        assertFalse(layout.isWalkable(layout.cellOf(0, 1)));
+    }
+
+    @Test
+    public void labels_readBackTheLevel() {
+        GameState gameState = new GameState(LEVEL);
+
+        CharSequence[] rows = gameState.getLabelInCells();
+
+        assertEquals("#######", rows[0].toString());
+        assertEquals("#.@$ *#", rows[1].toString());
+        assertEquals("# $. #" + Sokoban.EMPTY, rows[2].toString());
+        assertEquals("######" + Sokoban.EMPTY, rows[3].toString());
+
+        assertEquals(2, gameState.getManColumn());
+        assertEquals(1, gameState.getManRow());
+
+        // 工人走到目標上
+        assertTrue(gameState.redoStep(Sokoban.MOVE_LEFT));
+
+        assertEquals(Sokoban.MAN_ON_GOAL, gameState.getLabel(1, 1));
+        assertEquals("#+ $ *#", rows[1].toString());
+    }
+
+    @Test
+    public void push_updatesLabelsAndDirtyCells() {
+        GameState gameState = new GameState(LEVEL);
+
+        CharSequence[] rows = gameState.getLabelInCells();
+
+        assertTrue(gameState.redoStep(Sokoban.PUSH_RIGHT));
+
+        assertEquals("#. @$*#", rows[1].toString());
+        assertTrue(gameState.isBoxAt(4, 1));
+        assertFalse(gameState.isBoxAt(3, 1));
+
+        // 工人原來的格子，工人的新格子，箱子的新格子
+        assertEquals(3, gameState.getDirtyCellCount());
+
+        gameState.clearDirtyCells();
+        gameState.undoStep();
+
+        assertEquals("#.@$ *#", rows[1].toString());
+        assertEquals(3, gameState.getDirtyCellCount());
+    }
+}
@@ -0,0 +1,64 @@
+package io.tut.sokoban;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 載入關卡時預先算出的 _死格_：角落，以及沒有目標的牆邊；箱子推進去之後盤面無解。
+ */
+public class DeadCellTest {
+    private static final String[] LEVEL = {
+            "######",
+            "#@   #",
+            "# $ .#",
+            "#    #",
+            "######"
+    };
+
+    @Test
+    public void corners_andWallsWithoutGoals_areDead() {
+        GameState gameState = new GameState(LEVEL);
+
+        // 角落
+        assertTrue(gameState.isDeadCell(1, 1));
+        assertTrue(gameState.isDeadCell(4, 1));
+        assertTrue(gameState.isDeadCell(1, 3));
+        assertTrue(gameState.isDeadCell(4, 3));
+
+        // 沒有目標的牆邊
+        assertTrue(gameState.isDeadCell(2, 1));
+        assertTrue(gameState.isDeadCell(1, 2));
+        assertTrue(gameState.isDeadCell(3, 3));
+
+        // 還推得到目標的格子，和目標本身
+        assertFalse(gameState.isDeadCell(2, 2));
+        assertFalse(gameState.isDeadCell(3, 2));
+        assertFalse(gameState.isDeadCell(4, 2));
+    }
+
+    @Test
+    public void pushAgainstAWallWithoutGoals_isDeadlockedUntilUndone() {
+        GameState gameState = new GameState(LEVEL);
+
+        for (char step : "ddrU".toCharArray()) {
+            assertTrue(gameState.redoStep(step));
+        }
+
+        assertTrue(gameState.isBoxAt(2, 1));
+        assertTrue(gameState.isDeadlocked());
+
+        gameState.setGameStatus(GameState.GAMING);
+        gameState.updateState();
+
+        assertEquals(GameState.DEADLOCKED, gameState.getGameStatus());
+        assertTrue(gameState.isPlaying());
+
+        // 無解只是警告，悔棋之後回到 GAMING
+        gameState.undoStep();
+        gameState.updateState();
+
+        assertFalse(gameState.isDeadlocked());
+        assertEquals(GameState.GAMING, gameState.getGameStatus());
+    }
+}
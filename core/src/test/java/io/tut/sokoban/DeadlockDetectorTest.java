@@ -0,0 +1,141 @@
+package io.tut.sokoban;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 每次推箱之後的 _凍結_ (freeze) 檢查：互相卡住，又不全在目標上的箱子讓盤面無解；
+ * 還解得開的盤面不能被誤判。
+ */
+public class DeadlockDetectorTest {
+    private static final String[] LEVEL = {
+            "########",
+            "#      #",
+            "# $$   #",
+            "# $ $@ #",
+            "#    ..#",
+            "#    ..#",
+            "########"
+    };
+
+    @Test
+    public void pushIntoATwoByTwoBlock_isDeadlockedUntilUndone() {
+        GameState gameState = new GameState(LEVEL);
+
+        assertFalse(gameState.isDeadlocked());
+        assertEquals(GameState.GAMING, checkedStatus(gameState));
+
+        // 第四個箱子補上 2x2 的空位
+        assertTrue(gameState.redoStep(Sokoban.PUSH_LEFT));
+
+        assertFalse(gameState.isDeadCell(3, 3));
+        assertTrue(gameState.isDeadlocked());
+        assertEquals(GameState.DEADLOCKED, checkedStatus(gameState));
+
+        // 悔棋之後盤面恢復，遊戲繼續
+        gameState.undoStep();
+        gameState.updateState();
+
+        assertFalse(gameState.isDeadlocked());
+        assertEquals(GameState.GAMING, gameState.getGameStatus());
+    }
+
+    @Test
+    public void frozenState_followsTheCursorThroughTheHistory() {
+        GameState gameState = new GameState(LEVEL);
+
+        assertTrue(gameState.redoStep(Sokoban.PUSH_LEFT));
+
+        // 凍結之後來回走動，超過一個 checkpoint
+        for (int i = 0; i < 2 * StepHistory.MIN_CHECKPOINT_INTERVAL; i++) {
+            assertTrue(gameState.redoStep((i % 2 == 0) ? Sokoban.MOVE_RIGHT : Sokoban.MOVE_LEFT));
+        }
+
+        gameState.jumpToStep(0);
+        assertFalse(gameState.isDeadlocked());
+
+        gameState.redoStep(Sokoban.REDO_STEP);
+        assertTrue(gameState.isDeadlocked());
+
+        // 從 checkpoint 還原
+        gameState.jumpToStep(StepHistory.MIN_CHECKPOINT_INTERVAL + 1);
+        assertTrue(gameState.isDeadlocked());
+
+        gameState.jumpToStep(1);
+        assertTrue(gameState.isDeadlocked());
+
+        gameState.undoStep();
+        assertFalse(gameState.isDeadlocked());
+
+        // 走了不同的一步，之後凍結的步驟都捨棄了
+        assertTrue(gameState.redoStep(Sokoban.MOVE_UP));
+        assertFalse(gameState.isDeadlocked());
+
+        gameState.undoStep();
+        assertFalse(gameState.isDeadlocked());
+    }
+
+    @Test
+    public void solvablePosition_keepsGaming() {
+        GameState gameState = new GameState(LEVEL);
+
+        // 把右邊的箱子推到目標上
+        for (char step : "ulDldR".toCharArray()) {
+            assertTrue(gameState.redoStep(step));
+        }
+
+        assertFalse(gameState.isDeadlocked());
+        assertEquals(GameState.GAMING, checkedStatus(gameState));
+    }
+
+    @Test
+    public void frozenBoxesOnGoals_areNotADeadlock() {
+        GameState gameState = new GameState(new String[] {
+                "######",
+                "#**  #",
+                "#  $.#",
+                "#@   #",
+                "######"
+        });
+
+        assertFalse(gameState.isDeadlocked());
+        assertEquals(GameState.GAMING, checkedStatus(gameState));
+
+        for (char step : "urR".toCharArray()) {
+            assertTrue(gameState.redoStep(step));
+        }
+
+        assertEquals(GameState.SOLVED, checkedStatus(gameState));
+    }
+
+    @Test
+    public void quitting_isNotUndoneByUpdateState() {
+        GameState gameState = new GameState(LEVEL);
+
+        assertTrue(gameState.redoStep(Sokoban.PUSH_LEFT));
+
+        // 玩家認輸
+        gameState.setGameStatus(GameState.STUCK);
+
+        gameState.undoStep();
+        gameState.updateState();
+
+        assertEquals(GameState.STUCK, gameState.getGameStatus());
+        assertFalse(gameState.isPlaying());
+    }
+
+    /**
+     * 以遊戲中的狀態檢查盤面。
+     *
+     * @param gameState 遊戲盤面。
+     *
+     * @return int updateState() 之後的遊戲狀態。
+     */
+    private static int checkedStatus(GameState gameState) {
+        gameState.setGameStatus(GameState.GAMING);
+        gameState.updateState();
+
+        return gameState.getGameStatus();
+    }
+}
@@ -0,0 +1,92 @@
+package io.tut.sokoban;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 在目標上的箱子數：推箱，悔棋，覆棋時逐步增減，updateState() 只靠它判斷是否解開。
+ */
+public class GoalCounterTest {
+    private static final String[] LEVEL = {
+            "########",
+            "#@$ .  #",
+            "#   *  #",
+            "#      #",
+            "########"
+    };
+
+    @Test
+    public void pushOntoTheLastGoal_solvesTheLevel() {
+        GameState gameState = new GameState(LEVEL);
+
+        assertEquals(GameState.GAMING, checkedStatus(gameState));
+
+        assertTrue(gameState.redoStep(Sokoban.PUSH_RIGHT));
+
+        assertEquals(GameState.GAMING, checkedStatus(gameState));
+
+        assertTrue(gameState.redoStep(Sokoban.PUSH_RIGHT));
+
+        assertEquals(Sokoban.BOX_ON_GOAL, gameState.getLabel(4, 1));
+        assertEquals(GameState.SOLVED, checkedStatus(gameState));
+    }
+
+    @Test
+    public void pushOffAGoal_andUndo_updateTheCount() {
+        GameState gameState = new GameState(LEVEL);
+
+        assertTrue(gameState.redoStep(Sokoban.PUSH_RIGHT));
+        assertTrue(gameState.redoStep(Sokoban.PUSH_RIGHT));
+        assertTrue(gameState.redoStep(Sokoban.PUSH_RIGHT));
+
+        // 推過了目標
+        assertEquals(GameState.GAMING, checkedStatus(gameState));
+
+        gameState.undoStep();
+
+        assertEquals(GameState.SOLVED, checkedStatus(gameState));
+
+        gameState.undoStep();
+
+        assertEquals(GameState.GAMING, checkedStatus(gameState));
+
+        gameState.redoStep(Sokoban.REDO_STEP);
+
+        assertEquals(2, gameState.getStepCount());
+        assertEquals(GameState.SOLVED, checkedStatus(gameState));
+    }
+
+    @Test
+    public void boxesStartingOnGoals_areCounted() {
+        GameState gameState = new GameState(new String[] {
+                "######",
+                "#@*  #",
+                "######"
+        });
+
+        assertEquals(GameState.SOLVED, checkedStatus(gameState));
+
+        assertTrue(gameState.redoStep(Sokoban.PUSH_RIGHT));
+
+        assertEquals(GameState.GAMING, checkedStatus(gameState));
+
+        gameState.undoStep();
+
+        assertEquals(GameState.SOLVED, checkedStatus(gameState));
+    }
+
+    /**
+     * 以遊戲中的狀態檢查盤面。
+     *
+     * @param gameState 遊戲盤面。
+     *
+     * @return int updateState() 之後的遊戲狀態。
+     */
+    private static int checkedStatus(GameState gameState) {
+        gameState.setGameStatus(GameState.GAMING);
+        gameState.updateState();
+
+        return gameState.getGameStatus();
+    }
+}
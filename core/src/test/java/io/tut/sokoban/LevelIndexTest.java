@@ -0,0 +1,156 @@
+package io.tut.sokoban;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+/**
+ * LevelIndex 索引檔：寫入之後開啟的內容與掃描結果相同；版本 (stamp) 不同，或檔案不完整
+ * 時不能開啟，load() 重新掃描關卡集並重建索引。
+ */
+public class LevelIndexTest {
+    private static final String PACK = ""
+            + "First\n"
+            + "#####\n"
+            + "#@$.#\n"
+            + "#####\n"
+            + "\n"
+            + "Second\n"
+            + "######\n"
+            + "#@ $.#\n"
+            + "# $. #\n"
+            + "######\n";
+
+    private static final long STAMP = 42L;
+
+    private File mFile;
+
+    private int mOpens;
+
+    private final LevelPack.Source mSource = new LevelPack.Source() {
+        @Override
+        public InputStream open() {
+            mOpens++;
+
+            return new ByteArrayInputStream(PACK.getBytes(Charset.forName("UTF-8")));
+        }
+    };
+
+    @Before
+    public void createFile() throws IOException {
+        mFile = File.createTempFile("levels", ".idx");
+    }
+
+    @After
+    public void deleteFile() {
+        mFile.delete();
+    }
+
+    @Test
+    public void writeThenOpen_keepsTheScan() throws IOException {
+        LevelPack pack = new LevelPack(mSource);
+
+        LevelIndex.write(mFile, STAMP, pack);
+
+        LevelIndex index = LevelIndex.open(mFile, STAMP);
+
+        assertNotNull(index);
+        assertEquals(pack.size(), index.size());
+
+        for (int i = 0; i < pack.size(); i++) {
+            assertEquals(pack.getOffset(i), index.getOffset(i));
+            assertEquals(pack.getLength(i), index.getLength(i));
+            assertEquals(pack.getWidth(i), index.getWidth(i));
+            assertEquals(pack.getHeight(i), index.getHeight(i));
+            assertEquals(pack.getBoxCount(i), index.getBoxCount(i));
+            assertEquals(pack.getGoalCount(i), index.getGoalCount(i));
+            assertEquals(pack.getHash(i), index.getHash(i));
+        }
+
+        // 以索引讀到的盤面和直接解析的相同
+        assertArrayEquals(pack.getLevel(1), LevelPack.readLevel(mSource, index.getOffset(1), index.getLength(1)));
+    }
+
+    @Test
+    public void load_reusesAValidIndex() throws IOException {
+        LevelIndex.load(mFile, STAMP, mSource);
+
+        assertEquals(1, mOpens);
+
+        LevelIndex index = LevelIndex.load(mFile, STAMP, mSource);
+
+        // 沒有重新掃描關卡集
+        assertEquals(1, mOpens);
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void staleStamp_isRebuilt() throws IOException {
+        LevelIndex.write(mFile, STAMP, new LevelPack(mSource));
+
+        assertNull(LevelIndex.open(mFile, STAMP + 1));
+
+        mOpens = 0;
+
+        LevelIndex index = LevelIndex.load(mFile, STAMP + 1, mSource);
+
+        assertEquals(1, mOpens);
+        assertEquals(2, index.size());
+
+        // 新的索引以新的版本寫入
+        assertNotNull(LevelIndex.open(mFile, STAMP + 1));
+        assertNull(LevelIndex.open(mFile, STAMP));
+    }
+
+    @Test
+    public void truncatedFile_isRebuilt() throws IOException {
+        LevelIndex.write(mFile, STAMP, new LevelPack(mSource));
+
+        long length = mFile.length();
+
+        // 少了最後一筆記錄的一部分
+        truncate(mFile, length - 8);
+
+        assertNull(LevelIndex.open(mFile, STAMP));
+
+        // 連檔頭都不完整
+        truncate(mFile, 10);
+
+        assertNull(LevelIndex.open(mFile, STAMP));
+
+        mOpens = 0;
+
+        LevelIndex index = LevelIndex.load(mFile, STAMP, mSource);
+
+        assertEquals(1, mOpens);
+        assertEquals(2, index.size());
+        assertEquals(length, mFile.length());
+    }
+
+    @Test
+    public void missingFile_isNotAnIndex() throws IOException {
+        mFile.delete();
+
+        assertNull(LevelIndex.open(mFile, STAMP));
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        try {
+            raf.setLength(length);
+        }
+        finally {
+            raf.close();
+        }
+    }
+}
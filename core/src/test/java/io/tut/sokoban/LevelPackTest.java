@@ -0,0 +1,184 @@
+package io.tut.sokoban;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+/**
+ * LevelPack 掃描和解析 XSB (或 SOK) 格式的關卡集：標題，註解，長短不一的列，牆外的空白，
+ * 連續字元壓縮和 '|' 分隔的列，以及一個關卡集裡的好幾個關卡。
+ */
+public class LevelPackTest {
+    private static final String PACK = ""
+            + "; 測試用的關卡集\n"
+            + ";\n"
+            + "\n"
+            + "First\n"
+            + "#####\n"
+            + "#@$.#\n"
+            + "#####\n"
+            + "Author: somebody\n"
+            + "\n"
+            + "; 兩個關卡之間的註解\n"
+            + "\n"
+            // 長短不一的列，和兩種牆外的空白
+            + "--####\n"
+            + "__#  #\n"
+            + "###$ #\n"
+            + "#@ .#\n"
+            + "#####   \n"
+            + "Title: Ragged\n"
+            + "\n"
+            + "7#|#@2 $.#|7#\n"
+            + "Title: Run length\n"
+            + "\n"
+            + "XSokoban 1\n"
+            + "    #####\n"
+            + "    #   #\n"
+            + "    #$  #\n"
+            + "  ###  $##\n"
+            + "  #  $ $ #\n"
+            + "### # ## #   ######\n"
+            + "#   # ## #####  ..#\n"
+            + "# $  $          ..#\n"
+            + "##### ### #@##  ..#\n"
+            + "    #     #########\n"
+            + "    #######\n"
+            + "Solution: 3ul\n";
+
+    @Test
+    public void everyBoard_isALevel() throws IOException {
+        LevelPack pack = newPack(PACK);
+
+        assertEquals(4, pack.size());
+
+        assertEquals(5, pack.getWidth(0));
+        assertEquals(3, pack.getHeight(0));
+        assertEquals(1, pack.getBoxCount(0));
+        assertEquals(1, pack.getGoalCount(0));
+
+        assertEquals(6, pack.getWidth(1));
+        assertEquals(5, pack.getHeight(1));
+
+        assertEquals(7, pack.getWidth(2));
+        assertEquals(3, pack.getHeight(2));
+
+        assertEquals(19, pack.getWidth(3));
+        assertEquals(11, pack.getHeight(3));
+        assertEquals(6, pack.getBoxCount(3));
+        assertEquals(6, pack.getGoalCount(3));
+    }
+
+    @Test
+    public void titles_comeBeforeOrAfterTheBoard() throws IOException {
+        LevelPack pack = newPack(PACK);
+
+        // 盤面之前的文字；之後的 Author: 不是標題
+        assertEquals("First", pack.getTitle(0));
+
+        // 盤面之後的 Title:
+        assertEquals("Ragged", pack.getTitle(1));
+        assertEquals("Run length", pack.getTitle(2));
+
+        assertEquals("XSokoban 1", pack.getTitle(3));
+    }
+
+    @Test
+    public void comments_areNotTitles() throws IOException {
+        LevelPack pack = newPack("; 註解\n#####\n#@$.#\n#####\n");
+
+        assertEquals(1, pack.size());
+        assertNull(pack.getTitle(0));
+    }
+
+    @Test
+    public void raggedRows_keepTheirEmptyMarks() throws IOException {
+        LevelPack pack = newPack(PACK);
+
+        // 列尾的空白去掉，'-' 和 '_' 保留
+        assertArrayEquals(new String[] {
+                "--####",
+                "__#  #",
+                "###$ #",
+                "#@ .#",
+                "#####"
+        }, pack.getLevel(1));
+
+        // 短的列以牆外的空白補齊
+        GameState gameState = new GameState(pack.getLevel(1));
+
+        assertEquals(Sokoban.EMPTY, gameState.getLabel(5, 3));
+        assertEquals(Sokoban.GOAL, gameState.getLabel(3, 3));
+    }
+
+    @Test
+    public void runLengthAndBarRows_areExpanded() throws IOException {
+        LevelPack pack = newPack(PACK);
+
+        assertArrayEquals(new String[] {
+                "#######",
+                "#@  $.#",
+                "#######"
+        }, pack.getLevel(2));
+    }
+
+    @Test
+    public void floorOutsideAConcaveOutline_isEmpty() throws IOException {
+        LevelPack pack = newPack(PACK);
+
+        String[] level = pack.getLevel(3);
+
+        // 第 5 列 "### # ## #   ######" 的第 10 到 12 行在外牆外面
+        assertEquals("### # ## #---######", level[5]);
+
+        assertEquals("----#####", level[0]);
+        assertEquals("----#   #", level[1]);
+
+        // 牆裡面的地板不變
+        assertEquals("#   # ## #####  ..#", level[6]);
+        assertEquals("----#     #########", level[9]);
+
+        GameState gameState = new GameState(level);
+
+        assertEquals(6, gameState.snapshot().getBoxCount());
+        assertEquals(Sokoban.EMPTY, gameState.getLabel(11, 5));
+        assertEquals(Sokoban.FLOOR, gameState.getLabel(5, 9));
+    }
+
+    @Test
+    public void boardsWithoutAMan_onlyLoseTheirLeadingSpaces() {
+        byte[] data = "  ###\n  # #  #\n  ###\n".getBytes(Charset.forName("UTF-8"));
+
+        assertArrayEquals(new String[] {
+                "--###",
+                "--# #  #",
+                "--###"
+        }, LevelPack.parseBoard(data, data.length));
+    }
+
+    @Test
+    public void solutions_followTheirBoard() throws IOException {
+        LevelPack pack = newPack(PACK);
+
+        assertFalse(pack.hasSolution(0));
+        assertTrue(pack.hasSolution(3));
+
+        assertEquals("uuul", pack.getSolution(3));
+    }
+
+    private static LevelPack newPack(String text) throws IOException {
+        final byte[] data = text.getBytes(Charset.forName("UTF-8"));
+
+        return new LevelPack(new LevelPack.Source() {
+            @Override
+            public InputStream open() {
+                return new ByteArrayInputStream(data);
+            }
+        });
+    }
+}
@@ -0,0 +1,164 @@
+package io.tut.sokoban;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * MatchingLowerBound 的最小成本配對，必須等於窮舉所有箱子與目標配對的最小值。
+ */
+public class MatchingLowerBoundTest {
+    private static final String[] LEVEL = {
+            "#########",
+            "#       #",
+            "#  .  . #",
+            "#   #   #",
+            "# .   . #",
+            "#       #",
+            "#########"
+    };
+
+    private static final int TRIALS = 500;
+
+    private final BoardLayout mLayout = new BoardLayout(LEVEL);
+    private final PushDistances mDistances = new PushDistances(mLayout);
+
+    @Test
+    public void boxesOnGoals_costNothing() {
+        MatchingLowerBound bound = new MatchingLowerBound(mLayout, mDistances);
+
+        int[] boxes = new int[mLayout.getGoalCount()];
+
+        // 故意以相反的順序放
+        for (int i = 0; i < boxes.length; i++) {
+            boxes[i] = mLayout.getGoalCell(boxes.length - 1 - i);
+        }
+
+        assertEquals(0, bound.load(boxes));
+        assertEquals(0, bound.bound());
+
+        // 角落 (死格) 上的箱子推不到任何目標
+        boxes[0] = mLayout.cellOf(1, 1);
+
+        assertEquals(PushDistances.INFINITE, bound.load(boxes));
+    }
+
+    @Test
+    public void load_matchesBruteForce() {
+        MatchingLowerBound bound = new MatchingLowerBound(mLayout, mDistances);
+
+        Random random = new Random(7);
+
+        for (int n = 0; n < TRIALS; n++) {
+            int[] boxes = randomBoxes(random);
+
+            assertEquals(bruteForce(boxes), bound.load(boxes));
+        }
+    }
+
+    @Test
+    public void evaluate_matchesBruteForce_andKeepsTheLoadedBound() {
+        MatchingLowerBound bound = new MatchingLowerBound(mLayout, mDistances);
+
+        Random random = new Random(11);
+
+        for (int n = 0; n < TRIALS; n++) {
+            int[] boxes = randomBoxes(random);
+            int loaded = bound.load(boxes);
+
+            int box = random.nextInt(boxes.length);
+
+            // 偶爾移到死格，配對不存在
+            int cell = randomFreeCell(random, boxes, random.nextInt(4) == 0);
+
+            int[] moved = boxes.clone();
+
+            moved[box] = cell;
+
+            assertEquals(bruteForce(moved), bound.evaluate(box, cell));
+            assertEquals(loaded, bound.bound());
+        }
+    }
+
+    /**
+     * 隨機選出和目標一樣多個、不重覆，而且不是死格的格子放箱子。
+     *
+     * @param random 亂數。
+     *
+     * @return int[] 箱子位置。
+     */
+    private int[] randomBoxes(Random random) {
+        int[] boxes = new int[mLayout.getGoalCount()];
+
+        for (int i = 0; i < boxes.length; i++) {
+            boxes[i] = BoardLayout.NO_CELL;
+        }
+
+        for (int i = 0; i < boxes.length; i++) {
+            boxes[i] = randomFreeCell(random, boxes, false);
+        }
+
+        return boxes;
+    }
+
+    private int randomFreeCell(Random random, int[] boxes, boolean dead) {
+        while (true) {
+            int cell = random.nextInt(mLayout.NUM_CELL);
+
+            if (mLayout.isWalkable(cell) && (mLayout.isDeadCell(cell) == dead) && !contains(boxes, cell)) {
+                return cell;
+            }
+        }
+    }
+
+    private static boolean contains(int[] cells, int cell) {
+        for (int c : cells) {
+            if (c == cell) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * 窮舉箱子與目標的所有配對，傳回推箱距離總和的最小值。
+     *
+     * @param boxes 箱子位置。
+     *
+     * @return int 最小值；沒有每個箱子都到得了的配對時傳回 PushDistances.INFINITE。
+     */
+    private int bruteForce(int[] boxes) {
+        return bruteForce(boxes, 0, new boolean[boxes.length]);
+    }
+
+    private int bruteForce(int[] boxes, int box, boolean[] used) {
+        if (box == boxes.length) {
+            return 0;
+        }
+
+        int best = PushDistances.INFINITE;
+
+        for (int goal = 0; goal < boxes.length; goal++) {
+            int distance = mDistances.distance(goal, boxes[box]);
+
+            if (used[goal] || (distance == PushDistances.INFINITE)) {
+                continue;
+            }
+
+            used[goal] = true;
+
+            int rest = bruteForce(boxes, box + 1, used);
+
+            used[goal] = false;
+
+            if (rest != PushDistances.INFINITE) {
+                best = Math.min(best, distance + rest);
+            }
+        }
+
+        return best;
+    }
+}
@@ -0,0 +1,174 @@
+package io.tut.sokoban;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import static org.junit.Assert.*;
+
+/**
+ * GameState.pushBoxTo() (PushPlanner)：把一個箱子推到指定的格子，推箱次數最少。
+ */
+public class PushPlannerTest {
+    private static final String[] LEVEL = {
+            "#########",
+            "#       #",
+            "#       #",
+            "# @$ #  #",
+            "#    #  #",
+            "#   .   #",
+            "#########"
+    };
+
+    private static final int BOX_COLUMN = 3;
+    private static final int BOX_ROW = 3;
+
+    @Test
+    public void pushAroundAWall_takesTheFewestPushes() {
+        GameState gameState = new GameState(LEVEL);
+
+        // 往上，往右三次，再往下；牆擋住了直接往右的路
+        String steps = gameState.pushBoxTo(BOX_COLUMN, BOX_ROW, 6, 3);
+
+        assertNotNull(steps);
+        assertEquals(5, countPushes(steps));
+        assertEquals(steps.length(), gameState.getStepCount());
+
+        assertTrue(gameState.isBoxAt(6, 3));
+        assertFalse(gameState.isBoxAt(BOX_COLUMN, BOX_ROW));
+    }
+
+    @Test
+    public void impossibleTargets_returnNull() {
+        GameState gameState = new GameState(LEVEL);
+
+        assertNull(gameState.pushBoxTo(BOX_COLUMN, BOX_ROW, 5, 3));
+        assertNull(gameState.pushBoxTo(2, 3, 4, 3));
+        assertNull(gameState.pushBoxTo(BOX_COLUMN, BOX_ROW, 9, 3));
+
+        assertEquals(0, gameState.getStepCount());
+    }
+
+    @Test
+    public void everyCell_matchesAPushSpaceSearch() {
+        GameState initial = new GameState(LEVEL);
+
+        int[] pushes = pushesFrom(initial);
+
+        for (int r = 0; r < initial.NUM_ROW; r++) {
+            for (int c = 0; c < initial.NUM_COLUMN; c++) {
+                if ((c == BOX_COLUMN) && (r == BOX_ROW)) {
+                    continue;
+                }
+
+                int expected = pushes[r * initial.NUM_COLUMN + c];
+
+                GameState gameState = new GameState(LEVEL);
+
+                String where = "(" + c + ", " + r + ")";
+
+                if (expected < 0) {
+                    // 牆，或推不到的格子
+                    assertNull(where, gameState.pushBoxTo(BOX_COLUMN, BOX_ROW, c, r));
+
+                    continue;
+                }
+
+                String steps = gameState.pushBoxTo(BOX_COLUMN, BOX_ROW, c, r);
+
+                assertNotNull(where, steps);
+                assertEquals(where, expected, countPushes(steps));
+                assertTrue(where, gameState.isBoxAt(c, r));
+            }
+        }
+    }
+
+    private static int countPushes(String steps) {
+        int pushes = 0;
+
+        for (int i = 0; i < steps.length(); i++) {
+            if (Character.isUpperCase(steps.charAt(i))) {
+                pushes++;
+            }
+        }
+
+        return pushes;
+    }
+
+    /**
+     * 以 (箱子位置, 工人位置) 為狀態另外做一次 0-1 BFS：走路不算，推箱算一次；算出
+     * 箱子推到每個格子最少要推幾次。盤面上只有一個箱子。
+     *
+     * @param gameState 遊戲盤面。
+     *
+     * @return int[] 每個格子 (row * NUM_COLUMN + column) 的推箱次數；推不到的是 -1。
+     */
+    private static int[] pushesFrom(GameState gameState) {
+        int numColumn = gameState.NUM_COLUMN;
+        int numCell = gameState.NUM_ROW * numColumn;
+
+        boolean[] open = new boolean[numCell];
+
+        for (int cell = 0; cell < numCell; cell++) {
+            open[cell] = gameState.getLabel(cell % numColumn, cell / numColumn) != Sokoban.WALL;
+        }
+
+        int[] costs = new int[numCell * numCell];
+
+        Arrays.fill(costs, Integer.MAX_VALUE);
+
+        int start = BOX_ROW * numColumn + BOX_COLUMN;
+        int man = gameState.getManRow() * numColumn + gameState.getManColumn();
+
+        Deque<Integer> deque = new ArrayDeque<>();
+
+        costs[start * numCell + man] = 0;
+        deque.add(start * numCell + man);
+
+        int[] offsets = {-1, -numColumn, 1, numColumn};
+
+        while (!deque.isEmpty()) {
+            int state = deque.poll();
+            int box = state / numCell;
+            int cell = state % numCell;
+            int cost = costs[state];
+
+            for (int offset : offsets) {
+                int next = cell + offset;
+
+                if (!open[next]) {
+                    continue;
+                }
+
+                if (next != box) {
+                    // 走路
+                    if (cost < costs[box * numCell + next]) {
+                        costs[box * numCell + next] = cost;
+                        deque.addFirst(box * numCell + next);
+                    }
+                }
+                else if (open[box + offset] && (cost + 1 < costs[(box + offset) * numCell + box])) {
+                    // 推箱
+                    costs[(box + offset) * numCell + box] = cost + 1;
+                    deque.addLast((box + offset) * numCell + box);
+                }
+            }
+        }
+
+        int[] pushes = new int[numCell];
+
+        Arrays.fill(pushes, -1);
+
+        for (int state = 0; state < costs.length; state++) {
+            int box = state / numCell;
+
+            if ((costs[state] != Integer.MAX_VALUE) && ((pushes[box] < 0) || (costs[state] < pushes[box]))) {
+                pushes[box] = costs[state];
+            }
+        }
+
+        return pushes;
+    }
+}
@@ -0,0 +1,145 @@
+package io.tut.sokoban;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * PushSolver 的最少推箱次數，無解的盤面，節點數和時間的上限，和 cancel()。
+ */
+public class PushSolverTest {
+    private static final String[] TWO_BOXES = {
+            "######",
+            "#@$ .#",
+            "#  $.#",
+            "######"
+    };
+
+    // XSokoban #1：最少 97 次推箱
+    private static final String[] XSOKOBAN_1 = {
+            "    #####",
+            "    #   #",
+            "    #$  #",
+            "  ###  $##",
+            "  #  $ $ #",
+            "### # ## #   ######",
+            "#   # ## #####  ..#",
+            "# $  $          ..#",
+            "##### ### #@##  ..#",
+            "    #     #########",
+            "    #######"
+    };
+
+    private static final long NODE_BUDGET = 10000000L;
+    private static final long TIME_BUDGET_MILLIS = 60000L;
+
+    @Test
+    public void smallLevels_solvedWithFewestPushes() {
+        assertOptimal(new String[]{"#####", "#@$.#", "#####"}, 1);
+        assertOptimal(new String[]{"######", "#@$ .#", "######"}, 2);
+        assertOptimal(TWO_BOXES, 3);
+    }
+
+    @Test
+    public void solvedStart_needsNoPushes() {
+        SolverResult result = solve(new String[]{"####", "#@*#", "####"}, NODE_BUDGET, TIME_BUDGET_MILLIS);
+
+        assertEquals(SolverResult.SOLVED, result.getStatus());
+        assertEquals("", result.getSolution());
+    }
+
+    @Test
+    public void xsokoban1_solvedWithFewestPushes() {
+        assertOptimal(XSOKOBAN_1, 97);
+    }
+
+    @Test
+    public void boxAndGoalCountsDiffer_isUnsolvable() {
+        SolverResult result = solve(new String[]{"######", "#@$..#", "######"}, NODE_BUDGET, TIME_BUDGET_MILLIS);
+
+        assertEquals(SolverResult.UNSOLVABLE, result.getStatus());
+        assertNull(result.getSolution());
+        assertEquals(-1, result.getPushCount());
+    }
+
+    @Test
+    public void deadStart_isUnsolvable() {
+        // 箱子在角落 (死格)，推不到目標
+        SolverResult result = solve(new String[]{"######", "#$ @.#", "######"}, NODE_BUDGET, TIME_BUDGET_MILLIS);
+
+        assertEquals(SolverResult.UNSOLVABLE, result.getStatus());
+        assertNull(result.getSolution());
+    }
+
+    @Test
+    public void nodeBudget_stopsTheSearch() {
+        SolverResult result = solve(XSOKOBAN_1, 100, TIME_BUDGET_MILLIS);
+
+        assertEquals(SolverResult.NODE_LIMIT, result.getStatus());
+        assertNull(result.getSolution());
+        assertTrue(result.getNodes() <= 100);
+    }
+
+    @Test
+    public void timeBudget_stopsTheSearch() {
+        // 時間在每展開 TIME_CHECK_INTERVAL 個節點時檢查；上限 0 時第一次檢查就停止
+        SolverResult result = solve(XSOKOBAN_1, NODE_BUDGET, 0);
+
+        assertEquals(SolverResult.TIME_LIMIT, result.getStatus());
+        assertNull(result.getSolution());
+    }
+
+    @Test
+    public void cancel_stopsTheSearch() {
+        PushSolver solver = new PushSolver(new GameState(XSOKOBAN_1).snapshot(), NODE_BUDGET, TIME_BUDGET_MILLIS);
+
+        solver.cancel();
+
+        SolverResult result = solver.call();
+
+        assertEquals(SolverResult.CANCELLED, result.getStatus());
+        assertNull(result.getSolution());
+    }
+
+    @Test
+    public void cancel_fromAnotherThread() throws Exception {
+        final PushSolver solver = new PushSolver(new GameState(XSOKOBAN_1).snapshot(), Long.MAX_VALUE, TIME_BUDGET_MILLIS);
+        final SolverResult[] result = new SolverResult[1];
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                result[0] = solver.call();
+            }
+        });
+
+        thread.start();
+
+        solver.cancel();
+
+        thread.join(TIME_BUDGET_MILLIS);
+
+        // 太快解開時也接受 SOLVED；但不能一直跑下去
+        assertFalse(thread.isAlive());
+        assertTrue(
+            (result[0].getStatus() == SolverResult.CANCELLED) || (result[0].getStatus() == SolverResult.SOLVED)
+        );
+    }
+
+    private static void assertOptimal(String[] level, int pushes) {
+        SolverResult result = solve(level, NODE_BUDGET, TIME_BUDGET_MILLIS);
+
+        assertEquals(SolverResult.SOLVED, result.getStatus());
+        assertEquals(pushes, result.getPushCount());
+
+        // 解答必須可以在 GameState 上重播到解開
+        ReplayResult replay = SolutionVerifier.replay(level, result.getSolution());
+
+        assertTrue(replay.toString(), replay.isSolved());
+        assertEquals(pushes, replay.getPushCount());
+    }
+
+    private static SolverResult solve(String[] level, long nodeBudget, long timeBudgetMillis) {
+        return new PushSolver(new GameState(level).snapshot(), nodeBudget, timeBudgetMillis).call();
+    }
+}
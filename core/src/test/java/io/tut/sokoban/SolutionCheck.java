@@ -0,0 +1,86 @@
+package io.tut.sokoban;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * 以 SolutionVerifier 檢查關卡集檔案 (XSB/SOK) 裡記錄的所有解答；修改遊戲引擎之後的
+ * 回歸檢查。印出不合法或沒有解開的解答，以及總數和耗時；有任何失敗時以 1 結束。
+ *
+ * 不是單元測試；在開發機 (host) 上直接執行 main()，例如：
+ *
+ *     java -cp <test classes>:<classes> io.tut.sokoban.SolutionCheck <pack.sok> [threads]
+ */
+public class SolutionCheck {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: SolutionCheck <pack> [threads]");
+
+            System.exit(2);
+        }
+
+        int threads = (args.length > 1)
+            ? Integer.parseInt(args[1])
+            : Runtime.getRuntime().availableProcessors();
+
+        // 整個檔案讀進記憶體，每個關卡不必再開一次檔案
+        final byte[] data = readFile(new File(args[0]));
+
+        LevelPack pack = new LevelPack(new LevelPack.Source() {
+            @Override
+            public InputStream open() {
+                return new ByteArrayInputStream(data);
+            }
+        });
+
+        long start = System.nanoTime();
+
+        ReplayResult[] results = new SolutionVerifier(pack, threads).verify();
+
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        int checked = 0;
+        int failed = 0;
+
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                continue;
+            }
+
+            checked++;
+
+            if (!results[i].isSolved()) {
+                failed++;
+
+                String title = pack.getTitle(i);
+
+                System.out.println("level " + (i + 1) + ((title != null) ? " (" + title + ")" : "") + ": " + results[i]);
+            }
+        }
+
+        System.out.println(
+            results.length + " levels, " + checked + " solutions, " + failed + " failed, "
+            + millis + " ms, " + threads + " threads"
+        );
+
+        System.exit((failed > 0) ? 1 : 0);
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+
+        try {
+            byte[] data = new byte[(int) in.length()];
+
+            in.readFully(data);
+
+            return data;
+        }
+        finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package io.tut.sokoban;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * SolutionVerifier 的重播，和 LevelPack 記錄的解答。
+ */
+public class SolutionVerifierTest {
+    private static final String[] LEVEL = {
+            "######",
+            "#@$ .#",
+            "#  $.#",
+            "######"
+    };
+
+    private static final String PACK =
+            "; 測試用的關卡集\n"
+            + "Level 1\n"
+            + "######\n"
+            + "#@$ .#\n"
+            + "#  $.#\n"
+            + "######\n"
+            + "Title: Two boxes\n"
+            + "Solution (moves 5, pushes 3):\n"
+            + "RR\r\n"
+            + "ldR\n"
+            + "\n"
+            + "Level 2\n"
+            + "#####\n"
+            + "#@$.#\n"
+            + "#####\n"
+            + "Solution: 2R\n"
+            + "\n"
+            + "Level 3\n"
+            + "#####\n"
+            + "#@$.#\n"
+            + "#####\n";
+
+    @Test
+    public void replay_solvesTheLevel() {
+        ReplayResult result = SolutionVerifier.replay(LEVEL, "RRldR");
+
+        assertTrue(result.isSolved());
+        assertEquals(-1, result.getIllegalStep());
+        assertEquals(5, result.getMoveCount());
+        assertEquals(3, result.getPushCount());
+    }
+
+    @Test
+    public void replay_reportsUnsolved() {
+        ReplayResult result = SolutionVerifier.replay(LEVEL, "RR");
+
+        assertFalse(result.isSolved());
+        assertEquals(-1, result.getIllegalStep());
+        assertEquals(2, result.getMoveCount());
+    }
+
+    @Test
+    public void replay_stopsAtFirstIllegalStep() {
+        // 箱子已經頂到牆
+        ReplayResult pushed = SolutionVerifier.replay(LEVEL, "RRRldR");
+
+        assertFalse(pushed.isSolved());
+        assertEquals(2, pushed.getIllegalStep());
+        assertEquals(2, pushed.getMoveCount());
+        assertEquals(2, pushed.getPushCount());
+
+        // 小寫是移動，不能推箱
+        assertEquals(0, SolutionVerifier.replay(LEVEL, "r").getIllegalStep());
+
+        // 不是 LURD 的字元
+        assertEquals(1, SolutionVerifier.replay(LEVEL, "R.R").getIllegalStep());
+    }
+
+    @Test
+    public void levelPack_collectsSolutions() throws IOException {
+        LevelPack pack = newPack();
+
+        assertEquals(3, pack.size());
+        assertEquals("Two boxes", pack.getTitle(0));
+        assertEquals("Level 2", pack.getTitle(1));
+
+        assertEquals("RRldR", pack.getSolution(0));
+        assertEquals("RR", pack.getSolution(1));
+
+        assertFalse(pack.hasSolution(2));
+        assertNull(pack.getSolution(2));
+    }
+
+    @Test
+    public void verify_checksEverySolution() throws Exception {
+        ReplayResult[] results = new SolutionVerifier(newPack(), 2).verify();
+
+        assertEquals(3, results.length);
+
+        assertTrue(results[0].isSolved());
+        assertEquals(1, results[1].getIllegalStep());
+        assertNull(results[2]);
+    }
+
+    private static LevelPack newPack() throws IOException {
+        final byte[] data = PACK.getBytes("UTF-8");
+
+        return new LevelPack(new LevelPack.Source() {
+            @Override
+            public InputStream open() {
+                return new ByteArrayInputStream(data);
+            }
+        });
+    }
+}
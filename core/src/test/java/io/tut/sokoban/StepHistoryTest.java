@@ -0,0 +1,218 @@
+package io.tut.sokoban;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * StepHistory 的悔棋，覆棋，和 checkpoint；以及 GameState.jumpToStep() 跳到的盤面必須和
+ * 逐步悔棋，覆棋的結果相同。
+ */
+public class StepHistoryTest {
+    private static final String[] LEVEL = {
+            "##########",
+            "#@       #",
+            "# $ $ $  #",
+            "#  . .   #",
+            "# $ $ .  #",
+            "#  . .   #",
+            "#   .  $ #",
+            "#        #",
+            "##########"
+    };
+
+    @Test
+    public void history_movesTheCursorWithoutLosingSteps() {
+        StepHistory history = new StepHistory(1);
+
+        for (char step : "lURd".toCharArray()) {
+            history.append(step);
+        }
+
+        assertEquals(4, history.cursor());
+        assertEquals("lURd", history.toString());
+        assertTrue(history.isPushAt(1));
+        assertFalse(history.isPushAt(3));
+
+        history.backward();
+        history.backward();
+
+        assertEquals(2, history.cursor());
+        assertEquals(4, history.length());
+        assertEquals('R', history.stepAt(2));
+
+        history.forward();
+
+        assertEquals(3, history.cursor());
+
+        // 新的一步捨棄游標之後的步驟
+        history.append('D');
+
+        assertEquals(4, history.length());
+        assertEquals("lURD", history.toString());
+    }
+
+    @Test
+    public void history_recordsCheckpointsEveryInterval() {
+        StepHistory history = new StepHistory(2);
+
+        assertTrue(history.needsCheckpoint());
+
+        history.putCheckpoint(7, new int[] {11, 12});
+
+        assertFalse(history.needsCheckpoint());
+
+        for (int i = 0; i < StepHistory.MIN_CHECKPOINT_INTERVAL; i++) {
+            history.append((i % 2 == 0) ? Sokoban.MOVE_LEFT : Sokoban.MOVE_RIGHT);
+        }
+
+        assertTrue(history.needsCheckpoint());
+
+        history.putCheckpoint(8, new int[] {13, 14});
+
+        int[] boxes = new int[2];
+
+        assertEquals(1, history.checkpointBefore(StepHistory.MIN_CHECKPOINT_INTERVAL + 5));
+        assertEquals(8, history.checkpointManCell(1));
+
+        history.checkpointBoxCells(0, boxes);
+
+        assertEquals(11, boxes[0]);
+        assertEquals(12, boxes[1]);
+
+        // 悔棋到 checkpoint 之前再走新的一步，之後的 checkpoint 作廢
+        history.seek(3);
+        history.append(Sokoban.MOVE_UP);
+
+        assertEquals(0, history.checkpointBefore(StepHistory.MIN_CHECKPOINT_INTERVAL + 5));
+    }
+
+    @Test
+    public void checkpointInterval_growsWithTheBoxCount() {
+        assertEquals(StepHistory.MIN_CHECKPOINT_INTERVAL, new StepHistory(0).checkpointInterval());
+        assertEquals(StepHistory.MIN_CHECKPOINT_INTERVAL, new StepHistory(63).checkpointInterval());
+        assertEquals(128, new StepHistory(64).checkpointInterval());
+        assertEquals(256, new StepHistory(196).checkpointInterval());
+    }
+
+    @Test
+    public void jumpToStart_afterPush_restoresTheBoxUnderTheMan() {
+        // 推箱之後工人站在箱子原來的格子上
+        String[] level = {
+                "######",
+                "#@$ .#",
+                "######"
+        };
+
+        GameState gameState = new GameState(level);
+        GameState initial = new GameState(level);
+
+        assertTrue(gameState.redoStep(Sokoban.PUSH_RIGHT));
+
+        gameState.jumpToStep(0);
+
+        assertSameBoard(initial, gameState);
+
+        gameState.jumpToStep(1);
+
+        assertEquals('@', gameState.getLabel(2, 1));
+        assertEquals('$', gameState.getLabel(3, 1));
+    }
+
+    @Test
+    public void jumpToStep_matchesPlainUndoAndRedo() {
+        GameState gameState = new GameState(LEVEL);
+        GameState reference = new GameState(LEVEL);
+
+        Random random = new Random(42);
+
+        // 隨機漫步，超過好幾個 checkpoint
+        for (int i = 0; gameState.getStepCount() < 10 * StepHistory.MIN_CHECKPOINT_INTERVAL; i++) {
+            int direction = random.nextInt(BoardLayout.NUM_DIRECTION);
+
+            if (!gameState.redoStep(Sokoban.STEP_MOVING.charAt(direction))) {
+                gameState.redoStep(Sokoban.STEP_PUSHING.charAt(direction));
+            }
+        }
+
+        String solution = gameState.getSolvingSteps();
+
+        for (int i = 0; i < solution.length(); i++) {
+            assertTrue(reference.redoStep(solution.charAt(i)));
+        }
+
+        for (int n = 0; n < 200; n++) {
+            int step = random.nextInt(solution.length() + 1);
+
+            gameState.jumpToStep(step);
+
+            while (reference.getStepCount() > step) {
+                reference.undoStep();
+            }
+
+            while (reference.getStepCount() < step) {
+                reference.redoStep(Sokoban.REDO_STEP);
+            }
+
+            assertEquals(step, gameState.getStepCount());
+            assertSameBoard(reference, gameState);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void jumpToStep_pastTheHistory_isRejected() {
+        GameState gameState = new GameState(LEVEL);
+
+        gameState.redoStep(Sokoban.MOVE_RIGHT);
+
+        gameState.jumpToStep(2);
+    }
+
+    private static void assertSameBoard(GameState expected, GameState actual) {
+        for (int r = 0; r < expected.NUM_ROW; r++) {
+            for (int c = 0; c < expected.NUM_COLUMN; c++) {
+                assertEquals("(" + c + ", " + r + ")", expected.getLabel(c, r), actual.getLabel(c, r));
+            }
+        }
+
+        assertEquals(expected.boxHash(), actual.boxHash());
+        assertEquals(expected.positionHash(), actual.positionHash());
+        assertEquals(expected.isDeadlocked(), actual.isDeadlocked());
+
+        expected.setGameStatus(GameState.GAMING);
+        actual.setGameStatus(GameState.GAMING);
+
+        expected.updateState();
+        actual.updateState();
+
+        assertEquals(expected.getGameStatus(), actual.getGameStatus());
+
+        assertSnapshotMatches(actual);
+    }
+
+    /**
+     * 快照 (複製自即時更新的箱子清單) 必須和盤面上的箱子和工人相同。
+     */
+    private static void assertSnapshotMatches(GameState gameState) {
+        BoardSnapshot snapshot = gameState.snapshot();
+        BoardLayout layout = snapshot.getLayout();
+
+        boolean[] boxes = new boolean[layout.NUM_CELL];
+
+        for (int i = 0; i < snapshot.getBoxCount(); i++) {
+            int cell = snapshot.getBoxCell(i);
+
+            assertFalse("box listed twice at " + cell, boxes[cell]);
+
+            boxes[cell] = true;
+        }
+
+        for (int cell = 0; cell < layout.NUM_CELL; cell++) {
+            assertEquals("box at " + cell, gameState.isBoxAt(layout.columnOf(cell), layout.rowOf(cell)), boxes[cell]);
+        }
+
+        assertEquals(layout.cellOf(gameState.getManColumn(), gameState.getManRow()), snapshot.getManCell());
+    }
+}
@@ -0,0 +1,198 @@
+package io.tut.sokoban;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * TranspositionTable 的大小，記錄和拒絕狀態，取代的順序，世代，和多個執行緒同時寫入。
+ */
+public class TranspositionTableTest {
+    private static final int THREADS = 4;
+    private static final int ROUNDS = 50;
+
+    @Test
+    public void size_staysWithinMaxBytes() {
+        long[] limits = {64, 100, 4096, 5000, 1L << 20, (3L << 20) + 5};
+
+        for (long maxBytes : limits) {
+            TranspositionTable table = new TranspositionTable(maxBytes);
+
+            int slots = table.capacity();
+
+            assertEquals(0, slots & (slots - 1));
+            assertEquals((long) slots * 8, table.sizeInBytes());
+
+            // 不超過上限，而且是不超過上限的最大 2 的次方
+            assertTrue(maxBytes + " bytes", table.sizeInBytes() <= maxBytes);
+            assertTrue(maxBytes + " bytes", table.sizeInBytes() * 2 > maxBytes);
+        }
+
+        // 太小的上限至少有一個桶
+        assertEquals(TranspositionTable.MIN_SLOTS, new TranspositionTable(0).capacity());
+    }
+
+    @Test
+    public void slotsFor_isCappedAtMaxSlots() {
+        assertEquals(TranspositionTable.MAX_SLOTS, TranspositionTable.slotsFor(Long.MAX_VALUE));
+        assertEquals(TranspositionTable.MAX_SLOTS, TranspositionTable.slotsFor((long) TranspositionTable.MAX_SLOTS * 8));
+        assertEquals(TranspositionTable.MAX_SLOTS / 2, TranspositionTable.slotsFor((long) TranspositionTable.MAX_SLOTS * 8 - 1));
+    }
+
+    @Test
+    public void visit_rejectsEqualOrWorseValues() {
+        TranspositionTable table = new TranspositionTable(4096);
+
+        long hash = 0x123456789abcdefL;
+
+        assertEquals(TranspositionTable.NOT_FOUND, table.get(hash));
+
+        assertTrue(table.visit(hash, 5));
+        assertFalse(table.visit(hash, 5));
+        assertFalse(table.visit(hash, 7));
+        assertEquals(5, table.get(hash));
+
+        assertTrue(table.visit(hash, 3));
+        assertEquals(3, table.get(hash));
+    }
+
+    @Test
+    public void fullBucket_replacesOldAgeFirstThenMostPushes() {
+        // 只有一個桶 (MIN_SLOTS 個 slot)：所有狀態都放在同一個桶
+        TranspositionTable table = new TranspositionTable(0);
+
+        long a = hashOf(1);
+        long b = hashOf(2);
+        long c = hashOf(3);
+        long d = hashOf(4);
+        long e = hashOf(5);
+        long f = hashOf(6);
+
+        assertTrue(table.visit(a, 1));
+
+        table.nextAge();
+
+        assertTrue(table.visit(b, 2));
+        assertTrue(table.visit(c, 3));
+        assertTrue(table.visit(d, 4));
+
+        // 桶滿了：先取代舊世代的 a，雖然它的推箱次數最少
+        assertTrue(table.visit(e, 1));
+
+        assertEquals(2, table.get(b));
+        assertEquals(3, table.get(c));
+        assertEquals(4, table.get(d));
+        assertEquals(1, table.get(e));
+
+        // 都是這個世代的狀態：取代推箱次數最多的 d
+        assertTrue(table.visit(f, 1));
+
+        assertEquals(TranspositionTable.NOT_FOUND, table.get(d));
+        assertEquals(2, table.get(b));
+        assertEquals(3, table.get(c));
+        assertEquals(1, table.get(e));
+        assertEquals(1, table.get(f));
+    }
+
+    @Test
+    public void nextAge_forgetsPreviousAges() {
+        TranspositionTable table = new TranspositionTable(4096);
+
+        long hash = hashOf(7);
+
+        assertTrue(table.visit(hash, 5));
+
+        table.nextAge();
+
+        assertEquals(TranspositionTable.NOT_FOUND, table.get(hash));
+        assertTrue(table.visit(hash, 9));
+    }
+
+    @Test
+    public void ageWraparound_doesNotRevivePreviousAges() {
+        TranspositionTable table = new TranspositionTable(4096);
+
+        long hash = hashOf(7);
+
+        assertTrue(table.visit(hash, 5));
+
+        // 8 位元的世代用完，回到 1：之前記錄的狀態不能再算是看過
+        for (int i = 0; i < 255; i++) {
+            table.nextAge();
+        }
+
+        assertEquals(TranspositionTable.NOT_FOUND, table.get(hash));
+        assertTrue(table.visit(hash, 9));
+        assertEquals(9, table.get(hash));
+    }
+
+    @Test
+    public void concurrentVisits_keepTheFewestPushes() throws Exception {
+        // 表比狀態數大很多，不會有狀態被取代
+        final TranspositionTable table = new TranspositionTable(1L << 20);
+
+        final long[] hashes = new long[1000];
+
+        Random random = new Random(9);
+
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = random.nextLong();
+        }
+
+        final int[] expected = new int[hashes.length];
+
+        Arrays.fill(expected, Integer.MAX_VALUE);
+
+        Thread[] threads = new Thread[THREADS];
+
+        for (int t = 0; t < THREADS; t++) {
+            final int id = t;
+
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int i = 0; i < hashes.length; i++) {
+                    expected[i] = Math.min(expected[i], valueOf(id, round, i));
+                }
+            }
+
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int round = 0; round < ROUNDS; round++) {
+                        for (int i = 0; i < hashes.length; i++) {
+                            table.visit(hashes[i], valueOf(id, round, i));
+                        }
+                    }
+                }
+            });
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < hashes.length; i++) {
+            assertEquals("state " + i, expected[i], table.get(hashes[i]));
+        }
+    }
+
+    /**
+     * 執行緒 id 在第 round 輪以幾次推箱到達第 i 個狀態；每個執行緒的順序都不同。
+     */
+    private static int valueOf(int id, int round, int i) {
+        return 1 + ((i * 31 + id * 17 + round * 7) % 97);
+    }
+
+    /**
+     * 只有高位元不同的雜湊值：放在同一個桶，檢查碼不同。
+     */
+    private static long hashOf(int n) {
+        return (long) n << 40;
+    }
+}
@@ -0,0 +1,129 @@
+package io.tut.sokoban;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * GameState.walkTo()：工人不推箱子，以最短的路徑走到指定的格子。
+ */
+public class WalkToTest {
+    private static final String[] LEVEL = {
+            "#########",
+            "#       #",
+            "#       #",
+            "# @$ #  #",
+            "#    #  #",
+            "#   .   #",
+            "#########"
+    };
+
+    @Test
+    public void walkAroundABox_takesTheShortestPath() {
+        GameState gameState = new GameState(LEVEL);
+
+        long boxHash = gameState.boxHash();
+
+        // 箱子擋在中間，要繞過去
+        assertEquals(4, gameState.walkTo(4, 3));
+
+        assertEquals(4, gameState.getManColumn());
+        assertEquals(3, gameState.getManRow());
+        assertEquals(4, gameState.getStepCount());
+        assertEquals(boxHash, gameState.boxHash());
+    }
+
+    @Test
+    public void unreachableTargets_doNotMove() {
+        GameState gameState = new GameState(LEVEL);
+
+        assertEquals(0, gameState.walkTo(5, 3));
+        assertEquals(0, gameState.walkTo(3, 3));
+        assertEquals(0, gameState.walkTo(2, 3));
+        assertEquals(0, gameState.walkTo(-1, 3));
+        assertEquals(0, gameState.walkTo(9, 3));
+
+        assertEquals(0, gameState.getStepCount());
+    }
+
+    @Test
+    public void everyCell_matchesABreadthFirstSearch() {
+        GameState initial = new GameState(LEVEL);
+
+        int[] distances = distancesFrom(initial);
+
+        for (int r = 0; r < initial.NUM_ROW; r++) {
+            for (int c = 0; c < initial.NUM_COLUMN; c++) {
+                int distance = distances[r * initial.NUM_COLUMN + c];
+
+                if (distance <= 0) {
+                    continue;
+                }
+
+                GameState gameState = new GameState(LEVEL);
+
+                String where = "(" + c + ", " + r + ")";
+
+                assertEquals(where, distance, gameState.walkTo(c, r));
+                assertEquals(where, c, gameState.getManColumn());
+                assertEquals(where, r, gameState.getManRow());
+
+                // 只有走路，沒有推箱
+                assertEquals(where, gameState.getSolvingSteps().toLowerCase(), gameState.getSolvingSteps());
+                assertEquals(where, initial.boxHash(), gameState.boxHash());
+            }
+        }
+    }
+
+    /**
+     * 以 getLabel() 另外做一次 BFS，算出工人走到每個格子的步數。
+     *
+     * @param gameState 遊戲盤面。
+     *
+     * @return int[] 每個格子 (row * NUM_COLUMN + column) 的步數；走不到的是 -1。
+     */
+    private static int[] distancesFrom(GameState gameState) {
+        int numColumn = gameState.NUM_COLUMN;
+
+        int[] distances = new int[gameState.NUM_ROW * numColumn];
+        int[] queue = new int[distances.length];
+
+        Arrays.fill(distances, -1);
+
+        int start = gameState.getManRow() * numColumn + gameState.getManColumn();
+
+        distances[start] = 0;
+
+        int head = 0;
+        int tail = 0;
+
+        queue[tail++] = start;
+
+        int[][] offsets = {{-1, 0}, {0, -1}, {1, 0}, {0, 1}};
+
+        while (head < tail) {
+            int cell = queue[head++];
+
+            for (int[] offset : offsets) {
+                int c = cell % numColumn + offset[0];
+                int r = cell / numColumn + offset[1];
+
+                if ((c < 0) || (c >= numColumn) || (r < 0) || (r >= gameState.NUM_ROW)) {
+                    continue;
+                }
+
+                char label = gameState.getLabel(c, r);
+                int next = r * numColumn + c;
+
+                if (((label == Sokoban.FLOOR) || (label == Sokoban.GOAL)) && (distances[next] < 0)) {
+                    distances[next] = distances[cell] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        return distances;
+    }
+}
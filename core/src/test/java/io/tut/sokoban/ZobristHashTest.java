@@ -0,0 +1,93 @@
+package io.tut.sokoban;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * GameState 逐步更新的 Zobrist 雜湊值：悔棋回到原來的盤面，或以不同的順序推到相同的
+ * 盤面，都必須得到相同的值。
+ */
+public class ZobristHashTest {
+    private static final String[] LEVEL = {
+            "#######",
+            "#     #",
+            "# $ $ #",
+            "#  @  #",
+            "# .  .#",
+            "#######"
+    };
+
+    // 兩個箱子都往上推一格之後的盤面，工人在另一個位置
+    private static final String[] PUSHED = {
+            "#######",
+            "# $ $ #",
+            "#     #",
+            "#     #",
+            "#@.  .#",
+            "#######"
+    };
+
+    @Test
+    public void pushAndUndo_restoresTheHash() {
+        GameState gameState = new GameState(LEVEL);
+
+        long boxHash = gameState.boxHash();
+        long positionHash = gameState.positionHash();
+
+        assertTrue(gameState.redoStep(Sokoban.MOVE_LEFT));
+        assertTrue(gameState.redoStep(Sokoban.PUSH_UP));
+
+        assertNotEquals(boxHash, gameState.boxHash());
+        assertNotEquals(positionHash, gameState.positionHash());
+
+        gameState.undoStep();
+        gameState.undoStep();
+
+        assertEquals(boxHash, gameState.boxHash());
+        assertEquals(positionHash, gameState.positionHash());
+    }
+
+    @Test
+    public void walking_keepsThePositionHash() {
+        GameState gameState = new GameState(LEVEL);
+
+        long positionHash = gameState.positionHash();
+
+        assertTrue(gameState.redoStep(Sokoban.MOVE_DOWN));
+        assertTrue(gameState.redoStep(Sokoban.MOVE_RIGHT));
+
+        // 工人在同一個可到達區域裡走動，盤面沒有不同
+        assertEquals(positionHash, gameState.positionHash());
+    }
+
+    @Test
+    public void differentRoutes_reachTheSameHash() {
+        GameState leftFirst = new GameState(LEVEL);
+
+        // 先推左邊的箱子，再推右邊的
+        play(leftFirst, "lUdrrU");
+
+        GameState rightFirst = new GameState(LEVEL);
+
+        // 先推右邊的箱子，再推左邊的
+        play(rightFirst, "rUdllU");
+
+        assertNotEquals(leftFirst.getManColumn(), rightFirst.getManColumn());
+
+        assertEquals(leftFirst.boxHash(), rightFirst.boxHash());
+        assertEquals(leftFirst.positionHash(), rightFirst.positionHash());
+
+        // 和直接從盤面建立的結果相同
+        GameState loaded = new GameState(PUSHED);
+
+        assertEquals(loaded.boxHash(), leftFirst.boxHash());
+        assertEquals(loaded.positionHash(), leftFirst.positionHash());
+    }
+
+    private static void play(GameState gameState, String steps) {
+        for (int i = 0; i < steps.length(); i++) {
+            assertTrue(steps.charAt(i) + " at " + i, gameState.redoStep(steps.charAt(i)));
+        }
+    }
+}